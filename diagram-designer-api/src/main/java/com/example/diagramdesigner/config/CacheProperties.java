@@ -27,11 +27,36 @@ public class CacheProperties {
         @Min(1)
         private long ttlSeconds = 600;
 
+        // Configs larger than this are substituted as a token stream on each request instead of cached
+        @Min(1)
+        private long streamingThresholdBytes = 1024 * 1024;
+
         public int getMaxSize() { return maxSize; }
         public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
 
         public long getTtlSeconds() { return ttlSeconds; }
         public void setTtlSeconds(long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+
+        // Re-render configs in the background when a variable or service URL they use changes
+        private boolean rerenderOnChange = false;
+
+        // Render the configs listed in the bundled index into the cache at startup (classpath deployments)
+        private boolean preloadBundled = true;
+
+        // Cache-Control header of diagram config responses; they always carry an ETag to revalidate with
+        private String httpCacheControl = "no-cache";
+
+        public long getStreamingThresholdBytes() { return streamingThresholdBytes; }
+        public void setStreamingThresholdBytes(long streamingThresholdBytes) { this.streamingThresholdBytes = streamingThresholdBytes; }
+
+        public boolean isRerenderOnChange() { return rerenderOnChange; }
+        public void setRerenderOnChange(boolean rerenderOnChange) { this.rerenderOnChange = rerenderOnChange; }
+
+        public boolean isPreloadBundled() { return preloadBundled; }
+        public void setPreloadBundled(boolean preloadBundled) { this.preloadBundled = preloadBundled; }
+
+        public String getHttpCacheControl() { return httpCacheControl; }
+        public void setHttpCacheControl(String httpCacheControl) { this.httpCacheControl = httpCacheControl; }
     }
 
     public static class ServiceDiscovery {
@@ -41,10 +66,17 @@ public class CacheProperties {
         @Min(1)
         private long ttlSeconds = 300;
 
+        // Deadline shared by the parallel lookups of one config's service placeholders
+        @Min(1)
+        private long resolveTimeoutMs = 5000;
+
         public int getMaxSize() { return maxSize; }
         public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
 
         public long getTtlSeconds() { return ttlSeconds; }
         public void setTtlSeconds(long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+
+        public long getResolveTimeoutMs() { return resolveTimeoutMs; }
+        public void setResolveTimeoutMs(long resolveTimeoutMs) { this.resolveTimeoutMs = resolveTimeoutMs; }
     }
 }
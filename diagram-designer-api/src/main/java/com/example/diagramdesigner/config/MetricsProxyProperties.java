@@ -1,6 +1,8 @@
 package com.example.diagramdesigner.config;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
@@ -17,6 +19,30 @@ public class MetricsProxyProperties {
     private int cacheTtlMs = 30000;
     @Min(1)
     private int maxCacheSize = 500;
+    // Largest upstream body read when only selected fields are extracted from it
+    @Min(1)
+    private long maxStreamedBytes = 64L * 1024 * 1024;
+
+    @Valid
+    private final AdaptivePolling adaptivePolling = new AdaptivePolling();
+
+    @Valid
+    private final Coordination coordination = new Coordination();
+
+    @Valid
+    private final Snapshot snapshot = new Snapshot();
+
+    @Valid
+    private final Hedging hedging = new Hedging();
+
+    @Valid
+    private final ByteBudget byteBudget = new ByteBudget();
+
+    @Valid
+    private final Push push = new Push();
+
+    @Valid
+    private final Streaming streaming = new Streaming();
 
     public int getTimeoutMs() { return timeoutMs; }
     public void setTimeoutMs(int timeoutMs) { this.timeoutMs = timeoutMs; }
@@ -30,9 +56,232 @@ public class MetricsProxyProperties {
     public int getMaxCacheSize() { return maxCacheSize; }
     public void setMaxCacheSize(int maxCacheSize) { this.maxCacheSize = maxCacheSize; }
 
+    public long getMaxStreamedBytes() { return maxStreamedBytes; }
+    public void setMaxStreamedBytes(long maxStreamedBytes) { this.maxStreamedBytes = maxStreamedBytes; }
+
     @Deprecated
     public int getCacheMaxSize() { return maxCacheSize; }
 
     @Deprecated
     public void setCacheMaxSize(int cacheMaxSize) { this.maxCacheSize = cacheMaxSize; }
+
+    public AdaptivePolling getAdaptivePolling() { return adaptivePolling; }
+
+    public Coordination getCoordination() { return coordination; }
+
+    public Snapshot getSnapshot() { return snapshot; }
+
+    public Hedging getHedging() { return hedging; }
+
+    public ByteBudget getByteBudget() { return byteBudget; }
+
+    public Push getPush() { return push; }
+
+    public Streaming getStreaming() { return streaming; }
+
+    /**
+     * Bounds for the next-poll hints returned to clients. Requests may narrow these
+     * with their own bounds taken from the diagram config.
+     */
+    public static class AdaptivePolling {
+        private boolean enabled = true;
+
+        @Min(1)
+        private long minIntervalMs = 1000;
+
+        @Min(1)
+        private long maxIntervalMs = 300000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getMinIntervalMs() { return minIntervalMs; }
+        public void setMinIntervalMs(long minIntervalMs) { this.minIntervalMs = minIntervalMs; }
+
+        public long getMaxIntervalMs() { return maxIntervalMs; }
+        public void setMaxIntervalMs(long maxIntervalMs) { this.maxIntervalMs = maxIntervalMs; }
+    }
+
+    /**
+     * Leader-per-endpoint polling across instances that share one database. The
+     * lease owner polls the upstream and publishes the value; other instances read it.
+     */
+    public static class Coordination {
+        private boolean enabled = false;
+
+        // Blank means a random id is generated at startup
+        private String instanceId = "";
+
+        @Min(1)
+        private long leaseTtlMs = 60000;
+
+        @Min(1)
+        private long purgeAfterMs = 3600000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getInstanceId() { return instanceId; }
+        public void setInstanceId(String instanceId) { this.instanceId = instanceId; }
+
+        public long getLeaseTtlMs() { return leaseTtlMs; }
+        public void setLeaseTtlMs(long leaseTtlMs) { this.leaseTtlMs = leaseTtlMs; }
+
+        public long getPurgeAfterMs() { return purgeAfterMs; }
+        public void setPurgeAfterMs(long purgeAfterMs) { this.purgeAfterMs = purgeAfterMs; }
+    }
+
+    /**
+     * Periodic on-disk snapshot of cached upstream values. On startup the snapshot
+     * is served as stale data while each value is refreshed in the background.
+     */
+    public static class Snapshot {
+        private boolean enabled = false;
+
+        @NotBlank
+        private String path = "./metrics-cache.snapshot";
+
+        @Min(1)
+        private long intervalMs = 60000;
+
+        // Snapshot entries older than this are not served after a restart
+        @Min(1)
+        private long maxAgeMs = 3600000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+
+        public long getIntervalMs() { return intervalMs; }
+        public void setIntervalMs(long intervalMs) { this.intervalMs = intervalMs; }
+
+        public long getMaxAgeMs() { return maxAgeMs; }
+        public void setMaxAgeMs(long maxAgeMs) { this.maxAgeMs = maxAgeMs; }
+    }
+
+    /**
+     * Hedged requests to services with several registered instances: if the first
+     * instance has not answered within its observed p95 latency, the same GET is
+     * sent to another instance and whichever answers first wins.
+     */
+    public static class Hedging {
+        private boolean enabled = false;
+
+        // Never hedge sooner than this, however fast the host usually is
+        @Min(1)
+        private long minDelayMs = 50;
+
+        // Latency samples needed for a host before its p95 is trusted
+        @Min(1)
+        private int minSamples = 20;
+
+        // Concurrent hedges allowed per primary host, so a slow host cannot double the load
+        @Min(1)
+        private int maxHedgesPerHost = 2;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getMinDelayMs() { return minDelayMs; }
+        public void setMinDelayMs(long minDelayMs) { this.minDelayMs = minDelayMs; }
+
+        public int getMinSamples() { return minSamples; }
+        public void setMinSamples(int minSamples) { this.minSamples = minSamples; }
+
+        public int getMaxHedgesPerHost() { return maxHedgesPerHost; }
+        public void setMaxHedgesPerHost(int maxHedgesPerHost) { this.maxHedgesPerHost = maxHedgesPerHost; }
+    }
+
+    /**
+     * Global limit on upstream response bodies buffered in memory at once. Each
+     * buffered request reserves its body size (from Content-Length, or the full
+     * buffer limit when unknown) before reading it; requests that do not fit wait
+     * for up to {@code maxWaitMs} and then fail.
+     */
+    public static class ByteBudget {
+        private boolean enabled = true;
+
+        @Min(1)
+        private long maxBytes = 64L * 1024 * 1024;
+
+        // 0 fails fast instead of queueing
+        @Min(0)
+        private long maxWaitMs = 1000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getMaxBytes() { return maxBytes; }
+        public void setMaxBytes(long maxBytes) { this.maxBytes = maxBytes; }
+
+        public long getMaxWaitMs() { return maxWaitMs; }
+        public void setMaxWaitMs(long maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+    }
+
+    /**
+     * Push ingestion: producers POST metric values to {@code /api/metrics/push}
+     * and diagrams read them through {@code push:<name>} sources, which are never
+     * polled upstream.
+     */
+    public static class Push {
+        private boolean enabled = false;
+
+        // Bearer token producers must send; pushes are refused while it is empty
+        private String token = "";
+
+        // Distinct live pushed metric names; pushed values are stored apart from polled ones
+        @Min(1)
+        private int maxKeys = 1000;
+
+        // How long a pushed value is served after its last push; expired names free up a slot
+        @Min(1)
+        private long ttlMs = 300000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getToken() { return token; }
+        public void setToken(String token) { this.token = token; }
+
+        public int getMaxKeys() { return maxKeys; }
+        public void setMaxKeys(int maxKeys) { this.maxKeys = maxKeys; }
+
+        public long getTtlMs() { return ttlMs; }
+        public void setTtlMs(long ttlMs) { this.ttlMs = ttlMs; }
+    }
+
+    /**
+     * Streaming sources ({@code stream:<url>}): one long-lived connection per
+     * source reading server-sent events or a stream of JSON values, reconnecting
+     * with exponential backoff. Streams nobody has read for
+     * {@code idleTimeoutMs} are closed.
+     */
+    public static class Streaming {
+        @Min(1)
+        private long minBackoffMs = 1000;
+
+        @Min(1)
+        private long maxBackoffMs = 60000;
+
+        @Min(1)
+        private long idleTimeoutMs = 600000;
+
+        // Each open stream holds an upstream connection
+        @Min(1)
+        private int maxStreams = 100;
+
+        public long getMinBackoffMs() { return minBackoffMs; }
+        public void setMinBackoffMs(long minBackoffMs) { this.minBackoffMs = minBackoffMs; }
+
+        public long getMaxBackoffMs() { return maxBackoffMs; }
+        public void setMaxBackoffMs(long maxBackoffMs) { this.maxBackoffMs = maxBackoffMs; }
+
+        public long getIdleTimeoutMs() { return idleTimeoutMs; }
+        public void setIdleTimeoutMs(long idleTimeoutMs) { this.idleTimeoutMs = idleTimeoutMs; }
+
+        public int getMaxStreams() { return maxStreams; }
+        public void setMaxStreams(int maxStreams) { this.maxStreams = maxStreams; }
+    }
 }
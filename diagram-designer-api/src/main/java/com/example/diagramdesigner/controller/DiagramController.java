@@ -4,7 +4,11 @@ import com.example.diagramdesigner.config.CacheProperties;
 import com.example.diagramdesigner.dto.DiagramRequest;
 import com.example.diagramdesigner.dto.DiagramResponse;
 import com.example.diagramdesigner.model.Diagram;
+import com.example.diagramdesigner.repository.DiagramSummary;
+import com.example.diagramdesigner.service.BundledConfigIndex;
 import com.example.diagramdesigner.service.ConfigsDirectoryResolver;
+import com.example.diagramdesigner.service.ConfigsDirectoryWatcher;
+import com.example.diagramdesigner.service.ConfigsInvalidatedEvent;
 import com.example.diagramdesigner.service.ConfigurationProcessor;
 import com.example.diagramdesigner.service.DiagramService;
 import com.github.benmanes.caffeine.cache.Cache;
@@ -13,18 +17,34 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 /**
@@ -41,41 +61,72 @@ import java.util.stream.Stream;
 public class DiagramController {
 
     private static final Logger logger = LoggerFactory.getLogger(DiagramController.class);
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("name", "title", "createdAt", "updatedAt");
 
     private final ConfigurationProcessor configurationProcessor;
     private final DiagramService diagramService;
     private final ConfigsDirectoryResolver configsDirectoryResolver;
+    private final ConfigsDirectoryWatcher configsDirectoryWatcher;
+    private final BundledConfigIndex bundledConfigIndex;
     private final Cache<String, CachedConfig> configCache;
+    private final long streamingThresholdBytes;
+    private final boolean rerenderOnChange;
+    private final String httpCacheControl;
+    private final boolean preloadBundled;
 
     @Autowired
     public DiagramController(ConfigurationProcessor configurationProcessor,
                              DiagramService diagramService,
                              ConfigsDirectoryResolver configsDirectoryResolver,
+                             ConfigsDirectoryWatcher configsDirectoryWatcher,
+                             BundledConfigIndex bundledConfigIndex,
                              CacheProperties cacheProperties) {
         this.configurationProcessor = configurationProcessor;
         this.diagramService = diagramService;
         this.configsDirectoryResolver = configsDirectoryResolver;
+        this.configsDirectoryWatcher = configsDirectoryWatcher;
+        this.bundledConfigIndex = bundledConfigIndex;
         this.configCache = Caffeine.newBuilder()
                 .maximumSize(cacheProperties.getDiagramCache().getMaxSize())
                 .expireAfterWrite(Duration.ofSeconds(cacheProperties.getDiagramCache().getTtlSeconds()))
                 .build();
+        this.streamingThresholdBytes = cacheProperties.getDiagramCache().getStreamingThresholdBytes();
+        this.rerenderOnChange = cacheProperties.getDiagramCache().isRerenderOnChange();
+        this.httpCacheControl = cacheProperties.getDiagramCache().getHttpCacheControl();
+        this.preloadBundled = cacheProperties.getDiagramCache().isPreloadBundled();
     }
 
+    /**
+     * Diagram file names, sorted. Optionally filtered by name prefix and paged with
+     * {@code page} (from 0) and {@code size}; paged responses carry the total in
+     * {@code X-Total-Count}.
+     */
     @GetMapping("/diagrams")
-    public ResponseEntity<List<String>> listDiagrams() {
+    public ResponseEntity<List<String>> listDiagrams(@RequestParam(required = false) String prefix,
+                                                     @RequestParam(required = false) Integer page,
+                                                     @RequestParam(required = false) Integer size) {
+        Pageable pageable = pageable(page, size, "name");
         // Prefer database entries; fall back to file scan when DB is empty
-        List<Diagram> dbDiagrams = diagramService.listDiagrams();
-        if (!dbDiagrams.isEmpty()) {
-            List<String> names = dbDiagrams.stream()
-                    .map(d -> d.getName() + ".json")
-                    .sorted()
-                    .toList();
+        Page<DiagramSummary> summaries = diagramService.listDiagramSummaries(prefix, pageable);
+        if (summaries.getTotalElements() > 0 || diagramService.hasDiagrams()) {
+            List<String> names = summaries.map(d -> d.name() + ".json").getContent();
             logger.debug("Returning {} diagram names from database", names.size());
-            return ResponseEntity.ok(names);
+            return listResponse(names, summaries);
         }
 
         logger.debug("Database empty, falling back to file scan");
-        return listDiagramsFromFiles();
+        ResponseEntity<List<String>> files = listDiagramsFromFiles();
+        if (!files.getStatusCode().is2xxSuccessful() || files.getBody() == null) {
+            return files;
+        }
+        List<String> matching = files.getBody().stream()
+                .filter(name -> prefix == null || name.startsWith(prefix))
+                .toList();
+        Page<String> filePage = pageOf(matching, pageable);
+        return listResponse(filePage.getContent(), filePage);
     }
 
     private ResponseEntity<List<String>> listDiagramsFromFiles() {
@@ -93,10 +144,17 @@ public class DiagramController {
                     logger.debug("Found {} diagram files in {}: {}", diagramFiles.size(), configsDir, diagramFiles);
                     return ResponseEntity.ok(diagramFiles);
                 }
+            } else if (bundledConfigIndex.isPresent()) {
+                List<String> bundledFiles = bundledConfigIndex.configs().stream()
+                        .map(BundledConfigIndex.Entry::name)
+                        .toList();
+                logger.debug("Found {} diagram files in the bundled index: {}", bundledFiles.size(), bundledFiles);
+                return ResponseEntity.ok(bundledFiles);
             } else {
                 try {
                     ClassPathResource configsResource = new ClassPathResource("configs");
                     if (configsResource.exists()) {
+                        // Built without the config index; only these names can be found
                         List<String> knownFiles = List.of("diagram-config.json",
                                 "Telemetry-Processing.json", "Telemetry-Processing-2.json",
                                 "example-diagram-with-auth.json");
@@ -125,23 +183,31 @@ public class DiagramController {
 
     @GetMapping("/diagrams/{filename:.+\\.json}")
     @SuppressWarnings("null")
-    public ResponseEntity<String> getDiagramConfig(@PathVariable String filename) {
+    public ResponseEntity<?> getDiagramConfig(@PathVariable String filename,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
             Path configsDir = configsDirectoryResolver.findConfigsDirectory();
+            boolean watched = configsDirectoryWatcher.isWatching(configsDir);
+            // Taken before reading, so a change made while rendering is never cached as current
+            long version = watched ? configsDirectoryWatcher.versionOf(filename) : 0;
 
             // Check cache first
             CachedConfig cached = configCache.getIfPresent(filename);
             if (cached != null) {
-                // For filesystem, check if file has changed
-                if (configsDir != null) {
+                if (watched) {
+                    // The watcher bumps the version on every change, so no filesystem check is needed
+                    if (cached.version == version) {
+                        logger.debug("Serving {} from cache (watched)", filename);
+                        return cached.representation.toResponse(acceptEncoding, httpCacheControl);
+                    }
+                } else if (configsDir != null) {
+                    // For filesystem, check if file has changed
                     Path configPath = configsDir.resolve(filename);
                     try {
                         long lastModified = Files.getLastModifiedTime(configPath).toMillis();
                         if (lastModified <= cached.lastModified) {
                             logger.debug("Serving {} from cache", filename);
-                            return ResponseEntity.ok()
-                                    .contentType(MediaType.APPLICATION_JSON)
-                                    .body(cached.content);
+                            return cached.representation.toResponse(acceptEncoding, httpCacheControl);
                         }
                     } catch (IOException e) {
                         // Ignore and reload
@@ -149,13 +215,11 @@ public class DiagramController {
                 } else {
                     // Classpath resources don't change at runtime, so cache is always valid
                     logger.debug("Serving {} from cache (classpath)", filename);
-                    return ResponseEntity.ok()
-                            .contentType(MediaType.APPLICATION_JSON)
-                            .body(cached.content);
+                    return cached.representation.toResponse(acceptEncoding, httpCacheControl);
                 }
             }
 
-            String processedContent;
+            byte[] processedContent;
             long lastModified = System.currentTimeMillis();
 
             if (configsDir != null) {
@@ -177,15 +241,20 @@ public class DiagramController {
                     return ResponseEntity.badRequest().build();
                 }
 
+                if (Files.size(configPath) > streamingThresholdBytes) {
+                    return streamed(filename, () -> Files.newInputStream(configPath));
+                }
+
                 // Read the JSON content
                 String jsonContent = Files.readString(configPath);
                 lastModified = Files.getLastModifiedTime(configPath).toMillis();
 
                 // Process variable substitutions
-                processedContent = configurationProcessor.processVariableSubstitution(jsonContent);
+                processedContent = configurationProcessor.processVariableSubstitutionToBytes(
+                        ConfigsInvalidatedEvent.DIAGRAM_FILE + filename, jsonContent);
 
-                logger.debug("Served diagram config: {} from {} (processed {} characters)",
-                        filename, configsDir, processedContent.length());
+                logger.debug("Served diagram config: {} from {} (processed {} bytes)",
+                        filename, configsDir, processedContent.length);
 
             } else {
                 // Classpath approach (JAR deployment)
@@ -195,12 +264,16 @@ public class DiagramController {
                         logger.warn("Diagram file not found in classpath: configs/{}", filename);
                         return ResponseEntity.notFound().build();
                     }
+                    if (configResource.contentLength() > streamingThresholdBytes) {
+                        return streamed(filename, configResource);
+                    }
 
                     String jsonContent = new String(configResource.getInputStream().readAllBytes());
-                    processedContent = configurationProcessor.processVariableSubstitution(jsonContent);
+                    processedContent = configurationProcessor.processVariableSubstitutionToBytes(
+                            ConfigsInvalidatedEvent.DIAGRAM_FILE + filename, jsonContent);
 
-                    logger.debug("Served diagram config: {} from classpath (processed {} characters)",
-                            filename, processedContent.length());
+                    logger.debug("Served diagram config: {} from classpath (processed {} bytes)",
+                            filename, processedContent.length);
 
                 } catch (Exception e) {
                     logger.debug("Error accessing config from classpath: {}", e.getMessage());
@@ -209,11 +282,10 @@ public class DiagramController {
             }
 
             // Update cache
-            configCache.put(filename, new CachedConfig(processedContent, lastModified));
+            CachedConfig rendered = new CachedConfig(processedContent, lastModified, version);
+            configCache.put(filename, rendered);
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(processedContent);
+            return rendered.representation.toResponse(acceptEncoding, httpCacheControl);
 
         } catch (IOException e) {
             logger.error("Error reading diagram file: {}", filename, e);
@@ -224,13 +296,123 @@ public class DiagramController {
         }
     }
 
+    /** The uncompressed config, as served to clients that accept no content coding. */
+    public ResponseEntity<?> getDiagramConfig(String filename) {
+        return getDiagramConfig(filename, null);
+    }
+
+    // Strong validator: a digest of everything the response is built from
+    private static String etagOf(String content) {
+        return "\"" + DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Render the bundled configs into the cache in the background, so the first
+     * request for each is already a hit. Only for classpath deployments, where the
+     * configs cannot change.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadBundledConfigs() {
+        if (!preloadBundled || !bundledConfigIndex.isPresent()
+                || configsDirectoryResolver.findConfigsDirectory() != null) {
+            return;
+        }
+        List<String> filenames = bundledConfigIndex.configs().stream()
+                .filter(entry -> entry.size() <= streamingThresholdBytes)
+                .map(BundledConfigIndex.Entry::name)
+                .toList();
+        Thread.ofVirtual().name("diagram-preload").start(() -> {
+            filenames.forEach(this::getDiagramConfig);
+            logger.info("Preloaded {} bundled diagram configs", filenames.size());
+        });
+    }
+
+    /**
+     * Drop cached configs whose variables or service URLs changed, and optionally
+     * render them again right away so the next request is a cache hit.
+     */
+    @EventListener
+    public void onConfigsInvalidated(ConfigsInvalidatedEvent event) {
+        Set<String> filenames = event.namesOf(ConfigsInvalidatedEvent.DIAGRAM_FILE);
+        configCache.invalidateAll(filenames);
+        if (rerenderOnChange && !filenames.isEmpty()) {
+            // Off the publishing thread, which may be in the middle of a discovery lookup
+            Thread.ofVirtual().name("diagram-rerender").start(() -> filenames.forEach(this::getDiagramConfig));
+        }
+    }
+
+    // Large configs are substituted as a token stream straight into the response and not cached
+    private ResponseEntity<StreamingResponseBody> streamed(String filename, InputStreamSource source) {
+        configCache.invalidate(filename);
+        logger.debug("Streaming large diagram config: {}", filename);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (InputStream in = source.getInputStream()) {
+                        configurationProcessor.processVariableSubstitution(in, out);
+                    }
+                });
+    }
+
     // --- Database-backed CRUD endpoints ---
 
+    /**
+     * Stored diagrams without their configs. Optionally filtered by name prefix,
+     * sorted with {@code sort=<field>[,asc|desc]} (name, title, createdAt, updatedAt;
+     * default name) and paged like {@link #listDiagrams}.
+     */
     @GetMapping("/diagrams/db")
-    public ResponseEntity<List<DiagramResponse>> listDbDiagrams() {
-        return ResponseEntity.ok(diagramService.listDiagrams().stream()
-                .map(this::toSummaryResponse)
-                .toList());
+    public ResponseEntity<List<DiagramResponse>> listDbDiagrams(@RequestParam(required = false) String prefix,
+                                                                @RequestParam(required = false) Integer page,
+                                                                @RequestParam(required = false) Integer size,
+                                                                @RequestParam(required = false) String sort) {
+        Page<DiagramSummary> summaries = diagramService.listDiagramSummaries(prefix, pageable(page, size, sort));
+        return listResponse(summaries.map(this::toSummaryResponse).getContent(), summaries);
+    }
+
+    // Unpaged unless a page or size is given; bad values are the client's error
+    private static Pageable pageable(Integer page, Integer size, String sort) {
+        Sort order = sortOf(sort != null ? sort : "name");
+        if (page == null && size == null) {
+            return Pageable.unpaged(order);
+        }
+        int pageNumber = page != null ? page : 0;
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        return PageRequest.of(pageNumber, pageSize, order);
+    }
+
+    private static Sort sortOf(String sort) {
+        String[] parts = sort.split(",", 2);
+        String property = parts[0].trim();
+        if (!SORTABLE_PROPERTIES.contains(property)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Cannot sort by '" + property + "'; use one of " + SORTABLE_PROPERTIES);
+        }
+        boolean descending = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc");
+        // Ties on title or timestamps are broken by name so pages are stable
+        Sort order = Sort.by(descending ? Sort.Direction.DESC : Sort.Direction.ASC, property);
+        return property.equals("name") ? order : order.and(Sort.by("name"));
+    }
+
+    private static <T> Page<T> pageOf(List<T> all, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(all);
+        }
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(all.subList(from, to), pageable, all.size());
+    }
+
+    private static <T> ResponseEntity<List<T>> listResponse(List<T> content, Page<?> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getPageable().isPaged()) {
+            response.header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalElements()));
+        }
+        return response.body(content);
     }
 
     @GetMapping("/diagrams/db/{id}")
@@ -240,7 +422,13 @@ public class DiagramController {
         DiagramResponse response = new DiagramResponse(
                 diagram.getId(), diagram.getName(), diagram.getTitle(),
                 processedConfig, diagram.getCreatedAt(), diagram.getUpdatedAt());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                // Covers every field of the response, not just the config
+                .eTag(etagOf(String.join("\n", String.valueOf(diagram.getId()), diagram.getName(),
+                        String.valueOf(diagram.getTitle()), processedConfig,
+                        String.valueOf(diagram.getCreatedAt()), String.valueOf(diagram.getUpdatedAt()))))
+                .header(HttpHeaders.CACHE_CONTROL, httpCacheControl)
+                .body(response);
     }
 
     @PostMapping("/diagrams/db")
@@ -267,10 +455,10 @@ public class DiagramController {
         return ResponseEntity.noContent().build();
     }
 
-    private DiagramResponse toSummaryResponse(Diagram diagram) {
+    private DiagramResponse toSummaryResponse(DiagramSummary diagram) {
         return new DiagramResponse(
-                diagram.getId(), diagram.getName(), diagram.getTitle(),
-                null, diagram.getCreatedAt(), diagram.getUpdatedAt());
+                diagram.id(), diagram.name(), diagram.title(),
+                null, diagram.createdAt(), diagram.updatedAt());
     }
 
     private DiagramResponse toFullResponse(Diagram diagram) {
@@ -282,12 +470,14 @@ public class DiagramController {
 
     // Cache structure
     private static class CachedConfig {
-        final String content;
+        final EncodedJson representation;
         final long lastModified;
+        final long version;
 
-        CachedConfig(String content, long lastModified) {
-            this.content = content;
+        CachedConfig(byte[] content, long lastModified, long version) {
+            this.representation = EncodedJson.of(content);
             this.lastModified = lastModified;
+            this.version = version;
         }
     }
 
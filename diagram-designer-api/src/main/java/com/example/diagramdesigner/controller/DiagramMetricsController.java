@@ -0,0 +1,44 @@
+package com.example.diagramdesigner.controller;
+
+import com.example.diagramdesigner.service.MetricsFetchPlan;
+import com.example.diagramdesigner.service.MetricsFetchPlanner;
+import com.example.diagramdesigner.service.MetricsProxyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Serves all status and dataGrid values of a diagram in one response, using the
+ * diagram's precompiled {@link MetricsFetchPlan}. {@code name} is a stored
+ * diagram's name or a config file name without {@code .json}, as the diagram
+ * list returns it.
+ */
+@RestController
+@RequestMapping("/api")
+public class DiagramMetricsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiagramMetricsController.class);
+
+    private final MetricsFetchPlanner fetchPlanner;
+    private final MetricsProxyService metricsProxyService;
+
+    public DiagramMetricsController(MetricsFetchPlanner fetchPlanner, MetricsProxyService metricsProxyService) {
+        this.fetchPlanner = fetchPlanner;
+        this.metricsProxyService = metricsProxyService;
+    }
+
+    @GetMapping("/diagrams/{name}/metrics")
+    public ResponseEntity<StreamingResponseBody> getDiagramMetrics(@PathVariable String name) {
+        MetricsFetchPlan plan = fetchPlanner.planFor(name);
+        logger.debug("Serving metrics for diagram {} from {} upstream sources", name, plan.sources().size());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> metricsProxyService.writeDiagramMetrics(plan, out));
+    }
+}
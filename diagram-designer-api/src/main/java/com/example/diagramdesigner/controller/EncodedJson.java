@@ -0,0 +1,125 @@
+package com.example.diagramdesigner.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A processed JSON document in the forms it is sent in: UTF-8 bytes, and a gzip
+ * variant when that is worth it, each with its own strong ETag. Built once when
+ * the document is cached; serving picks a variant by {@code Accept-Encoding} and
+ * writes its bytes as they are.
+ */
+final class EncodedJson {
+
+    // Below this, gzip framing eats most of the saving
+    static final int MIN_COMPRESSED_SIZE = 1024;
+
+    private final byte[] identity;
+    private final String etag;
+    private final byte[] gzip;
+    private final String gzipEtag;
+
+    private EncodedJson(byte[] identity, byte[] gzip) {
+        String digest = DigestUtils.md5DigestAsHex(identity);
+        this.identity = identity;
+        this.etag = "\"" + digest + "\"";
+        this.gzip = gzip;
+        // A different representation needs a different strong validator
+        this.gzipEtag = gzip != null ? "\"" + digest + "-gzip\"" : null;
+    }
+
+    static EncodedJson of(String json) {
+        return of(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** From UTF-8 JSON bytes, which are kept as they are and must not be changed afterwards. */
+    static EncodedJson of(byte[] identity) {
+        byte[] gzip = identity.length >= MIN_COMPRESSED_SIZE ? gzip(identity) : null;
+        return new EncodedJson(identity, gzip != null && gzip.length < identity.length ? gzip : null);
+    }
+
+    byte[] identity() {
+        return identity;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    /**
+     * A 200 response with the variant the client accepts. Spring turns it into a
+     * 304 without a body when {@code If-None-Match} matches its ETag.
+     */
+    ResponseEntity<byte[]> toResponse(String acceptEncoding, String cacheControl) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (gzip == null) {
+            return response.eTag(etag).body(identity);
+        }
+        response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            return response.eTag(gzipEtag).header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+        }
+        return response.eTag(etag).body(identity);
+    }
+
+    // Whether an Accept-Encoding header allows gzip, explicitly or through "*", with a non-zero q
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") && isZero(param.substring(2))) {
+                    accepted = false;
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static boolean isZero(String qvalue) {
+        try {
+            return Double.parseDouble(qvalue.trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        // Compressed once per rendering and served many times, so spend the CPU on size
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
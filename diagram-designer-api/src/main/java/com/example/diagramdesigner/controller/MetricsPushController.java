@@ -0,0 +1,75 @@
+package com.example.diagramdesigner.controller;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.example.diagramdesigner.service.MetricsProxyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ingestion endpoint for producers that push their metrics instead of being
+ * polled. Values are stored in the metrics proxy cache and served to
+ * {@code push:<name>} sources.
+ */
+@RestController
+@RequestMapping("/api")
+public class MetricsPushController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsPushController.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final MetricsProxyService metricsProxyService;
+    private final MetricsProxyProperties properties;
+
+    public MetricsPushController(MetricsProxyService metricsProxyService, MetricsProxyProperties properties) {
+        this.metricsProxyService = metricsProxyService;
+        this.properties = properties;
+    }
+
+    @PostMapping("/metrics/push")
+    public ResponseEntity<Map<String, Object>> push(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            InputStream body) throws IOException {
+        MetricsProxyProperties.Push push = properties.getPush();
+        if (!push.isEnabled() || !StringUtils.hasText(push.getToken())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Not found"));
+        }
+        if (!hasToken(authorization, push.getToken())) {
+            logger.warn("Rejected metrics push with missing or invalid token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid push token"));
+        }
+
+        MetricsProxyService.PushResult result = metricsProxyService.ingestPushed(body);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("accepted", result.accepted());
+        response.put("rejected", result.rejected());
+        if (result.error() != null) {
+            response.put("error", result.error());
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    // Constant-time comparison so the token cannot be guessed byte by byte
+    private static boolean hasToken(String authorization, String token) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        byte[] presented = authorization.substring(BEARER_PREFIX.length()).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(presented, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,20 +1,28 @@
 package com.example.diagramdesigner.controller;
 
+import com.example.diagramdesigner.config.CacheProperties;
+import com.example.diagramdesigner.service.ConfigsInvalidatedEvent;
 import com.example.diagramdesigner.service.ConfigurationProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -28,23 +36,37 @@ public class NodeDetailsController {
     private final ResourceLoader resourceLoader;
     private final ObjectMapper objectMapper;
     private final ConfigurationProcessor configurationProcessor;
+    // Processed details, ready to send, by node name
+    private final Cache<String, EncodedJson> detailsCache;
+    private final String httpCacheControl;
 
     @Autowired
     public NodeDetailsController(ResourceLoader resourceLoader, ObjectMapper objectMapper,
-            ConfigurationProcessor configurationProcessor) {
+            ConfigurationProcessor configurationProcessor, CacheProperties cacheProperties) {
         this.resourceLoader = resourceLoader;
         this.objectMapper = objectMapper;
         this.configurationProcessor = configurationProcessor;
+        this.detailsCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getDiagramCache().getMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(cacheProperties.getDiagramCache().getTtlSeconds()))
+                .build();
+        this.httpCacheControl = cacheProperties.getDiagramCache().getHttpCacheControl();
     }
 
     @GetMapping("/node-details/{nodeName}")
-    public ResponseEntity<Object> getNodeDetails(@PathVariable String nodeName) {
+    public ResponseEntity<?> getNodeDetails(@PathVariable String nodeName,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         if (!NODE_NAME_PATTERN.matcher(nodeName).matches()) {
             logger.warn("Rejected invalid nodeName: {}", nodeName);
             return ResponseEntity.badRequest()
                     .body(Map.of("error", "Invalid nodeName. Allowed pattern: ^[a-zA-Z0-9_-]{1,64}$"));
         }
 
+        EncodedJson cached = detailsCache.getIfPresent(nodeName);
+        if (cached != null) {
+            return cached.toResponse(acceptEncoding, httpCacheControl);
+        }
+
         logger.info("Loading node details for: {}", nodeName);
 
         try {
@@ -62,13 +84,17 @@ public class NodeDetailsController {
             }
 
             String jsonContent = resource.getContentAsString(StandardCharsets.UTF_8);
-            String processedJson = configurationProcessor.processVariableSubstitution(jsonContent);
+            String processedJson = configurationProcessor.processVariableSubstitution(
+                    ConfigsInvalidatedEvent.NODE_DETAILS + nodeName, jsonContent);
 
+            // Details must be a JSON object; re-serialized once, so the cached bytes are compact
             @SuppressWarnings("unchecked")
             Map<String, Object> nodeDetails = objectMapper.readValue(processedJson, Map.class);
+            EncodedJson details = EncodedJson.of(objectMapper.writeValueAsString(nodeDetails));
+            detailsCache.put(nodeName, details);
 
             logger.debug("Successfully loaded and processed details for node: {}", nodeName);
-            return ResponseEntity.ok(nodeDetails);
+            return details.toResponse(acceptEncoding, httpCacheControl);
 
         } catch (IOException e) {
             logger.error("Error reading node details for {}: {}", nodeName, e.getMessage());
@@ -76,4 +102,9 @@ public class NodeDetailsController {
                     .body(Map.of("error", "Failed to load node details", "message", e.getMessage()));
         }
     }
+
+    @EventListener
+    public void onConfigsInvalidated(ConfigsInvalidatedEvent event) {
+        detailsCache.invalidateAll(event.namesOf(ConfigsInvalidatedEvent.NODE_DETAILS));
+    }
 }
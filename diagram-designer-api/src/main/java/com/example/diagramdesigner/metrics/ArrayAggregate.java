@@ -0,0 +1,251 @@
+package com.example.diagramdesigner.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An aggregation over the elements of an array field, written as a
+ * {@code valueField} such as {@code sum(queues[*].messages)} or
+ * {@code count(queues[?state=running])}.
+ *
+ * The argument is a path with exactly one {@code [*]} (every element) or
+ * {@code [?field op literal]} (elements matching a filter; ops are {@code =},
+ * {@code !=}, {@code >}, {@code >=}, {@code <}, {@code <=}). The part before it
+ * selects the array, which may be the document root ({@code sum([*].size)}), and
+ * the part after it the value of each element. {@code count} counts elements (or
+ * non-null values); {@code sum}, {@code avg}, {@code min} and {@code max} skip
+ * non-numeric values. {@code avg}, {@code min} and {@code max} of no values, and
+ * any aggregate over a missing array, are {@code null}.
+ *
+ * Elements can be fed one at a time to an {@link Accumulator}, which is how
+ * {@link StreamingFieldExtractor} evaluates aggregates while a response streams in
+ * without materializing the array.
+ */
+public final class ArrayAggregate {
+
+    public enum Function { SUM, AVG, MIN, MAX, COUNT }
+
+    private enum Op { EQ, NE, GT, GE, LT, LE }
+
+    private static final Pattern SYNTAX = Pattern.compile("^\\s*(sum|avg|min|max|count)\\s*\\((.*)\\)\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern FILTER = Pattern.compile("^\\?\\s*([^!=<>\\s]+)\\s*(==|=|!=|>=|<=|>|<)\\s*(.*?)\\s*$");
+
+    private final String text;
+    private final Function function;
+    private final FieldPath arrayPath;
+    private final FieldPath filterPath;
+    private final Op filterOp;
+    private final String filterLiteral;
+    private final double filterNumber;
+    private final FieldPath valuePath;
+
+    private ArrayAggregate(String text, Function function, FieldPath arrayPath, FieldPath filterPath, Op filterOp,
+            String filterLiteral, FieldPath valuePath) {
+        this.text = text;
+        this.function = function;
+        this.arrayPath = arrayPath;
+        this.filterPath = filterPath;
+        this.filterOp = filterOp;
+        this.filterLiteral = filterLiteral;
+        this.filterNumber = filterLiteral != null ? FieldPath.toDouble(filterLiteral) : Double.NaN;
+        this.valuePath = valuePath;
+    }
+
+    /** Whether a {@code valueField} is written as an aggregate rather than a plain path. */
+    public static boolean isAggregate(String text) {
+        return text != null && SYNTAX.matcher(text).matches();
+    }
+
+    /**
+     * Compile an aggregate.
+     *
+     * @throws IllegalArgumentException if the text is not a well-formed aggregate
+     */
+    public static ArrayAggregate compile(String text) {
+        Matcher matcher = text != null ? SYNTAX.matcher(text) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("Not an aggregate: " + text);
+        }
+        Function function = Function.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+        String argument = matcher.group(2).trim();
+
+        int open = findSelector(argument, 0);
+        if (open < 0) {
+            throw new IllegalArgumentException("Aggregate '" + text + "' needs a [*] or [?filter] selector");
+        }
+        int close = argument.indexOf(']', open);
+        if (close < 0) {
+            throw new IllegalArgumentException("Unclosed selector in aggregate '" + text + "'");
+        }
+        String rest = argument.substring(close + 1);
+        if (findSelector(rest, 0) >= 0) {
+            throw new IllegalArgumentException("Aggregate '" + text + "' may have only one [*] or [?filter] selector");
+        }
+
+        FieldPath arrayPath = FieldPath.compile(argument.substring(0, open));
+        FieldPath valuePath = FieldPath.compile(rest);
+        String selector = argument.substring(open + 1, close).trim();
+        FieldPath filterPath = null;
+        Op filterOp = null;
+        String filterLiteral = null;
+        String canonicalSelector = "*";
+        if (!selector.equals("*")) {
+            Matcher filter = FILTER.matcher(selector);
+            if (!filter.matches()) {
+                throw new IllegalArgumentException("Invalid filter '" + selector + "' in aggregate '" + text + "'");
+            }
+            filterPath = FieldPath.compile(filter.group(1));
+            filterOp = switch (filter.group(2)) {
+                case "=", "==" -> Op.EQ;
+                case "!=" -> Op.NE;
+                case ">" -> Op.GT;
+                case ">=" -> Op.GE;
+                case "<" -> Op.LT;
+                default -> Op.LE;
+            };
+            filterLiteral = unquote(filter.group(3));
+            canonicalSelector = "?" + join(filterPath) + filter.group(2) + filter.group(3);
+        }
+
+        String canonical = function.name().toLowerCase(Locale.ROOT) + "(" + join(arrayPath) + "[" + canonicalSelector
+                + "]" + (valuePath.segments().isEmpty() ? "" : "." + join(valuePath)) + ")";
+        return new ArrayAggregate(canonical, function, arrayPath, filterPath, filterOp, filterLiteral, valuePath);
+    }
+
+    /** Normalized text, used as the aggregate's key in extracted results. */
+    public String text() {
+        return text;
+    }
+
+    /** Path segments of the aggregated array (empty for a root array). */
+    public List<String> arraySegments() {
+        return arrayPath.segments();
+    }
+
+    /** Paths each element needs for the filter and the value (empty if the element itself). */
+    List<String> elementPaths() {
+        List<String> paths = new ArrayList<>(2);
+        if (filterPath != null) {
+            paths.add(join(filterPath));
+        }
+        if (!valuePath.segments().isEmpty()) {
+            paths.add(join(valuePath));
+        }
+        return paths;
+    }
+
+    /**
+     * Evaluate against a fully parsed document.
+     */
+    public Object evaluate(Object root) {
+        if (!(arrayPath.resolve(root) instanceof List<?> elements)) {
+            return null;
+        }
+        Accumulator accumulator = newAccumulator();
+        for (Object element : elements) {
+            accumulator.add(element);
+        }
+        return accumulator.result();
+    }
+
+    public Accumulator newAccumulator() {
+        return new Accumulator();
+    }
+
+    private boolean matches(Object element) {
+        if (filterPath == null) {
+            return true;
+        }
+        Object value = filterPath.resolve(element);
+        double number = FieldPath.toDouble(value);
+        boolean numeric = !Double.isNaN(number) && !Double.isNaN(filterNumber);
+        return switch (filterOp) {
+            case EQ -> equalsLiteral(value, number, numeric);
+            case NE -> !equalsLiteral(value, number, numeric);
+            case GT -> numeric && number > filterNumber;
+            case GE -> numeric && number >= filterNumber;
+            case LT -> numeric && number < filterNumber;
+            case LE -> numeric && number <= filterNumber;
+        };
+    }
+
+    private boolean equalsLiteral(Object value, double number, boolean numeric) {
+        if (numeric) {
+            return number == filterNumber;
+        }
+        return value != null ? String.valueOf(value).equals(filterLiteral) : "null".equals(filterLiteral);
+    }
+
+    /**
+     * Running state of one evaluation; elements are added one at a time.
+     */
+    public final class Accumulator {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        public void add(Object element) {
+            if (!matches(element)) {
+                return;
+            }
+            Object value = valuePath.resolve(element);
+            if (function == Function.COUNT) {
+                if (value != null) {
+                    count++;
+                }
+                return;
+            }
+            double number = FieldPath.toDouble(value);
+            if (Double.isNaN(number)) {
+                return;
+            }
+            count++;
+            sum += number;
+            min = Math.min(min, number);
+            max = Math.max(max, number);
+        }
+
+        public Object result() {
+            return switch (function) {
+                case COUNT -> count;
+                case SUM -> sum;
+                case AVG -> count > 0 ? sum / count : null;
+                case MIN -> count > 0 ? min : null;
+                case MAX -> count > 0 ? max : null;
+            };
+        }
+    }
+
+    // Index of the next "[*" or "[?" selector at or after from, or -1
+    private static int findSelector(String path, int from) {
+        for (int i = path.indexOf('[', from); i >= 0; i = path.indexOf('[', i + 1)) {
+            String tail = path.substring(i + 1).stripLeading();
+            if (tail.startsWith("*") || tail.startsWith("?")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String join(FieldPath path) {
+        return String.join(".", path.segments());
+    }
+
+    private static String unquote(String literal) {
+        if (literal.length() >= 2 && (literal.startsWith("'") && literal.endsWith("'")
+                || literal.startsWith("\"") && literal.endsWith("\""))) {
+            return literal.substring(1, literal.length() - 1);
+        }
+        return literal;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
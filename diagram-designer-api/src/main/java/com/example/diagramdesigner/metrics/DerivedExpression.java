@@ -0,0 +1,369 @@
+package com.example.diagramdesigner.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A derived metric computed from other metric values, for example
+ * {@code rate(published)}, {@code delta(queue_depth)},
+ * {@code ratio(rate(errors), rate(requests))} or {@code sum(ready, unacked)}.
+ *
+ * The expression is parsed once into a small tree. Identifiers name inputs, which
+ * are passed to {@link #evaluate} positionally in {@link #inputNames()} order
+ * together with the time each input value was sampled. {@code rate} and
+ * {@code delta} keep the previous sample in primitive fields and only advance
+ * when an input has a newer sample time, so evaluating the same instance on
+ * behalf of many viewers yields one consistent series.
+ *
+ * Supported functions:
+ * <ul>
+ *   <li>{@code rate(x)} - per-second increase of a counter; a decrease is treated
+ *       as a counter reset</li>
+ *   <li>{@code delta(x)} - change since the previous sample</li>
+ *   <li>{@code ratio(a, b)} - {@code a / b}</li>
+ *   <li>{@code sum(a, b, ...)} - sum of all arguments</li>
+ * </ul>
+ * Numeric literals are allowed as arguments. A result of {@code NaN} means there
+ * is no value yet (e.g. the first sample of a rate) or an input is missing.
+ */
+public final class DerivedExpression {
+
+    private static final int MAX_LENGTH = 512;
+    private static final int MAX_DEPTH = 16;
+
+    private final String source;
+    private final List<String> inputNames;
+    private final Node root;
+
+    private DerivedExpression(String source, List<String> inputNames, Node root) {
+        this.source = source;
+        this.inputNames = List.copyOf(inputNames);
+        this.root = root;
+    }
+
+    /**
+     * Parse an expression.
+     *
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static DerivedExpression compile(String source) {
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        if (source.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Expression is longer than " + MAX_LENGTH + " characters");
+        }
+        Parser parser = new Parser(source);
+        Node root = parser.parseExpression(0);
+        parser.expectEnd();
+        return new DerivedExpression(source, parser.inputNames, root);
+    }
+
+    /** Input identifiers in first-use order; this is the order {@link #evaluate} expects. */
+    public List<String> inputNames() {
+        return inputNames;
+    }
+
+    /**
+     * Evaluate the expression against the latest input values.
+     *
+     * @param values     input values in {@link #inputNames()} order ({@code NaN} if missing)
+     * @param sampledAt  epoch millis at which each value was sampled upstream
+     * @return the derived value, or {@code NaN} if it cannot be computed yet
+     */
+    public synchronized double evaluate(double[] values, long[] sampledAt) {
+        if (values.length != inputNames.size() || sampledAt.length != inputNames.size()) {
+            throw new IllegalArgumentException("Expected " + inputNames.size() + " inputs");
+        }
+        return root.eval(values, sampledAt);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private abstract static class Node {
+        abstract double eval(double[] values, long[] sampledAt);
+
+        /** Latest sample time among the inputs this node reads. */
+        abstract long sampledAt(long[] sampledAt);
+    }
+
+    private static final class Input extends Node {
+        private final int index;
+
+        Input(int index) {
+            this.index = index;
+        }
+
+        @Override
+        double eval(double[] values, long[] sampledAt) {
+            return values[index];
+        }
+
+        @Override
+        long sampledAt(long[] sampledAt) {
+            return sampledAt[index];
+        }
+    }
+
+    private static final class Constant extends Node {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double eval(double[] values, long[] sampledAt) {
+            return value;
+        }
+
+        @Override
+        long sampledAt(long[] sampledAt) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /** Shared state for rate and delta: the previous sample and the last result. */
+    private abstract static class Difference extends Node {
+        private final Node argument;
+        private double previousValue = Double.NaN;
+        private long previousTime = Long.MIN_VALUE;
+        private double result = Double.NaN;
+
+        Difference(Node argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        double eval(double[] values, long[] sampledAt) {
+            double value = argument.eval(values, sampledAt);
+            long time = argument.sampledAt(sampledAt);
+            if (time > previousTime && !Double.isNaN(value)) {
+                if (!Double.isNaN(previousValue)) {
+                    result = difference(previousValue, value, time - previousTime);
+                }
+                previousValue = value;
+                previousTime = time;
+            }
+            return result;
+        }
+
+        @Override
+        long sampledAt(long[] sampledAt) {
+            return argument.sampledAt(sampledAt);
+        }
+
+        abstract double difference(double previous, double current, long elapsedMs);
+    }
+
+    private static final class Rate extends Difference {
+        Rate(Node argument) {
+            super(argument);
+        }
+
+        @Override
+        double difference(double previous, double current, long elapsedMs) {
+            // A counter that went down was reset; everything since counts as increase
+            double increase = current >= previous ? current - previous : current;
+            return increase * 1000.0 / elapsedMs;
+        }
+    }
+
+    private static final class Delta extends Difference {
+        Delta(Node argument) {
+            super(argument);
+        }
+
+        @Override
+        double difference(double previous, double current, long elapsedMs) {
+            return current - previous;
+        }
+    }
+
+    private static final class Ratio extends Node {
+        private final Node numerator;
+        private final Node denominator;
+
+        Ratio(Node numerator, Node denominator) {
+            this.numerator = numerator;
+            this.denominator = denominator;
+        }
+
+        @Override
+        double eval(double[] values, long[] sampledAt) {
+            double n = numerator.eval(values, sampledAt);
+            double d = denominator.eval(values, sampledAt);
+            return d == 0 ? Double.NaN : n / d;
+        }
+
+        @Override
+        long sampledAt(long[] sampledAt) {
+            return Math.max(numerator.sampledAt(sampledAt), denominator.sampledAt(sampledAt));
+        }
+    }
+
+    private static final class Sum extends Node {
+        private final Node[] arguments;
+
+        Sum(Node[] arguments) {
+            this.arguments = arguments;
+        }
+
+        @Override
+        double eval(double[] values, long[] sampledAt) {
+            double total = 0;
+            // Evaluate every argument so stateful ones keep advancing
+            for (Node argument : arguments) {
+                total += argument.eval(values, sampledAt);
+            }
+            return total;
+        }
+
+        @Override
+        long sampledAt(long[] sampledAt) {
+            long latest = Long.MIN_VALUE;
+            for (Node argument : arguments) {
+                latest = Math.max(latest, argument.sampledAt(sampledAt));
+            }
+            return latest;
+        }
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final List<String> inputNames = new ArrayList<>();
+        private int pos;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        Node parseExpression(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw error("Expression is nested too deeply");
+            }
+            skipWhitespace();
+            if (pos >= source.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = source.charAt(pos);
+            if (Character.isDigit(c) || c == '.' || c == '-') {
+                return parseNumber();
+            }
+            if (!isIdentifierStart(c)) {
+                throw error("Unexpected character '" + c + "'");
+            }
+            String name = parseIdentifier();
+            skipWhitespace();
+            if (pos < source.length() && source.charAt(pos) == '(') {
+                pos++;
+                return parseCall(name, depth);
+            }
+            int index = inputNames.indexOf(name);
+            if (index < 0) {
+                index = inputNames.size();
+                inputNames.add(name);
+            }
+            return new Input(index);
+        }
+
+        private Node parseCall(String function, int depth) {
+            List<Node> arguments = new ArrayList<>();
+            skipWhitespace();
+            if (pos < source.length() && source.charAt(pos) == ')') {
+                pos++;
+            } else {
+                while (true) {
+                    arguments.add(parseExpression(depth + 1));
+                    skipWhitespace();
+                    if (pos >= source.length()) {
+                        throw error("Missing ')'");
+                    }
+                    char c = source.charAt(pos++);
+                    if (c == ')') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("Expected ',' or ')' but found '" + c + "'");
+                    }
+                }
+            }
+            return switch (function) {
+                case "rate" -> new Rate(single(function, arguments));
+                case "delta" -> new Delta(single(function, arguments));
+                case "ratio" -> {
+                    if (arguments.size() != 2) {
+                        throw error("ratio() takes 2 arguments");
+                    }
+                    yield new Ratio(arguments.get(0), arguments.get(1));
+                }
+                case "sum" -> {
+                    if (arguments.isEmpty()) {
+                        throw error("sum() takes at least 1 argument");
+                    }
+                    yield new Sum(arguments.toArray(Node[]::new));
+                }
+                default -> throw error("Unknown function '" + function + "'");
+            };
+        }
+
+        private Node single(String function, List<Node> arguments) {
+            if (arguments.size() != 1) {
+                throw error(function + "() takes 1 argument");
+            }
+            return arguments.get(0);
+        }
+
+        private Node parseNumber() {
+            int start = pos;
+            if (source.charAt(pos) == '-') {
+                pos++;
+            }
+            while (pos < source.length()
+                    && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                pos++;
+            }
+            try {
+                return new Constant(Double.parseDouble(source.substring(start, pos)));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + source.substring(start, pos) + "'");
+            }
+        }
+
+        private String parseIdentifier() {
+            int start = pos;
+            while (pos < source.length() && isIdentifierPart(source.charAt(pos))) {
+                pos++;
+            }
+            return source.substring(start, pos);
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (pos < source.length()) {
+                throw error("Unexpected '" + source.substring(pos) + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " in '" + source + "'");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.diagramdesigner.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled {@code valueField} path such as {@code queue_totals.messages} or
+ * {@code measurements[0].value}, resolved against parsed JSON (maps and lists).
+ *
+ * Paths are split on {@code .}, {@code [} and {@code ]} with empty segments
+ * dropped, matching {@code getNestedValue} in the frontend. A path written as an
+ * {@link ArrayAggregate} (e.g. {@code sum(queues[*].messages)}) resolves to the
+ * aggregate's value: read from a {@link StreamingFieldExtractor} result, where it
+ * was computed while parsing, or evaluated over a full body.
+ */
+public final class FieldPath {
+
+    private final String source;
+    private final String[] segments;
+    // Segment parsed as a list index, or -1 if it is not a non-negative integer
+    private final int[] indexes;
+    private final ArrayAggregate aggregate;
+
+    private FieldPath(String source, String[] segments, ArrayAggregate aggregate) {
+        this.source = source;
+        this.segments = segments;
+        this.aggregate = aggregate;
+        this.indexes = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            indexes[i] = parseIndex(segments[i]);
+        }
+    }
+
+    /**
+     * Compile a path.
+     *
+     * @throws IllegalArgumentException if the path is a malformed aggregate
+     */
+    public static FieldPath compile(String path) {
+        String source = path != null ? path : "";
+        if (ArrayAggregate.isAggregate(source)) {
+            ArrayAggregate aggregate = ArrayAggregate.compile(source);
+            return new FieldPath(source, new String[] {aggregate.text()}, aggregate);
+        }
+        String[] segments = Arrays.stream(source.split("[.\\[\\]]"))
+                .filter(segment -> !segment.isEmpty())
+                .toArray(String[]::new);
+        return new FieldPath(source, segments, null);
+    }
+
+    /**
+     * Resolve the path against a parsed JSON value, returning {@code null} when
+     * any segment is missing.
+     */
+    public Object resolve(Object root) {
+        if (aggregate != null) {
+            if (root instanceof Map<?, ?> map && map.containsKey(aggregate.text())) {
+                return map.get(aggregate.text());
+            }
+            return aggregate.evaluate(root);
+        }
+        Object current = root;
+        for (int i = 0; i < segments.length && current != null; i++) {
+            if (current instanceof Map<?, ?> map) {
+                current = map.get(segments[i]);
+            } else if (current instanceof List<?> list) {
+                int index = indexes[i];
+                current = index >= 0 && index < list.size() ? list.get(index) : null;
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Resolve the path and convert the result to a number, or {@code NaN} if it is
+     * missing or not numeric.
+     */
+    public double resolveDouble(Object root) {
+        return toDouble(resolve(root));
+    }
+
+    /** Path segments; an aggregate has the single segment {@link ArrayAggregate#text()}. */
+    public List<String> segments() {
+        return List.of(segments);
+    }
+
+    /** The aggregate this path computes, or {@code null} for a plain path. */
+    public ArrayAggregate aggregate() {
+        return aggregate;
+    }
+
+    static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static int parseIndex(String segment) {
+        if (segment.isEmpty() || segment.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(segment);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
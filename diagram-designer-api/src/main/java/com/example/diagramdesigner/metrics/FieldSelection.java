@@ -0,0 +1,178 @@
+package com.example.diagramdesigner.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A set of field paths to extract from an upstream JSON response, compiled into a
+ * trie that {@link StreamingFieldExtractor} walks while the response streams in.
+ *
+ * A path that is a prefix of another (e.g. {@code queue_totals} and
+ * {@code queue_totals.messages}) captures the whole subtree, so the longer path is
+ * dropped. Selections with the same paths have the same {@link #canonical()} form,
+ * which callers use in cache keys.
+ *
+ * An {@link ArrayAggregate} marks its array's node instead: the extractor feeds the
+ * array's elements to it one by one, keeping only the element fields its filter and
+ * value read, and the result holds just the aggregate's value.
+ */
+public final class FieldSelection {
+
+    private final List<String> paths;
+    private final String canonical;
+    private final Node root;
+    private final int terminalCount;
+
+    private FieldSelection(List<String> paths, Node root, int terminalCount) {
+        this.paths = paths;
+        this.canonical = String.join(",", paths);
+        this.root = root;
+        this.terminalCount = terminalCount;
+    }
+
+    /**
+     * Compile a selection, or return {@code null} if the paths are empty or one of
+     * them selects the whole body (in which case nothing can be skipped).
+     *
+     * @throws IllegalArgumentException if a path is a malformed aggregate
+     */
+    public static FieldSelection of(Collection<String> rawPaths) {
+        if (rawPaths == null || rawPaths.isEmpty()) {
+            return null;
+        }
+        TreeSet<String> sorted = new TreeSet<>();
+        Map<String, ArrayAggregate> aggregates = new TreeMap<>();
+        for (String rawPath : rawPaths) {
+            FieldPath path = FieldPath.compile(rawPath != null ? rawPath.trim() : null);
+            if (path.segments().isEmpty()) {
+                return null;
+            }
+            if (path.aggregate() != null) {
+                aggregates.put(path.aggregate().text(), path.aggregate());
+                sorted.add(path.aggregate().text());
+            } else {
+                sorted.add(String.join(".", path.segments()));
+            }
+        }
+
+        Node root = new Node();
+        for (String path : sorted) {
+            if (!aggregates.containsKey(path)) {
+                addPath(root, path);
+            }
+        }
+        for (ArrayAggregate aggregate : aggregates.values()) {
+            if (!addAggregate(root, aggregate)) {
+                return null;
+            }
+        }
+        return new FieldSelection(List.copyOf(sorted), root, countTerminals(root));
+    }
+
+    private static void addPath(Node root, String path) {
+        Node node = root;
+        for (String segment : path.split("\\.")) {
+            if (node.terminal) {
+                break; // An ancestor already captures this path
+            }
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        node.terminal = true;
+        node.children.clear();
+    }
+
+    // False if the aggregate's array is also read through plain paths (e.g. by index)
+    private static boolean addAggregate(Node root, ArrayAggregate aggregate) {
+        List<String> segments = aggregate.arraySegments();
+        if (!segments.isEmpty() && isIndex(segments.get(0))) {
+            // Results are keyed in the root object; a root array has nowhere to put them
+            return false;
+        }
+        Node node = root;
+        for (String segment : segments) {
+            if (node.terminal) {
+                // The whole subtree is captured anyway; the aggregate is evaluated over it
+                return true;
+            }
+            if (!node.aggregates.isEmpty()) {
+                return false;
+            }
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        if (node.terminal) {
+            return true;
+        }
+        if (!node.children.isEmpty()) {
+            return false;
+        }
+        node.aggregates.add(aggregate);
+        if (node.element == null) {
+            node.element = new Node();
+        }
+        for (String path : aggregate.elementPaths()) {
+            addPath(node.element, path);
+        }
+        return true;
+    }
+
+    private static boolean isIndex(String segment) {
+        return !segment.isEmpty() && segment.chars().allMatch(Character::isDigit);
+    }
+
+    /** Normalized, sorted paths joined with commas. */
+    public String canonical() {
+        return canonical;
+    }
+
+    public List<String> paths() {
+        return paths;
+    }
+
+    /**
+     * A new single-use extractor for one response body.
+     *
+     * @param maxBytes response size after which extraction fails
+     */
+    public StreamingFieldExtractor newExtractor(long maxBytes) {
+        return new StreamingFieldExtractor(root, terminalCount, maxBytes);
+    }
+
+    private static int countTerminals(Node node) {
+        if (node.terminal) {
+            return 1;
+        }
+        // Each aggregate completes when its array ends
+        int count = node.aggregates.size();
+        for (Node child : node.children.values()) {
+            count += countTerminals(child);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return canonical;
+    }
+
+    /** Trie node: one path segment (object field name or array index). */
+    static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        boolean terminal;
+        // Aggregates over this node's array, and the fields they read from each element
+        final List<ArrayAggregate> aggregates = new ArrayList<>(0);
+        Node element;
+
+        Node child(String segment) {
+            return children.get(segment);
+        }
+
+        Node child(int index) {
+            return children.isEmpty() ? null : children.get(Integer.toString(index));
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.example.diagramdesigner.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls the fields of a {@link FieldSelection} out of a JSON document fed in
+ * chunks, without materializing the rest of it.
+ *
+ * Chunks go through Jackson's non-blocking parser. Subtrees no selected path
+ * passes through are skipped token by token, so memory use is bounded by the
+ * selected values rather than the document. The result mirrors the document's
+ * shape restricted to the selected paths (array elements before a selected index
+ * are {@code null}), so the same {@link FieldPath} resolves against it as against
+ * the full body. Once every selected path has been read, {@link #feed} reports
+ * completion and the rest of the body need not be read at all.
+ *
+ * Elements of an array with {@link ArrayAggregate}s are handed to the aggregates'
+ * accumulators as they are parsed, each reduced to the fields the aggregates read,
+ * and dropped; the result holds only the aggregate values, keyed by their text.
+ *
+ * Instances are single-use and not thread-safe.
+ */
+public final class StreamingFieldExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final long maxBytes;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final FieldSelection.Node root;
+
+    // Extracted document: a map or list once the root value has started
+    private Object result;
+    private int remaining;
+    private long bytesRead;
+    // Depth of the subtree currently being skipped (0 when not skipping)
+    private int skipDepth;
+    // Builder for a selected value being captured, or null
+    private ValueBuilder capture;
+    private Frame captureParent;
+    private String captureName;
+    private int captureIndex;
+    // Number of aggregated elements being read; paths inside them are not selections
+    private int elementDepth;
+    private final Map<String, Object> aggregateResults = new LinkedHashMap<>();
+    private boolean done;
+
+    StreamingFieldExtractor(FieldSelection.Node root, int terminalCount, long maxBytes) {
+        this.root = root;
+        this.remaining = terminalCount;
+        this.maxBytes = maxBytes;
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create non-blocking JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feed the next chunk. The array may be reused once this returns.
+     *
+     * @return {@code true} once every selected path has been read
+     * @throws IOException if the JSON is malformed or {@code maxBytes} is exceeded
+     */
+    public boolean feed(byte[] bytes, int offset, int length) throws IOException {
+        if (done) {
+            return true;
+        }
+        bytesRead += length;
+        if (bytesRead > maxBytes) {
+            throw new IOException("Upstream response exceeds " + maxBytes + " bytes");
+        }
+        feeder.feedInput(bytes, offset, offset + length);
+        return drain();
+    }
+
+    /**
+     * Signal the end of the document and return what was extracted.
+     */
+    public Object finish() throws IOException {
+        if (!done) {
+            feeder.endOfInput();
+            drain();
+            done = true;
+        }
+        parser.close();
+        return result();
+    }
+
+    /** The extracted value so far (an empty map if nothing matched yet). */
+    @SuppressWarnings("unchecked")
+    public Object result() {
+        if (result == null) {
+            return new LinkedHashMap<>(aggregateResults);
+        }
+        // Aggregates never sit under a root array (see FieldSelection), so the root is a map here
+        if (!aggregateResults.isEmpty() && result instanceof Map<?, ?> map) {
+            ((Map<String, Object>) map).putAll(aggregateResults);
+        }
+        return result;
+    }
+
+    private boolean drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token);
+            if (remaining == 0) {
+                done = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (skipDepth > 0) {
+            if (token.isStructStart()) {
+                skipDepth++;
+            } else if (token.isStructEnd()) {
+                skipDepth--;
+            }
+            return;
+        }
+
+        if (capture != null) {
+            capture.accept(token, parser);
+            if (capture.isComplete()) {
+                deliver(captureParent, captureName, captureIndex, capture.value());
+                capture = null;
+            }
+            return;
+        }
+
+        Frame top = frames.peek();
+        if (top == null) {
+            // Root value: only an object or array can contain selected paths
+            enter(null, null, -1, root, token);
+            return;
+        }
+
+        if (token == JsonToken.FIELD_NAME) {
+            top.pendingName = parser.currentName();
+            top.pending = top.node.child(top.pendingName);
+            return;
+        }
+        if (token.isStructEnd()) {
+            exit(frames.pop());
+            return;
+        }
+
+        if (top.accumulators != null) {
+            element(top, token);
+            return;
+        }
+
+        // A value: find the trie node for its position
+        FieldSelection.Node target;
+        String name = null;
+        int index = -1;
+        if (top.array) {
+            index = top.nextIndex++;
+            target = top.node.child(index);
+        } else {
+            name = top.pendingName;
+            target = top.pending;
+            top.pending = null;
+        }
+
+        if (target == null) {
+            if (token.isStructStart()) {
+                skipDepth = 1;
+            }
+            return;
+        }
+        enter(top, name, index, target, token);
+    }
+
+    // A value at a selected position; parent is null for the root value
+    private void enter(Frame parent, String name, int index, FieldSelection.Node target, JsonToken token)
+            throws IOException {
+        if (!target.aggregates.isEmpty()) {
+            if (token == JsonToken.START_ARRAY) {
+                frames.push(Frame.aggregating(target));
+            } else {
+                // Not an array: the aggregates have no value
+                if (token.isStructStart()) {
+                    skipDepth = 1;
+                }
+                remaining -= target.aggregates.size();
+            }
+            return;
+        }
+
+        if (target.terminal) {
+            ValueBuilder builder = new ValueBuilder();
+            builder.accept(token, parser);
+            if (builder.isComplete()) {
+                deliver(parent, name, index, builder.value());
+            } else {
+                capture = builder;
+                captureParent = parent;
+                captureName = name;
+                captureIndex = index;
+            }
+            return;
+        }
+
+        if (token == JsonToken.START_OBJECT) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            attach(parent, name, index, map);
+            frames.push(new Frame(target, map, false));
+        } else if (token == JsonToken.START_ARRAY) {
+            List<Object> list = new ArrayList<>();
+            attach(parent, name, index, list);
+            frames.push(new Frame(target, list, true));
+        }
+        // A scalar where the path expects a container: the path does not exist
+    }
+
+    // An element of an aggregated array
+    private void element(Frame array, JsonToken token) throws IOException {
+        if (token.isScalarValue()) {
+            ValueBuilder builder = new ValueBuilder();
+            builder.accept(token, parser);
+            accumulate(array, builder.value());
+            return;
+        }
+        FieldSelection.Node element = array.node.element;
+        if (element.children.isEmpty()) {
+            // Only the element's presence matters (e.g. count(items[*]))
+            skipDepth = 1;
+            accumulate(array, Boolean.TRUE);
+            return;
+        }
+        Frame frame = token == JsonToken.START_OBJECT
+                ? new Frame(element, new LinkedHashMap<String, Object>(), false)
+                : new Frame(element, new ArrayList<>(), true);
+        frame.owner = array;
+        elementDepth++;
+        frames.push(frame);
+    }
+
+    private void exit(Frame frame) {
+        if (frame.owner != null) {
+            elementDepth--;
+            accumulate(frame.owner, frame.container);
+        } else if (frame.accumulators != null) {
+            List<ArrayAggregate> aggregates = frame.node.aggregates;
+            for (int i = 0; i < aggregates.size(); i++) {
+                aggregateResults.put(aggregates.get(i).text(), frame.accumulators.get(i).result());
+            }
+            remaining -= aggregates.size();
+        }
+    }
+
+    private static void accumulate(Frame array, Object element) {
+        for (ArrayAggregate.Accumulator accumulator : array.accumulators) {
+            accumulator.add(element);
+        }
+    }
+
+    // A selected value is complete
+    private void deliver(Frame parent, String name, int index, Object value) {
+        if (parent != null && parent.accumulators != null) {
+            accumulate(parent, value);
+            return;
+        }
+        attach(parent, name, index, value);
+        if (elementDepth == 0) {
+            remaining--;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void attach(Frame parent, String name, int index, Object value) {
+        if (parent == null) {
+            result = value;
+        } else if (parent.array) {
+            List<Object> list = (List<Object>) parent.container;
+            while (list.size() < index) {
+                list.add(null);
+            }
+            list.add(value);
+        } else {
+            ((Map<String, Object>) parent.container).put(name, value);
+        }
+    }
+
+    private static final class Frame {
+        final FieldSelection.Node node;
+        final Object container;
+        final boolean array;
+        int nextIndex;
+        String pendingName;
+        FieldSelection.Node pending;
+        // Set for an aggregated array: one accumulator per aggregate of the node
+        List<ArrayAggregate.Accumulator> accumulators;
+        // Set for an element of an aggregated array: the array's frame
+        Frame owner;
+
+        Frame(FieldSelection.Node node, Object container, boolean array) {
+            this.node = node;
+            this.container = container;
+            this.array = array;
+        }
+
+        static Frame aggregating(FieldSelection.Node node) {
+            Frame frame = new Frame(node, null, true);
+            frame.accumulators = new ArrayList<>(node.aggregates.size());
+            for (ArrayAggregate aggregate : node.aggregates) {
+                frame.accumulators.add(aggregate.newAccumulator());
+            }
+            return frame;
+        }
+    }
+
+    /**
+     * Builds a plain Java value (maps, lists, strings, numbers, booleans, null)
+     * from a token sequence, like {@code ObjectMapper.readValue(parser, Object.class)}.
+     */
+    private static final class ValueBuilder {
+        private final Deque<Object> containers = new ArrayDeque<>();
+        private final Deque<String> names = new ArrayDeque<>();
+        private Object value;
+        private boolean complete;
+
+        void accept(JsonToken token, JsonParser parser) throws IOException {
+            switch (token) {
+                case START_OBJECT -> containers.push(new LinkedHashMap<String, Object>());
+                case START_ARRAY -> containers.push(new ArrayList<>());
+                case FIELD_NAME -> names.push(parser.currentName());
+                case END_OBJECT, END_ARRAY -> add(containers.pop());
+                case VALUE_STRING -> add(parser.getText());
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> add(parser.getNumberValue());
+                case VALUE_TRUE -> add(Boolean.TRUE);
+                case VALUE_FALSE -> add(Boolean.FALSE);
+                case VALUE_NULL -> add(null);
+                default -> { }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object v) {
+            Object parent = containers.peek();
+            if (parent == null) {
+                value = v;
+                complete = true;
+            } else if (parent instanceof Map<?, ?>) {
+                ((Map<String, Object>) parent).put(names.pop(), v);
+            } else {
+                ((List<Object>) parent).add(v);
+            }
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+
+        Object value() {
+            return value;
+        }
+    }
+}
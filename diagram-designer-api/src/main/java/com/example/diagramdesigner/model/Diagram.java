@@ -1,7 +1,12 @@
 package com.example.diagramdesigner.model;
 
 import jakarta.persistence.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 @Entity
 @Table(name = "diagram")
@@ -19,6 +24,13 @@ public class Diagram {
     @Column(columnDefinition = "TEXT")
     private String config;
 
+    // SHA-256 of the config, kept in step by setConfig
+    @Column(length = 64)
+    private String contentHash;
+
+    // UTF-8 length of the config in bytes
+    private Long contentSize;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -66,6 +78,39 @@ public class Diagram {
 
     public void setConfig(String config) {
         this.config = config;
+        byte[] content = bytesOf(config);
+        this.contentHash = sha256(content);
+        this.contentSize = (long) content.length;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Long getContentSize() {
+        return contentSize;
+    }
+
+    /** The content hash {@link #setConfig} would record for a config. */
+    public static String contentHashOf(String config) {
+        return sha256(bytesOf(config));
+    }
+
+    /** The content size {@link #setConfig} would record for a config. */
+    public static long contentSizeOf(String config) {
+        return bytesOf(config).length;
+    }
+
+    private static byte[] bytesOf(String config) {
+        return (config != null ? config : "").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public LocalDateTime getCreatedAt() {
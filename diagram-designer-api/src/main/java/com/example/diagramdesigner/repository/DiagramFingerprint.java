@@ -0,0 +1,12 @@
+package com.example.diagramdesigner.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * What the startup import needs to know about an existing diagram to decide
+ * whether its config file changed: the stored config's content hash and when
+ * the row was last written. Loaded for all diagrams in one query, without the
+ * configs themselves; fetch plans check their diagram's hash the same way.
+ */
+public record DiagramFingerprint(Long id, String name, String contentHash, LocalDateTime updatedAt) {
+}
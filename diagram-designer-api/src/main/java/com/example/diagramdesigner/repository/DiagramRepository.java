@@ -1,11 +1,39 @@
 package com.example.diagramdesigner.repository;
 
 import com.example.diagramdesigner.model.Diagram;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface DiagramRepository extends JpaRepository<Diagram, Long> {
 
     Optional<Diagram> findByName(String name);
+
+    /** Summaries of the diagrams whose name starts with the prefix ("" for all). */
+    Page<DiagramSummary> findByNameStartingWith(String namePrefix, Pageable pageable);
+
+    /** Fingerprints of all diagrams, for the startup import. */
+    @Query("select new com.example.diagramdesigner.repository.DiagramFingerprint(d.id, d.name, d.contentHash, d.updatedAt)"
+            + " from Diagram d")
+    List<DiagramFingerprint> findAllFingerprints();
+
+    /** The fingerprint of one diagram, without its config. */
+    @Query("select new com.example.diagramdesigner.repository.DiagramFingerprint(d.id, d.name, d.contentHash, d.updatedAt)"
+            + " from Diagram d where d.name = :name")
+    Optional<DiagramFingerprint> findFingerprintByName(@Param("name") String name);
+
+    /** Diagrams written before content hashes were recorded. */
+    List<Diagram> findByContentHashIsNull();
+
+    /** Sets a diagram's content hash and size without touching updatedAt. */
+    @Modifying
+    @Query("update Diagram d set d.contentHash = :contentHash, d.contentSize = :contentSize where d.id = :id")
+    int recordContentHash(@Param("id") Long id, @Param("contentHash") String contentHash,
+                          @Param("contentSize") long contentSize);
 }
@@ -0,0 +1,11 @@
+package com.example.diagramdesigner.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * A diagram without its config, for listings. Queries returning it select only
+ * these columns, never the config TEXT.
+ */
+public record DiagramSummary(Long id, String name, String title, LocalDateTime createdAt,
+                             LocalDateTime updatedAt) {
+}
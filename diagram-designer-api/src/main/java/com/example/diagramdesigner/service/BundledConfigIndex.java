@@ -0,0 +1,143 @@
+package com.example.diagramdesigner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Index of the diagram configs and node details bundled into the JAR, generated
+ * at build time by {@link #main} (see the {@code config-index} execution in the
+ * module POM) as {@code META-INF/diagram-index.json}. It is kept out of
+ * {@code configs/} so that it is not served as a diagram.
+ *
+ * The classpath cannot be listed reliably inside a JAR, so this is how bundled
+ * configs are discovered. When the index is missing (e.g. running from an IDE
+ * without a Maven build), {@link #isPresent()} is false.
+ */
+@Component
+public class BundledConfigIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BundledConfigIndex.class);
+
+    /** Classpath location of the generated index. */
+    public static final String LOCATION = "META-INF/diagram-index.json";
+
+    /** A bundled JSON file: its file name, title (if any), size in bytes and SHA-256 of its content. */
+    public record Entry(String name, String title, long size, String sha256) {}
+
+    record Index(List<Entry> configs, List<Entry> details) {}
+
+    private final Index index;
+
+    public BundledConfigIndex(ObjectMapper objectMapper) {
+        this.index = load(objectMapper);
+    }
+
+    public boolean isPresent() {
+        return index != null;
+    }
+
+    /** Bundled diagram configs, sorted by name. */
+    public List<Entry> configs() {
+        return index != null ? index.configs() : List.of();
+    }
+
+    /** Bundled node details, sorted by name. */
+    public List<Entry> details() {
+        return index != null ? index.details() : List.of();
+    }
+
+    private static Index load(ObjectMapper objectMapper) {
+        ClassPathResource resource = new ClassPathResource(LOCATION);
+        if (!resource.exists()) {
+            logger.debug("No bundled config index at classpath:{}", LOCATION);
+            return null;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            Index index = objectMapper.readValue(in, Index.class);
+            logger.info("Loaded bundled config index: {} configs, {} node details",
+                    index.configs().size(), index.details().size());
+            return index;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable bundled config index: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Build-time entry point: {@code BundledConfigIndex <configs dir> <index file>}.
+     * Indexes {@code *.json} in the configs directory and its {@code details}
+     * subdirectory.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: BundledConfigIndex <configs dir> <index file>");
+        }
+        Path configsDir = Path.of(args[0]);
+        Path indexFile = Path.of(args[1]);
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        Index index = build(configsDir, objectMapper);
+        Files.createDirectories(indexFile.toAbsolutePath().getParent());
+        objectMapper.writeValue(indexFile.toFile(), index);
+        logger.info("Indexed {} configs and {} node details into {}",
+                index.configs().size(), index.details().size(), indexFile);
+    }
+
+    static Index build(Path configsDir, ObjectMapper objectMapper) throws IOException {
+        return new Index(entries(configsDir, objectMapper, "/config/title"),
+                entries(configsDir.resolve("details"), objectMapper, "/title"));
+    }
+
+    private static List<Entry> entries(Path dir, ObjectMapper objectMapper, String titlePointer) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(".json"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        }
+        List<Entry> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            byte[] content = Files.readAllBytes(file);
+            entries.add(new Entry(file.getFileName().toString(), title(content, objectMapper, titlePointer),
+                    content.length, sha256(content)));
+        }
+        return entries;
+    }
+
+    private static String title(byte[] content, ObjectMapper objectMapper, String titlePointer) {
+        try {
+            JsonNode title = objectMapper.readTree(content).at(titlePointer);
+            return title.isTextual() ? title.textValue() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.diagramdesigner.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which processed documents reference which variables and service names, so a
+ * change to one value invalidates only the documents that use it.
+ */
+final class ConfigDependencyIndex {
+
+    private final Map<String, Set<String>> variablesByDocument = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Map<String, Set<String>> documentsByVariable = new HashMap<>();
+
+    /**
+     * Record the variables a document was last processed with, replacing what was
+     * recorded for it before.
+     */
+    void record(String document, Set<String> variables) {
+        // Documents are processed far more often than their variables change
+        if (variables.equals(variablesByDocument.get(document))) {
+            return;
+        }
+        synchronized (this) {
+            unlink(document);
+            variablesByDocument.put(document, Set.copyOf(variables));
+            for (String variable : variables) {
+                documentsByVariable.computeIfAbsent(variable, v -> new HashSet<>()).add(document);
+            }
+        }
+    }
+
+    /**
+     * Remove and return the documents that reference any of the variables. They are
+     * recorded again when next processed.
+     */
+    synchronized Set<String> invalidate(Collection<String> variables) {
+        Set<String> documents = new HashSet<>();
+        for (String variable : variables) {
+            Set<String> users = documentsByVariable.get(variable);
+            if (users != null) {
+                documents.addAll(users);
+            }
+        }
+        documents.forEach(this::unlink);
+        return documents;
+    }
+
+    synchronized int size() {
+        return variablesByDocument.size();
+    }
+
+    private void unlink(String document) {
+        Set<String> previous = variablesByDocument.remove(document);
+        if (previous == null) {
+            return;
+        }
+        for (String variable : previous) {
+            Set<String> users = documentsByVariable.get(variable);
+            if (users != null && users.remove(document) && users.isEmpty()) {
+                documentsByVariable.remove(variable);
+            }
+        }
+    }
+}
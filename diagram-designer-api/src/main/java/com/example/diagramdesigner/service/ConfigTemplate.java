@@ -0,0 +1,173 @@
+package com.example.diagramdesigner.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A JSON config compiled for variable substitution: the compact JSON split into
+ * literal byte segments around the string values that contain placeholders.
+ *
+ * Rendering resolves each distinct placeholder once and writes the segments with
+ * the substituted strings between them, so the document is not parsed again. The
+ * last rendering is kept with the values it was built from and reused until one of
+ * them changes.
+ */
+final class ConfigTemplate {
+
+    /** A {@code ${name}} or {@code ${name:default}} placeholder. */
+    record Placeholder(String name, String defaultValue) {
+        String text() {
+            return "${" + name + (defaultValue != null ? ":" + defaultValue : "") + "}";
+        }
+    }
+
+    // A string value with placeholders: literal text and Placeholder parts in order
+    private record Slot(Object[] parts) {}
+
+    private record Rendering(String[] values, byte[] bytes) {}
+
+    private final byte[][] segments;
+    private final Slot[] slots;
+    private final List<Placeholder> placeholders;
+    private final AtomicReference<Rendering> lastRendering = new AtomicReference<>();
+
+    private ConfigTemplate(byte[][] segments, Slot[] slots, List<Placeholder> placeholders) {
+        this.segments = segments;
+        this.slots = slots;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * Compile a JSON document. Placeholders are substituted in string values only,
+     * never in field names.
+     *
+     * @throws IOException if the content is not valid JSON
+     */
+    static ConfigTemplate compile(String json, JsonFactory jsonFactory, Pattern variablePattern) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+        List<byte[]> segments = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        Map<Placeholder, Placeholder> placeholders = new LinkedHashMap<>();
+        // Offset in out where each slot goes; the buffer is split once at the end
+        List<Integer> boundaries = new ArrayList<>();
+
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                Object[] parts = token == JsonToken.VALUE_STRING
+                        ? split(parser.getText(), variablePattern, placeholders) : null;
+                if (parts == null) {
+                    generator.copyCurrentEvent(parser);
+                    continue;
+                }
+                // Writes any separator before the value; the value itself is rendered later
+                generator.writeRawValue("");
+                generator.flush();
+                boundaries.add(out.size());
+                slots.add(new Slot(parts));
+            }
+        }
+        byte[] written = out.toByteArray();
+        int segmentStart = 0;
+        for (int boundary : boundaries) {
+            segments.add(Arrays.copyOfRange(written, segmentStart, boundary));
+            segmentStart = boundary;
+        }
+        segments.add(Arrays.copyOfRange(written, segmentStart, written.length));
+        return new ConfigTemplate(segments.toArray(byte[][]::new), slots.toArray(Slot[]::new),
+                List.copyOf(placeholders.keySet()));
+    }
+
+    /** Distinct placeholders in document order. */
+    List<Placeholder> placeholders() {
+        return placeholders;
+    }
+
+    /**
+     * Render the document with each placeholder replaced by its resolved value, or
+     * kept as written if it resolves to {@code null}.
+     */
+    byte[] render(Function<Placeholder, String> resolver) {
+        String[] values = new String[placeholders.size()];
+        for (int i = 0; i < values.length; i++) {
+            Placeholder placeholder = placeholders.get(i);
+            values[i] = Objects.requireNonNullElse(resolver.apply(placeholder), placeholder.text());
+        }
+        Rendering last = lastRendering.get();
+        if (last != null && Arrays.equals(last.values(), values)) {
+            return last.bytes();
+        }
+
+        Map<Placeholder, String> resolved = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            resolved.put(placeholders.get(i), values[i]);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size(segments));
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        for (int i = 0; i < slots.length; i++) {
+            out.writeBytes(segments[i]);
+            StringBuilder text = new StringBuilder();
+            for (Object part : slots[i].parts()) {
+                text.append(part instanceof Placeholder placeholder ? resolved.get(placeholder) : (String) part);
+            }
+            out.write('"');
+            out.writeBytes(encoder.quoteAsUTF8(text.toString()));
+            out.write('"');
+        }
+        out.writeBytes(segments[slots.length]);
+
+        byte[] bytes = out.toByteArray();
+        lastRendering.set(new Rendering(values, bytes));
+        return bytes;
+    }
+
+    // Literal and placeholder parts of a string value, or null if it has no placeholders
+    private static Object[] split(String text, Pattern variablePattern, Map<Placeholder, Placeholder> seen) {
+        if (text == null || !text.contains("${")) {
+            return null;
+        }
+        Matcher matcher = variablePattern.matcher(text);
+        List<Object> parts = new ArrayList<>();
+        int last = 0;
+        while (matcher.find()) {
+            if (matcher.start() > last) {
+                parts.add(text.substring(last, matcher.start()));
+            }
+            Placeholder placeholder = new Placeholder(matcher.group(1), matcher.group(3));
+            parts.add(seen.computeIfAbsent(placeholder, p -> p));
+            last = matcher.end();
+        }
+        if (parts.isEmpty()) {
+            return null;
+        }
+        if (last < text.length()) {
+            parts.add(text.substring(last));
+        }
+        return parts.toArray();
+    }
+
+    private static int size(byte[][] segments) {
+        int size = 0;
+        for (byte[] segment : segments) {
+            size += segment.length;
+        }
+        return size + 64;
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Component;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Optional;
 
 @Component
 public class ConfigsDirectoryResolver {
@@ -20,11 +21,24 @@ public class ConfigsDirectoryResolver {
             "./configs"
     };
 
+    // Resolved once: the lookup sits on the diagram request path
+    private volatile Optional<Path> resolved;
+
     /**
      * Find the configs directory, trying multiple possible filesystem locations.
      * Returns null if only classpath configs are available (or nothing found).
+     * The result is remembered, so a directory created later needs a restart.
      */
     public Path findConfigsDirectory() {
+        Optional<Path> directory = resolved;
+        if (directory == null) {
+            directory = Optional.ofNullable(locate());
+            resolved = directory;
+        }
+        return directory.orElse(null);
+    }
+
+    private Path locate() {
         for (String pathStr : POSSIBLE_PATHS) {
             Path path = Paths.get(pathStr);
             if (Files.exists(path) && Files.isDirectory(path)) {
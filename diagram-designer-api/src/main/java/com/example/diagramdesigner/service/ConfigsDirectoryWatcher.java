@@ -0,0 +1,147 @@
+package com.example.diagramdesigner.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches the filesystem configs directory so cached diagram configs can be
+ * validated without touching the filesystem.
+ *
+ * Every change to a {@code .json} file bumps that file's version and publishes a
+ * {@link ConfigsInvalidatedEvent} for it. Callers record {@link #versionOf} before
+ * reading a file and reuse what they built from it while the version is unchanged.
+ * If the watch service drops events, all versions are bumped at once.
+ */
+@Component
+public class ConfigsDirectoryWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigsDirectoryWatcher.class);
+
+    private final ConfigsDirectoryResolver configsDirectoryResolver;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicLong lastVersion = new AtomicLong();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Version of every file after lost events
+    private volatile long epoch;
+    private volatile Path watchedDirectory;
+    private volatile WatchService watchService;
+
+    public ConfigsDirectoryWatcher(ConfigsDirectoryResolver configsDirectoryResolver,
+            ApplicationEventPublisher eventPublisher) {
+        this.configsDirectoryResolver = configsDirectoryResolver;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        Path configsDir = configsDirectoryResolver.findConfigsDirectory();
+        if (configsDir != null) {
+            watch(configsDir);
+        }
+    }
+
+    // Visible for testing
+    void watch(Path configsDir) {
+        try {
+            WatchService service = configsDir.getFileSystem().newWatchService();
+            configsDir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+            watchedDirectory = configsDir;
+            Thread.ofVirtual().name("configs-watcher").start(() -> run(service, configsDir));
+            logger.info("Watching configs directory {} for changes", configsDir.toAbsolutePath());
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Cannot watch configs directory {}; checking modification times per request instead: {}",
+                    configsDir.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        watchedDirectory = null;
+        WatchService service = watchService;
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    /** Whether changes in this directory are being watched. */
+    public boolean isWatching(Path configsDir) {
+        return configsDir != null && configsDir.equals(watchedDirectory);
+    }
+
+    /** The current version of a file in the watched directory; it grows with every change. */
+    public long versionOf(String filename) {
+        return Math.max(epoch, versions.getOrDefault(filename, 0L));
+    }
+
+    private void run(WatchService service, Path configsDir) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Set<String> changed = new HashSet<>();
+                boolean overflowed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflowed = true;
+                    } else if (event.context() instanceof Path name && name.toString().endsWith(".json")) {
+                        changed.add(name.toString());
+                    }
+                }
+                if (overflowed) {
+                    epoch = lastVersion.incrementAndGet();
+                    changed.addAll(jsonFilesIn(configsDir));
+                    logger.debug("Configs directory events were lost; treating every config as changed");
+                } else {
+                    changed.forEach(name -> versions.put(name, lastVersion.incrementAndGet()));
+                }
+                if (!changed.isEmpty()) {
+                    logger.debug("Config files changed: {}", changed);
+                    eventPublisher.publishEvent(new ConfigsInvalidatedEvent(changed.stream()
+                            .map(name -> ConfigsInvalidatedEvent.DIAGRAM_FILE + name)
+                            .collect(Collectors.toSet())));
+                }
+                if (!key.reset()) {
+                    logger.warn("Configs directory {} is no longer accessible; stopped watching it",
+                            configsDir.toAbsolutePath());
+                    watchedDirectory = null;
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Set<String> jsonFilesIn(Path configsDir) {
+        try (Stream<Path> files = Files.list(configsDir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".json"))
+                    .collect(Collectors.toSet());
+        } catch (IOException e) {
+            return Set.of();
+        }
+    }
+}
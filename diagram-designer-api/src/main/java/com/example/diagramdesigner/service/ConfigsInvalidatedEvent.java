@@ -0,0 +1,30 @@
+package com.example.diagramdesigner.service;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Published by {@link ConfigurationProcessor} when a variable or service URL that
+ * processed configs depend on has changed. Holders of processed configs drop (or
+ * re-render) the listed documents.
+ *
+ * Documents are identified by a kind prefix and a name, e.g.
+ * {@code diagram-file:Telemetry-Processing.json}.
+ */
+public record ConfigsInvalidatedEvent(Set<String> documents) {
+
+    /** A diagram config file, by file name. */
+    public static final String DIAGRAM_FILE = "diagram-file:";
+    /** A stored diagram, by diagram name. */
+    public static final String DIAGRAM = "diagram:";
+    /** A node details config, by node name. */
+    public static final String NODE_DETAILS = "node-details:";
+
+    /** Names of the invalidated documents of one kind. */
+    public Set<String> namesOf(String kind) {
+        return documents.stream()
+                .filter(document -> document.startsWith(kind))
+                .map(document -> document.substring(kind.length()))
+                .collect(Collectors.toSet());
+    }
+}
@@ -1,137 +1,298 @@
 package com.example.diagramdesigner.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.diagramdesigner.config.CacheProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
-public class ConfigurationProcessor {
+public class ConfigurationProcessor implements ApplicationEventPublisherAware {
 
     private static final Logger logger = LoggerFactory.getLogger(ConfigurationProcessor.class);
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([A-Za-z_][A-Za-z0-9_-]*)(:([^}]*))?\\}");
+    // Compiled templates are kept per distinct config content
+    private static final int MAX_TEMPLATES = 256;
 
     private final Environment environment;
     private final ObjectMapper objectMapper;
     private final ServiceDiscovery serviceDiscovery;
+    private final Cache<String, ConfigTemplate> templates;
+    private final long resolveTimeoutNanos;
+    // Discovery lookups block on the registry, so each runs on its own virtual thread
+    private final Executor discoveryExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("placeholder-discovery-", 0).factory());
+    private final ConfigDependencyIndex dependencies = new ConfigDependencyIndex();
+    private ApplicationEventPublisher eventPublisher;
 
-    public ConfigurationProcessor(Environment environment, ObjectMapper objectMapper, ServiceDiscovery serviceDiscovery) {
+    public ConfigurationProcessor(Environment environment, ObjectMapper objectMapper, ServiceDiscovery serviceDiscovery,
+            CacheProperties cacheProperties) {
         this.environment = environment;
         this.objectMapper = objectMapper;
         this.serviceDiscovery = serviceDiscovery;
+        this.templates = Caffeine.newBuilder()
+                .maximumSize(MAX_TEMPLATES)
+                .build();
+        this.resolveTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                cacheProperties.getServiceDiscovery().getResolveTimeoutMs());
     }
 
     /**
      * Process a JSON string by substituting environment variables
      * Variables should be in the format: ${VARIABLE_NAME} or ${VARIABLE_NAME:default_value}
+     *
+     * Each distinct config is compiled once into a {@link ConfigTemplate}; later
+     * calls only resolve its placeholders, and reuse the previous output when none
+     * of their values has changed. Service placeholders are looked up concurrently
+     * before the single rendering pass (see {@link #resolveAll}).
      */
     public String processVariableSubstitution(String jsonContent) {
         if (jsonContent == null || jsonContent.isEmpty()) {
             return jsonContent;
         }
 
-        try {
-            JsonNode rootNode = objectMapper.readTree(jsonContent);
-            JsonNode processedNode = processNode(rootNode);
-
-            // Convert back to JSON string
-            return objectMapper.writeValueAsString(processedNode);
+        byte[] rendered = render(jsonContent);
+        // Return original content if processing fails
+        return rendered != null ? new String(rendered, StandardCharsets.UTF_8) : jsonContent;
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing variable substitution in JSON", e);
-            // Return original content if processing fails
-            return jsonContent;
-        }
+    /**
+     * Process a config that the caller caches as {@code document} (see
+     * {@link ConfigsInvalidatedEvent} for the naming), recording the variables and
+     * service names it uses. When one of them changes, a
+     * {@link ConfigsInvalidatedEvent} names the document.
+     */
+    public String processVariableSubstitution(String document, String jsonContent) {
+        String processed = processVariableSubstitution(jsonContent);
+        recordDependencies(document, jsonContent);
+        return processed;
     }
 
     /**
-     * Process a JsonNode recursively, substituting variables in string values
+     * Like {@link #processVariableSubstitution(String, String)}, but returns the
+     * rendered UTF-8 bytes as they are, for callers that serve bytes and would
+     * otherwise decode and re-encode the whole document.
      */
-    private JsonNode processNode(JsonNode node) {
-        if (node.isTextual()) {
-            // Process string values for variable substitution
-            String originalValue = node.textValue();
-            String processedValue = substituteVariables(originalValue);
-            return new TextNode(processedValue);
-
-        } else if (node.isObject()) {
-            // Recursively process object properties
-            ObjectNode objectNode = objectMapper.createObjectNode();
-            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
-
-            while (fields.hasNext()) {
-                Map.Entry<String, JsonNode> entry = fields.next();
-                objectNode.set(entry.getKey(), processNode(entry.getValue()));
-            }
+    public byte[] processVariableSubstitutionToBytes(String document, String jsonContent) {
+        byte[] rendered = jsonContent != null && !jsonContent.isEmpty() ? render(jsonContent) : null;
+        recordDependencies(document, jsonContent);
+        if (rendered == null) {
+            // Original content if processing fails
+            return jsonContent != null ? jsonContent.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+        return rendered;
+    }
 
-            return objectNode;
+    // The rendered config, or null if it is not valid JSON
+    private byte[] render(String jsonContent) {
+        ConfigTemplate template = templateFor(jsonContent);
+        if (template == null) {
+            return null;
+        }
+        Map<ConfigTemplate.Placeholder, String> values = resolveAll(template.placeholders());
+        return template.render(values::get);
+    }
 
-        } else if (node.isArray()) {
-            // Recursively process array elements
-            for (int i = 0; i < node.size(); i++) {
-                ((com.fasterxml.jackson.databind.node.ArrayNode) node).set(i, processNode(node.get(i)));
-            }
+    private void recordDependencies(String document, String jsonContent) {
+        ConfigTemplate template = jsonContent != null ? templates.getIfPresent(jsonContent) : null;
+        dependencies.record(document, template != null
+                ? template.placeholders().stream().map(ConfigTemplate.Placeholder::name).collect(Collectors.toSet())
+                : Set.of());
+    }
 
-            return node;
+    @EventListener
+    public void onServiceUrlChanged(ServiceUrlChangedEvent event) {
+        invalidateUsersOf(event.serviceNames());
+    }
+
+    @EventListener
+    public void onEnvironmentChanged(EnvironmentChangeEvent event) {
+        invalidateUsersOf(event.getKeys());
+    }
+
+    private void invalidateUsersOf(Set<String> variables) {
+        Set<String> documents = dependencies.invalidate(variables);
+        if (!documents.isEmpty() && eventPublisher != null) {
+            logger.info("Invalidating {} processed configs after {} changed", documents.size(), variables);
+            eventPublisher.publishEvent(new ConfigsInvalidatedEvent(documents));
         }
+    }
 
-        // Return other types (numbers, booleans, null) unchanged
-        return node;
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.eventPublisher = applicationEventPublisher;
     }
 
     /**
-     * Substitute environment variables and service URLs in a string
-     * Supports formats:
-     * - ${VAR_NAME} and ${VAR_NAME:default_value} for environment variables
-     * - ${SERVICE-NAME} for service discovery (e.g., ${my-service})
+     * Streaming variant for large configs: tokens are copied from {@code jsonContent}
+     * to {@code out} one at a time, substituting inside string values only, so memory
+     * use does not grow with the document. Nothing is cached, and each distinct
+     * placeholder is resolved once per call. Neither stream is closed.
+     *
+     * Unlike {@link #processVariableSubstitution(String)}, invalid JSON is an error,
+     * since part of the output may already have been written.
      */
-    private String substituteVariables(String input) {
-        if (input == null || !input.contains("${")) {
-            return input;
+    public void processVariableSubstitution(InputStream jsonContent, OutputStream out) throws IOException {
+        Map<String, String> resolved = new HashMap<>();
+        JsonFactory jsonFactory = objectMapper.getFactory();
+        try (JsonParser parser = jsonFactory.createParser(jsonContent)
+                .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+             JsonGenerator generator = jsonFactory.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING) {
+                    generator.writeString(substituteVariables(parser.getText(), resolved));
+                } else {
+                    generator.copyCurrentEvent(parser);
+                }
+            }
         }
+    }
 
+    // Substitute placeholders in one string, remembering resolved values by placeholder text
+    private String substituteVariables(String input, Map<String, String> resolved) {
+        if (!input.contains("${")) {
+            return input;
+        }
         Matcher matcher = VARIABLE_PATTERN.matcher(input);
-        StringBuffer result = new StringBuffer();
-
+        StringBuilder result = new StringBuilder(input.length());
         while (matcher.find()) {
-            String variableName = matcher.group(1);
-            String defaultValue = matcher.group(3); // Can be null
-
-            String value = null;
+            String value = resolved.computeIfAbsent(matcher.group(), text -> {
+                String resolvedValue = resolve(new ConfigTemplate.Placeholder(matcher.group(1), matcher.group(3)));
+                return resolvedValue != null ? resolvedValue : text;
+            });
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
 
-            // Check if this looks like a service name (contains hyphens and not a typical env var)
-            if (variableName.contains("-") && !variableName.matches(".*[0-9]+.*") && variableName.length() > 3) {
-                // Try service discovery first for service-name-like variables
-                value = serviceDiscovery.discoverServiceUrl(variableName);
-                logger.debug("Service discovery for {} returned: {}", variableName, value);
+    private ConfigTemplate templateFor(String jsonContent) {
+        ConfigTemplate template = templates.getIfPresent(jsonContent);
+        if (template == null) {
+            try {
+                template = ConfigTemplate.compile(jsonContent, objectMapper.getFactory(), VARIABLE_PATTERN);
+            } catch (IOException e) {
+                logger.error("Error processing variable substitution in JSON", e);
+                return null;
             }
+            templates.put(jsonContent, template);
+        }
+        return template;
+    }
 
-            // Fall back to environment variable if service discovery didn't work
-            if (value == null) {
-                value = environment.getProperty(variableName, defaultValue);
+    /**
+     * Resolve every placeholder of a config. The service-discovery lookups for all
+     * distinct service names run concurrently and share one deadline; a name whose
+     * lookup has not finished by then falls back to the environment and default like
+     * an unknown service. The late lookup still completes in the background and
+     * fills the discovery cache for the next request.
+     */
+    private Map<ConfigTemplate.Placeholder, String> resolveAll(List<ConfigTemplate.Placeholder> placeholders) {
+        Set<String> serviceNames = new LinkedHashSet<>();
+        for (ConfigTemplate.Placeholder placeholder : placeholders) {
+            if (isServiceName(placeholder.name())) {
+                serviceNames.add(placeholder.name());
             }
+        }
 
-            if (value != null) {
-                // Replace the entire pattern with the resolved value
-                matcher.appendReplacement(result, Matcher.quoteReplacement(value));
-                logger.debug("Substituted variable {} with value: {}", variableName, value);
-            } else {
-                // Keep original if no value found and no default
-                logger.warn("No value found for variable: {}", variableName);
-                matcher.appendReplacement(result, Matcher.quoteReplacement(matcher.group(0)));
+        Map<String, String> discovered = new HashMap<>();
+        if (serviceNames.size() == 1) {
+            // A single lookup is not worth a thread hop
+            String name = serviceNames.iterator().next();
+            discovered.put(name, discover(name));
+        } else if (!serviceNames.isEmpty()) {
+            Map<String, CompletableFuture<String>> lookups = new LinkedHashMap<>();
+            for (String name : serviceNames) {
+                lookups.put(name, CompletableFuture.supplyAsync(() -> discover(name), discoveryExecutor));
             }
+            long deadline = System.nanoTime() + resolveTimeoutNanos;
+            lookups.forEach((name, lookup) -> discovered.put(name, await(name, lookup, deadline)));
         }
 
-        matcher.appendTail(result);
-        return result.toString();
+        Map<ConfigTemplate.Placeholder, String> values = new HashMap<>();
+        for (ConfigTemplate.Placeholder placeholder : placeholders) {
+            values.put(placeholder, fromEnvironment(placeholder, discovered.get(placeholder.name())));
+        }
+        return values;
+    }
+
+    private String await(String name, CompletableFuture<String> lookup, long deadline) {
+        try {
+            return lookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Service discovery for {} did not finish within {} ms", name,
+                    TimeUnit.NANOSECONDS.toMillis(resolveTimeoutNanos));
+        } catch (ExecutionException e) {
+            logger.debug("Service discovery for {} failed", name, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Resolve one placeholder: service discovery for service-name-like variables,
+     * then the environment (with the placeholder's default), or {@code null}.
+     */
+    private String resolve(ConfigTemplate.Placeholder placeholder) {
+        String discovered = isServiceName(placeholder.name()) ? discover(placeholder.name()) : null;
+        return fromEnvironment(placeholder, discovered);
+    }
+
+    // Check if this looks like a service name (contains hyphens and not a typical env var)
+    private static boolean isServiceName(String variableName) {
+        return variableName.contains("-") && !variableName.matches(".*[0-9]+.*") && variableName.length() > 3;
+    }
+
+    private String discover(String variableName) {
+        String value = serviceDiscovery.discoverServiceUrl(variableName);
+        logger.debug("Service discovery for {} returned: {}", variableName, value);
+        return value;
+    }
+
+    // The discovered value if any, else the environment variable (or the placeholder's default)
+    private String fromEnvironment(ConfigTemplate.Placeholder placeholder, String discovered) {
+        if (discovered != null) {
+            return discovered;
+        }
+        String value = environment.getProperty(placeholder.name(), placeholder.defaultValue());
+        if (value == null) {
+            // Kept as written if no value found and no default
+            logger.warn("No value found for variable: {}", placeholder.name());
+        }
+        return value;
     }
 }
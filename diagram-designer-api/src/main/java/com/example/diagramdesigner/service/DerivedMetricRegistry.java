@@ -0,0 +1,38 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.metrics.DerivedExpression;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Compiled derived-metric expressions, one per definition (expression plus the
+ * upstream inputs it is bound to).
+ *
+ * Rates and deltas keep their previous sample inside the compiled expression, so
+ * sharing one instance per definition gives every viewer the same series instead
+ * of each request starting over. Definitions nobody has asked for within the idle
+ * expiry are dropped along with their state.
+ */
+class DerivedMetricRegistry {
+
+    private final Cache<String, DerivedExpression> expressions;
+
+    DerivedMetricRegistry(int maxEntries, Duration idleExpiry) {
+        this.expressions = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(idleExpiry)
+                .build();
+    }
+
+    /**
+     * The compiled expression for a definition key, compiling {@code expression}
+     * the first time the key is seen.
+     *
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    DerivedExpression get(String definitionKey, String expression) {
+        return expressions.get(definitionKey, k -> DerivedExpression.compile(expression));
+    }
+}
@@ -3,19 +3,38 @@ package com.example.diagramdesigner.service;
 import com.example.diagramdesigner.dto.DiagramRequest;
 import com.example.diagramdesigner.model.Diagram;
 import com.example.diagramdesigner.repository.DiagramRepository;
+import com.example.diagramdesigner.repository.DiagramFingerprint;
+import com.example.diagramdesigner.repository.DiagramSummary;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
@@ -23,25 +42,46 @@ public class DiagramService {
 
     private static final Logger logger = LoggerFactory.getLogger(DiagramService.class);
 
+    // Rows per saveAll/flush during the startup import
+    static final int IMPORT_BATCH_SIZE = 100;
+
+    /** A config file read for import. */
+    private record ConfigFile(String name, String content, String title, String hash, LocalDateTime modifiedAt) {}
+
     private final DiagramRepository diagramRepository;
     private final ConfigurationProcessor configurationProcessor;
     private final ObjectMapper objectMapper;
     private final ConfigsDirectoryResolver configsDirectoryResolver;
+    private final TransactionTemplate transactionTemplate;
 
     public DiagramService(DiagramRepository diagramRepository,
                           ConfigurationProcessor configurationProcessor,
                           ObjectMapper objectMapper,
-                          ConfigsDirectoryResolver configsDirectoryResolver) {
+                          ConfigsDirectoryResolver configsDirectoryResolver,
+                          PlatformTransactionManager transactionManager) {
         this.diagramRepository = diagramRepository;
         this.configurationProcessor = configurationProcessor;
         this.objectMapper = objectMapper;
         this.configsDirectoryResolver = configsDirectoryResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public List<Diagram> listDiagrams() {
         return diagramRepository.findAll();
     }
 
+    /**
+     * Summaries of the diagrams whose name starts with {@code namePrefix} (all if
+     * null), without loading their configs.
+     */
+    public Page<DiagramSummary> listDiagramSummaries(String namePrefix, Pageable pageable) {
+        return diagramRepository.findByNameStartingWith(namePrefix != null ? namePrefix : "", pageable);
+    }
+
+    public boolean hasDiagrams() {
+        return diagramRepository.count() > 0;
+    }
+
     public Diagram getDiagram(Long id) {
         return diagramRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
@@ -54,6 +94,11 @@ public class DiagramService {
                         "Diagram not found with name: " + name));
     }
 
+    /** A stored diagram's content hash and update time, without loading its config. */
+    public Optional<DiagramFingerprint> findFingerprintByName(String name) {
+        return diagramRepository.findFingerprintByName(name);
+    }
+
     public Diagram createDiagram(DiagramRequest dto) {
         if (diagramRepository.findByName(dto.getName()).isPresent()) {
             throw new ResponseStatusException(HttpStatus.CONFLICT,
@@ -68,6 +113,11 @@ public class DiagramService {
 
     public Diagram updateDiagram(Long id, DiagramRequest dto) {
         Diagram diagram = getDiagram(id);
+        if (isUnchanged(diagram, dto)) {
+            // Saving would only bump updatedAt, and with it the diagram's ETag
+            logger.debug("Update of diagram '{}' changes nothing; not saving", diagram.getName());
+            return diagram;
+        }
 
         diagramRepository.findByName(dto.getName())
                 .filter(existing -> existing.getId() == null || !existing.getId().equals(id))
@@ -82,6 +132,13 @@ public class DiagramService {
         return diagramRepository.save(diagram);
     }
 
+    private static boolean isUnchanged(Diagram diagram, DiagramRequest dto) {
+        return Objects.equals(diagram.getName(), dto.getName())
+                && Objects.equals(diagram.getTitle(), dto.getTitle())
+                && diagram.getContentHash() != null
+                && diagram.getContentHash().equals(Diagram.contentHashOf(dto.getConfig()));
+    }
+
     public void deleteDiagram(Long id) {
         Diagram diagram = diagramRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
@@ -95,49 +152,134 @@ public class DiagramService {
 
     @PostConstruct
     void importConfigFiles() {
+        backfillContentHashes();
         Path configsDir = configsDirectoryResolver.findConfigsDirectory();
         importFromDirectory(configsDir);
     }
 
+    /**
+     * Records the content hash and size of diagrams stored before those columns
+     * existed (Flyway {@code V3}). Only such rows are loaded, so after the first
+     * startup this is a single empty query.
+     */
+    void backfillContentHashes() {
+        List<Diagram> unhashed = diagramRepository.findByContentHashIsNull();
+        if (unhashed.isEmpty()) {
+            return;
+        }
+        // Bulk updates skip @PreUpdate, so updatedAt keeps meaning "last edited"
+        transactionTemplate.executeWithoutResult(status -> unhashed.forEach(diagram ->
+                diagramRepository.recordContentHash(diagram.getId(), Diagram.contentHashOf(diagram.getConfig()),
+                        Diagram.contentSizeOf(diagram.getConfig()))));
+        logger.info("Recorded content hashes for {} existing diagrams", unhashed.size());
+    }
+
+    /**
+     * Imports the directory's {@code *.json} files: new names are inserted, and a
+     * file whose content differs from its row replaces it when the file was
+     * modified after the row was last written (so edits made through the API
+     * survive a restart). Existing rows are fingerprinted with one query, files
+     * are read and parsed in parallel, and all writes share one transaction.
+     */
     void importFromDirectory(Path configsDir) {
         if (configsDir == null) {
             logger.info("No filesystem configs directory found; skipping JSON import");
             return;
         }
 
+        long started = System.nanoTime();
+        List<Path> jsonFiles;
         try (Stream<Path> files = Files.list(configsDir)) {
-            files.filter(p -> p.toString().endsWith(".json"))
-                    .forEach(this::importIfAbsent);
+            jsonFiles = files.filter(p -> p.toString().endsWith(".json")).sorted().toList();
         } catch (IOException e) {
             logger.error("Error scanning configs directory for import", e);
+            return;
+        }
+        if (jsonFiles.isEmpty()) {
+            return;
         }
-    }
 
-    void importIfAbsent(Path jsonFile) {
-        String filename = jsonFile.getFileName().toString();
-        String name = filename.substring(0, filename.length() - ".json".length());
+        Map<String, DiagramFingerprint> existing = diagramRepository.findAllFingerprints().stream()
+                .collect(Collectors.toMap(DiagramFingerprint::name, Function.identity()));
 
-        if (diagramRepository.findByName(name).isPresent()) {
-            logger.debug("Diagram '{}' already exists in DB; skipping import", name);
-            return;
+        List<Diagram> inserts = new ArrayList<>();
+        Map<Long, ConfigFile> updates = new HashMap<>();
+        int unchanged = 0;
+        int kept = 0;
+        for (ConfigFile file : readConfigFiles(jsonFiles)) {
+            DiagramFingerprint row = existing.get(file.name());
+            if (row == null) {
+                Diagram diagram = new Diagram();
+                diagram.setName(file.name());
+                diagram.setTitle(file.title());
+                diagram.setConfig(file.content());
+                inserts.add(diagram);
+            } else if (file.hash().equals(row.contentHash())) {
+                unchanged++;
+            } else if (row.updatedAt() == null || file.modifiedAt().isAfter(row.updatedAt())) {
+                updates.put(row.id(), file);
+            } else {
+                logger.debug("Diagram '{}' was edited after its config file changed; keeping the stored config",
+                        file.name());
+                kept++;
+            }
         }
 
-        try {
-            String content = Files.readString(jsonFile);
-            String title = extractTitle(content);
+        if (!inserts.isEmpty() || !updates.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Diagram> changed = diagramRepository.findAllById(updates.keySet());
+                for (Diagram diagram : changed) {
+                    ConfigFile file = updates.get(diagram.getId());
+                    diagram.setTitle(file.title());
+                    diagram.setConfig(file.content());
+                }
+                saveInBatches(inserts);
+                saveInBatches(changed);
+            });
+        }
 
-            Diagram diagram = new Diagram();
-            diagram.setName(name);
-            diagram.setTitle(title);
-            diagram.setConfig(content);
-            diagramRepository.save(diagram);
+        logger.info("Imported {} new and {} changed diagrams from {} ({} unchanged, {} kept with newer edits) in {} ms",
+                inserts.size(), updates.size(), configsDir, unchanged, kept,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
 
-            logger.info("Imported diagram '{}' from {}", name, jsonFile.getFileName());
-        } catch (IOException e) {
-            logger.error("Failed to import config file: {}", jsonFile, e);
+    private void saveInBatches(List<Diagram> diagrams) {
+        for (int from = 0; from < diagrams.size(); from += IMPORT_BATCH_SIZE) {
+            diagramRepository.saveAll(diagrams.subList(from, Math.min(from + IMPORT_BATCH_SIZE, diagrams.size())));
+            diagramRepository.flush();
+        }
+    }
+
+    // Reads and parses the files on virtual threads; unreadable files are logged and left out
+    private List<ConfigFile> readConfigFiles(List<Path> jsonFiles) {
+        List<Future<ConfigFile>> reads = new ArrayList<>(jsonFiles.size());
+        try (ExecutorService executor =
+                     Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("config-import-", 0).factory())) {
+            for (Path jsonFile : jsonFiles) {
+                reads.add(executor.submit(() -> readConfigFile(jsonFile)));
+            }
+        }
+        List<ConfigFile> files = new ArrayList<>(reads.size());
+        for (int i = 0; i < reads.size(); i++) {
+            try {
+                files.add(reads.get(i).resultNow());
+            } catch (IllegalStateException e) {
+                logger.error("Failed to import config file: {}", jsonFiles.get(i), reads.get(i).exceptionNow());
+            }
         }
+        return files;
     }
 
+    private ConfigFile readConfigFile(Path jsonFile) throws IOException {
+        String filename = jsonFile.getFileName().toString();
+        String content = Files.readString(jsonFile);
+        LocalDateTime modifiedAt = LocalDateTime.ofInstant(
+                Files.getLastModifiedTime(jsonFile).toInstant(), ZoneId.systemDefault());
+        return new ConfigFile(filename.substring(0, filename.length() - ".json".length()), content,
+                extractTitle(content), Diagram.contentHashOf(content), modifiedAt);
+    }
+
+
     private String extractTitle(String jsonContent) {
         try {
             JsonNode root = objectMapper.readTree(jsonContent);
@@ -0,0 +1,131 @@
+package com.example.diagramdesigner.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compressed file holding the proxy's latest cached upstream values, so a
+ * restarted instance can serve them while it refreshes.
+ *
+ * Entries are keyed by the full proxy cache key, which already includes the auth
+ * fingerprint, so a value is only ever served back to requests resolving to the
+ * same credentials. Writes go to a temporary file that replaces the snapshot
+ * atomically; a missing or unreadable snapshot simply loads as empty.
+ */
+class MetricsCacheSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsCacheSnapshot.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+
+    MetricsCacheSnapshot(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    record Entry(String key, long fetchedAt, Object value) {}
+
+    /**
+     * Replace the snapshot with the given entries.
+     */
+    void write(Iterable<Entry> entries) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp));
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeNumberField("version", FORMAT_VERSION);
+                generator.writeArrayFieldStart("entries");
+                for (Entry entry : entries) {
+                    generator.writeStartObject();
+                    generator.writeStringField("k", entry.key());
+                    generator.writeNumberField("t", entry.fetchedAt());
+                    generator.writeFieldName("v");
+                    objectMapper.writeValue(generator, entry.value());
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read entries fetched no earlier than {@code notBefore} (epoch ms).
+     */
+    List<Entry> read(long notBefore) {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isRegularFile(file)) {
+            return entries;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file));
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Snapshot is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("version".equals(field)) {
+                    if (parser.getIntValue() != FORMAT_VERSION) {
+                        logger.info("Ignoring metrics cache snapshot with unsupported version {}", parser.getIntValue());
+                        return entries;
+                    }
+                } else if ("entries".equals(field)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Entry entry = readEntry(parser);
+                        if (entry.key() != null && entry.value() != null && entry.fetchedAt() >= notBefore) {
+                            entries.add(entry);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read metrics cache snapshot {}: {}", file, e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private Entry readEntry(JsonParser parser) throws IOException {
+        String key = null;
+        long fetchedAt = 0;
+        Object value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "k" -> key = parser.getValueAsString();
+                case "t" -> fetchedAt = parser.getLongValue();
+                case "v" -> value = objectMapper.readValue(parser, Object.class);
+                default -> parser.skipChildren();
+            }
+        }
+        return new Entry(key, fetchedAt, value);
+    }
+}
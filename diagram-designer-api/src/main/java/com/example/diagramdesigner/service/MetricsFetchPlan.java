@@ -0,0 +1,77 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.metrics.FieldPath;
+import com.example.diagramdesigner.metrics.FieldSelection;
+
+import java.util.List;
+
+/**
+ * Everything needed to fetch the status and dataGrid values of one diagram,
+ * compiled once from its config by {@link MetricsFetchPlanner}.
+ *
+ * Upstream URLs are resolved and validated at compile time and merged by proxy
+ * cache key (URL, node and auth fingerprint), so each distinct upstream appears
+ * once in {@link #sources()} however many bindings read from it, and only the
+ * fields its bindings read are extracted from the response. Bindings refer
+ * to their source by index and carry a compiled {@link FieldPath}; a binding
+ * whose URL could not be resolved has no source and an error instead. Derived
+ * dataGrid items bind each of their inputs to a source the same way.
+ */
+public final class MetricsFetchPlan {
+
+    /** Source index of a binding that cannot be fetched. */
+    public static final int NO_SOURCE = -1;
+
+    private final String diagramName;
+    private final String config;
+    private final List<Source> sources;
+    private final List<NodeBinding> nodes;
+
+    MetricsFetchPlan(String diagramName, String config, List<Source> sources, List<NodeBinding> nodes) {
+        this.diagramName = diagramName;
+        this.config = config;
+        this.sources = List.copyOf(sources);
+        this.nodes = List.copyOf(nodes);
+    }
+
+    /** One upstream request; {@code fields} is null when the whole body is needed. */
+    public record Source(String url, String node, String cacheKey, FieldSelection fields) {}
+
+    public record StatusBinding(int source, FieldPath valueField, String upValue, String downValue, String error) {}
+
+    /** A dataGrid value; a derived item has no source of its own and reads its inputs' sources instead. */
+    public record ItemBinding(String label, int source, FieldPath valueField, String error, DerivedBinding derived) {
+
+        public ItemBinding(String label, int source, FieldPath valueField, String error) {
+            this(label, source, valueField, error, null);
+        }
+    }
+
+    /**
+     * A derived dataGrid value: {@code expression} over its inputs, listed in the
+     * order the compiled expression expects them. {@code definitionKey} identifies
+     * the expression's rate/delta state.
+     */
+    public record DerivedBinding(String expression, String definitionKey, List<DerivedInputBinding> inputs) {}
+
+    public record DerivedInputBinding(String name, int source, FieldPath valueField) {}
+
+    public record NodeBinding(String name, StatusBinding status, List<ItemBinding> dataGrid) {}
+
+    public String getDiagramName() {
+        return diagramName;
+    }
+
+    public List<Source> sources() {
+        return sources;
+    }
+
+    public List<NodeBinding> nodes() {
+        return nodes;
+    }
+
+    /** The raw config this plan was compiled from. */
+    String config() {
+        return config;
+    }
+}
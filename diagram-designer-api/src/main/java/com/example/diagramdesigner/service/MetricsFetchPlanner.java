@@ -0,0 +1,388 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.CacheProperties;
+import com.example.diagramdesigner.metrics.DerivedExpression;
+import com.example.diagramdesigner.metrics.FieldPath;
+import com.example.diagramdesigner.metrics.FieldSelection;
+import com.example.diagramdesigner.repository.DiagramFingerprint;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Compiles diagram configs into {@link MetricsFetchPlan}s and keeps them until the
+ * diagram changes.
+ *
+ * Compilation applies the same variable substitution as the config endpoints, then
+ * resolves service names, applies the proxy's URL validation and binds each URL to
+ * its node's credentials up front, so serving a diagram's metrics does none of that
+ * per request. Stored diagrams are planned from the database, other diagrams
+ * from their config file or bundled config. DataGrid items with an {@code expression} and {@code inputs} are
+ * compiled into derived bindings over the same sources. A plan is dropped as soon as a variable or service URL it was
+ * compiled with changes, and otherwise expires with the diagram cache TTL.
+ */
+@Component
+public class MetricsFetchPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsFetchPlanner.class);
+
+    private final ConfigurationProcessor configurationProcessor;
+    private final MetricsUrlValidator urlValidator;
+    private final ServiceDiscovery serviceDiscovery;
+    private final MetricsProxyService metricsProxyService;
+    private final DiagramService diagramService;
+    private final ConfigsDirectoryResolver configsDirectoryResolver;
+    private final ConfigsDirectoryWatcher configsDirectoryWatcher;
+    private final ObjectMapper objectMapper;
+    // By document (see ConfigsInvalidatedEvent), so stored diagrams and config files never share a plan
+    private final Cache<String, CompiledPlan> plans;
+    // Service names each plan resolved in its node URLs, by document
+    private final ConfigDependencyIndex boundServices = new ConfigDependencyIndex();
+    private final boolean recompileOnChange;
+
+    public MetricsFetchPlanner(ConfigurationProcessor configurationProcessor, MetricsUrlValidator urlValidator,
+            ServiceDiscovery serviceDiscovery, MetricsProxyService metricsProxyService, DiagramService diagramService,
+            ConfigsDirectoryResolver configsDirectoryResolver, ConfigsDirectoryWatcher configsDirectoryWatcher,
+            ObjectMapper objectMapper, CacheProperties cacheProperties) {
+        this.configurationProcessor = configurationProcessor;
+        this.urlValidator = urlValidator;
+        this.serviceDiscovery = serviceDiscovery;
+        this.metricsProxyService = metricsProxyService;
+        this.diagramService = diagramService;
+        this.configsDirectoryResolver = configsDirectoryResolver;
+        this.configsDirectoryWatcher = configsDirectoryWatcher;
+        this.objectMapper = objectMapper;
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getDiagramCache().getMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(cacheProperties.getDiagramCache().getTtlSeconds()))
+                .build();
+        this.recompileOnChange = cacheProperties.getDiagramCache().isRerenderOnChange();
+    }
+
+    /**
+     * The fetch plan for a diagram by name: the stored diagram if there is one,
+     * else the {@code <name>.json} config file, or the bundled config when there
+     * is no configs directory. Compiled on first use and recompiled only when the
+     * stored diagram's content hash (read without its config) or the file's
+     * version has changed.
+     *
+     * @throws ResponseStatusException (404) if there is no such diagram
+     */
+    public MetricsFetchPlan planFor(String name) {
+        Optional<DiagramFingerprint> stored = diagramService.findFingerprintByName(name);
+        if (stored.isPresent()) {
+            DiagramFingerprint fingerprint = stored.get();
+            // Hashes are backfilled at startup; the update time only covers rows written since by older code
+            String version = fingerprint.contentHash() != null
+                    ? fingerprint.contentHash() : "updated:" + fingerprint.updatedAt();
+            return planFor(ConfigsInvalidatedEvent.DIAGRAM + name, name, version,
+                    () -> diagramService.getDiagramByName(name).getConfig());
+        }
+        return planForFile(name, name + ".json");
+    }
+
+    private MetricsFetchPlan planForFile(String name, String filename) {
+        String document = ConfigsInvalidatedEvent.DIAGRAM_FILE + filename;
+        Path configsDir = configsDirectoryResolver.findConfigsDirectory();
+        if (configsDir != null) {
+            Path configsRoot = configsDir.toAbsolutePath().normalize();
+            Path configPath = configsRoot.resolve(filename).normalize();
+            if (!configPath.startsWith(configsRoot) || !Files.isRegularFile(configPath)) {
+                throw notFound(name);
+            }
+            // Taken before reading, so a change made while compiling is never cached as current
+            String version = configsDirectoryWatcher.isWatching(configsDir)
+                    ? "watched:" + configsDirectoryWatcher.versionOf(filename)
+                    : "modified:" + lastModified(configPath);
+            return planFor(document, name, version, () -> Files.readString(configPath));
+        }
+
+        ClassPathResource resource = new ClassPathResource("configs/" + filename);
+        if (!resource.exists()) {
+            throw notFound(name);
+        }
+        // Bundled configs do not change at runtime
+        return planFor(document, name, "bundled", () -> resource.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    private MetricsFetchPlan planFor(String document, String name, String version, ConfigReader reader) {
+        CompiledPlan cached = plans.getIfPresent(document);
+        if (cached != null && cached.version().equals(version)) {
+            return cached.plan();
+        }
+        String config;
+        try {
+            config = reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read config of diagram " + name, e);
+        }
+        MetricsFetchPlan plan = compile(document, name, config != null ? config : "");
+        plans.put(document, new CompiledPlan(version, plan));
+        return plan;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ResponseStatusException notFound(String name) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Diagram not found with name: " + name);
+    }
+
+    @EventListener
+    public void onConfigsInvalidated(ConfigsInvalidatedEvent event) {
+        invalidate(event.documents());
+    }
+
+    @EventListener
+    public void onServiceUrlChanged(ServiceUrlChangedEvent event) {
+        invalidate(boundServices.invalidate(event.serviceNames()));
+    }
+
+    private void invalidate(Set<String> documents) {
+        for (String document : documents) {
+            CompiledPlan stale = plans.asMap().remove(document);
+            if (stale != null && recompileOnChange) {
+                // Compiled from the same raw config, so planFor still accepts it
+                MetricsFetchPlan plan = stale.plan();
+                plans.put(document, new CompiledPlan(stale.version(),
+                        compile(document, plan.getDiagramName(), plan.config())));
+            }
+        }
+    }
+
+    // Visible for testing
+    MetricsFetchPlan compile(String diagramName, String config) {
+        return compile(ConfigsInvalidatedEvent.DIAGRAM + diagramName, diagramName, config);
+    }
+
+    private MetricsFetchPlan compile(String document, String diagramName, String config) {
+        List<PendingSource> sources = new ArrayList<>();
+        Map<String, Integer> sourceIndexes = new HashMap<>();
+        List<MetricsFetchPlan.NodeBinding> nodes = new ArrayList<>();
+        Set<String> services = new HashSet<>();
+
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(configurationProcessor.processVariableSubstitution(document, config));
+        } catch (Exception e) {
+            logger.warn("Cannot compile metrics plan for diagram {}: {}", diagramName, e.getMessage());
+            return new MetricsFetchPlan(diagramName, config, List.of(), nodes);
+        }
+
+        for (JsonNode node : root.path("nodes")) {
+            String nodeName = node.path("name").asText(null);
+            if (nodeName == null) {
+                continue;
+            }
+
+            MetricsFetchPlan.StatusBinding status = null;
+            JsonNode statusNode = node.path("status");
+            if (statusNode.isObject()) {
+                String valueField = statusNode.path("valueField").asText(null);
+                Bound bound = bind(statusNode.path("url").asText(null), valueField, nodeName, sources, sourceIndexes,
+                        services);
+                status = new MetricsFetchPlan.StatusBinding(bound.source(), bound.path(),
+                        statusNode.path("upValue").asText(null), statusNode.path("downValue").asText(null),
+                        bound.error());
+            }
+
+            List<MetricsFetchPlan.ItemBinding> dataGrid = new ArrayList<>();
+            for (JsonNode item : node.path("dataGrid")) {
+                String label = item.path("label").asText("");
+                if (item.hasNonNull("expression")) {
+                    dataGrid.add(bindDerived(label, item, nodeName, sources, sourceIndexes, services));
+                    continue;
+                }
+                String valueField = item.path("valueField").asText(null);
+                Bound bound = bind(item.path("url").asText(null), valueField, nodeName, sources, sourceIndexes,
+                        services);
+                dataGrid.add(new MetricsFetchPlan.ItemBinding(label, bound.source(), bound.path(), bound.error()));
+            }
+
+            if (status != null || !dataGrid.isEmpty()) {
+                nodes.add(new MetricsFetchPlan.NodeBinding(nodeName, status, dataGrid));
+            }
+        }
+
+        // Each source extracts just the fields its bindings read (or the whole body if one reads it all)
+        List<MetricsFetchPlan.Source> compiled = new ArrayList<>(sources.size());
+        for (PendingSource source : sources) {
+            FieldSelection fields = source.wholeBody ? null : FieldSelection.of(source.paths);
+            compiled.add(new MetricsFetchPlan.Source(source.url, source.node,
+                    metricsProxyService.cacheKeyFor(source.url, source.node, fields), fields));
+        }
+
+        boundServices.record(document, services);
+        logger.debug("Compiled metrics plan for diagram {}: {} nodes, {} upstream sources",
+                diagramName, nodes.size(), compiled.size());
+        return new MetricsFetchPlan(diagramName, config, compiled, nodes);
+    }
+
+    /**
+     * Bind a derived dataGrid item ({@code expression} plus named {@code inputs},
+     * each a {@code url} and {@code valueField}). Every input is resolved like a
+     * plain item; if any of them cannot be, the whole item is an error and none
+     * of its inputs is fetched.
+     */
+    private MetricsFetchPlan.ItemBinding bindDerived(String label, JsonNode item, String nodeName,
+            List<PendingSource> sources, Map<String, Integer> sourceIndexes, Set<String> services) {
+        String text = item.path("expression").asText();
+        DerivedExpression expression;
+        try {
+            expression = DerivedExpression.compile(text);
+        } catch (IllegalArgumentException e) {
+            return derivedError(label, e.getMessage());
+        }
+        JsonNode inputs = item.path("inputs");
+        if (!inputs.isObject() || inputs.isEmpty()) {
+            return derivedError(label, "Derived metric requires an 'inputs' object");
+        }
+        if (inputs.size() > MetricsProxyService.MAX_DERIVED_INPUTS) {
+            return derivedError(label, "Derived metric has more than " + MetricsProxyService.MAX_DERIVED_INPUTS + " inputs");
+        }
+
+        List<String> names = expression.inputNames();
+        List<Resolved> resolved = new ArrayList<>(names.size());
+        for (String name : names) {
+            JsonNode spec = inputs.path(name);
+            if (!spec.isObject()) {
+                return derivedError(label, "No input defined for '" + name + "'");
+            }
+            Resolved input = resolve(spec.path("url").asText(null), spec.path("valueField").asText(null), services);
+            if (input.error() != null) {
+                return derivedError(label, "Input '" + name + "': " + input.error());
+            }
+            resolved.add(input);
+        }
+
+        // Keyed like a batch definition: expression, then each input's node, URL and field
+        StringBuilder definition = new StringBuilder(text);
+        List<MetricsFetchPlan.DerivedInputBinding> bindings = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Resolved input = resolved.get(i);
+            definition.append('\0').append(names.get(i)).append('=').append(nodeName)
+                    .append('\0').append(input.url()).append('\0').append(input.path());
+            bindings.add(new MetricsFetchPlan.DerivedInputBinding(names.get(i),
+                    register(input, nodeName, sources, sourceIndexes), input.path()));
+        }
+        return new MetricsFetchPlan.ItemBinding(label, MetricsFetchPlan.NO_SOURCE, FieldPath.compile(null), null,
+                new MetricsFetchPlan.DerivedBinding(text, definition.toString(), bindings));
+    }
+
+    private static MetricsFetchPlan.ItemBinding derivedError(String label, String error) {
+        return new MetricsFetchPlan.ItemBinding(label, MetricsFetchPlan.NO_SOURCE, FieldPath.compile(null), error);
+    }
+
+    private Bound bind(String url, String valueField, String nodeName, List<PendingSource> sources,
+            Map<String, Integer> sourceIndexes, Set<String> services) {
+        Resolved resolved = resolve(url, valueField, services);
+        if (resolved.error() != null) {
+            return new Bound(MetricsFetchPlan.NO_SOURCE, resolved.path(), resolved.error());
+        }
+        return new Bound(register(resolved, nodeName, sources, sourceIndexes), resolved.path(), null);
+    }
+
+    // Compile the field and resolve the URL to the upstream it is fetched from
+    private Resolved resolve(String url, String valueField, Set<String> services) {
+        FieldPath path;
+        try {
+            path = FieldPath.compile(valueField);
+        } catch (IllegalArgumentException e) {
+            return Resolved.failed(FieldPath.compile(null), e.getMessage());
+        }
+        if (!StringUtils.hasText(url)) {
+            return Resolved.failed(path, "No URL configured");
+        }
+
+        // Same resolution rules as the /api/metrics endpoint
+        String prefix = MetricsProxyService.isStreamUrl(url) ? MetricsProxyService.STREAM_URL_PREFIX : "";
+        String upstreamUrl = url.substring(prefix.length());
+        String resolvedUrl = url;
+        if (!MetricsProxyService.isPushUrl(url) && !urlValidator.isValidUrl(upstreamUrl)) {
+            if (!urlValidator.isServiceName(upstreamUrl)) {
+                return Resolved.failed(path, "Invalid URL format and not a recognized service name: " + url);
+            }
+            services.add(upstreamUrl.split("/", 2)[0]);
+            String serviceUrl = serviceDiscovery.resolveServiceUrl(upstreamUrl);
+            if (serviceUrl == null) {
+                return Resolved.failed(path, "Service not found in registry: " + url);
+            }
+            resolvedUrl = prefix + serviceUrl;
+        }
+        return new Resolved(resolvedUrl, valueField, path, null);
+    }
+
+    // The index of the source a resolved URL is fetched by, adding the source on first use
+    private int register(Resolved resolved, String nodeName, List<PendingSource> sources,
+            Map<String, Integer> sourceIndexes) {
+        String cacheKey = metricsProxyService.cacheKeyFor(resolved.url(), nodeName, null);
+        int index = sourceIndexes.computeIfAbsent(cacheKey, k -> {
+            sources.add(new PendingSource(resolved.url(), nodeName));
+            return sources.size() - 1;
+        });
+        PendingSource source = sources.get(index);
+        if (resolved.path().segments().isEmpty()) {
+            source.wholeBody = true;
+        } else {
+            source.paths.add(resolved.valueField());
+        }
+        return index;
+    }
+
+    /** A plan and the version of the config it was compiled from (content hash or file version). */
+    private record CompiledPlan(String version, MetricsFetchPlan plan) {}
+
+    @FunctionalInterface
+    private interface ConfigReader {
+        String read() throws IOException;
+    }
+
+    private record Bound(int source, FieldPath path, String error) {}
+
+    private record Resolved(String url, String valueField, FieldPath path, String error) {
+
+        static Resolved failed(FieldPath path, String error) {
+            return new Resolved(null, null, path, error);
+        }
+    }
+
+    private static final class PendingSource {
+        final String url;
+        final String node;
+        final List<String> paths = new ArrayList<>();
+        boolean wholeBody;
+
+        PendingSource(String url, String node) {
+            this.url = url;
+            this.node = node;
+        }
+    }
+}
@@ -1,67 +1,267 @@
 package com.example.diagramdesigner.service;
 
 import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.example.diagramdesigner.metrics.DerivedExpression;
+import com.example.diagramdesigner.metrics.FieldPath;
+import com.example.diagramdesigner.metrics.FieldSelection;
+import com.example.diagramdesigner.metrics.StreamingFieldExtractor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
-public class MetricsProxyService {
+public class MetricsProxyService implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(MetricsProxyService.class);
     // Null byte cannot appear in valid URLs or node names, making it a collision-free separator
     private static final String CACHE_KEY_SEPARATOR = "\0";
 
+    /** Response header carrying the recommended delay (ms) before the next poll of the same metric. */
+    public static final String POLL_HINT_HEADER = "X-Poll-Interval-Hint";
+    /** Batch response field mapping each request key to its recommended next-poll delay (ms). */
+    public static final String POLL_HINTS_FIELD = "_pollHints";
+
+    /** Source URL prefix for metrics pushed to {@code /api/metrics/push} instead of polled. */
+    public static final String PUSH_URL_PREFIX = "push:";
+    /** Source URL prefix for upstreams read as a long-lived event stream (SSE or JSON values). */
+    public static final String STREAM_URL_PREFIX = "stream:";
+
+    static final int MAX_DERIVED_INPUTS = 16;
+    private static final Pattern PUSH_NAME = Pattern.compile("[A-Za-z0-9._:-]{1,200}");
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+    // Largest upstream body decoded in memory (selected-field requests are streamed instead)
+    private static final int MAX_BUFFERED_BODY_BYTES = 1024 * 1024;
+
     private final WebClient webClient;
     private final MetricsProxyProperties properties;
     private final ObjectMapper objectMapper;
+    // Batch values are flushed with the generator's buffer, not one by one
+    private final ObjectWriter batchValueWriter;
     private final AuthenticationResolver authenticationResolver;
+    private final PollCoordinator pollCoordinator;
+    private final ServiceDiscovery serviceDiscovery;
+    // Batch items reach the service unvalidated, so their upstream URLs are checked here
+    private final MetricsUrlValidator urlValidator;
+    private final RequestHedger requestHedger;
+    // Null when the memory budget for buffered bodies is disabled
+    private final UpstreamByteBudget byteBudget;
 
     private final Cache<String, Object> cache;
     private final ConcurrentMap<String, Mono<Object>> inFlight = new ConcurrentHashMap<>();
+    private final PollIntervalAdvisor pollIntervalAdvisor;
+    // Values restored from the snapshot, served until the first successful refresh
+    private final ConcurrentMap<String, MetricsCacheSnapshot.Entry> staleEntries = new ConcurrentHashMap<>();
+    private final MetricsCacheSnapshot snapshot;
+    private final DerivedMetricRegistry derivedMetrics;
+    // Pushed values by cache key, kept apart so pushes never evict polled values (and vice versa)
+    private final Cache<String, Object> pushedValues;
+    // Pushed metric name -> cache key for the names in pushedValues, bounded by metrics.proxy.push.max-keys
+    private final ConcurrentMap<String, String> pushedKeys = new ConcurrentHashMap<>();
+    private final UpstreamStreams upstreamStreams;
 
     @Autowired
     public MetricsProxyService(MetricsProxyProperties properties, ObjectMapper objectMapper,
-            AuthenticationResolver authenticationResolver) {
+            AuthenticationResolver authenticationResolver, PollCoordinator pollCoordinator,
+            ServiceDiscovery serviceDiscovery, MetricsUrlValidator urlValidator) {
         this.properties = properties;
         this.objectMapper = objectMapper;
+        this.batchValueWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
         this.authenticationResolver = authenticationResolver;
+        this.pollCoordinator = pollCoordinator;
+        this.serviceDiscovery = serviceDiscovery;
+        this.urlValidator = urlValidator;
+        this.requestHedger = new RequestHedger(properties.getHedging(), properties.getMaxCacheSize());
+        MetricsProxyProperties.ByteBudget budgetProperties = properties.getByteBudget();
+        this.byteBudget = budgetProperties.isEnabled()
+                ? new UpstreamByteBudget(budgetProperties.getMaxBytes(), Duration.ofMillis(budgetProperties.getMaxWaitMs()))
+                : null;
         this.webClient = WebClient.builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024)) // 1MB
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_BUFFERED_BODY_BYTES))
                 .build();
         this.cache = Caffeine.newBuilder()
                 .maximumSize(properties.getMaxCacheSize())
                 .expireAfterWrite(Duration.ofMillis(properties.getCacheTtlMs()))
                 .build();
+        this.pushedValues = Caffeine.newBuilder()
+                .maximumSize(properties.getPush().getMaxKeys())
+                .expireAfterWrite(Duration.ofMillis(properties.getPush().getTtlMs()))
+                // Runs as the entry is removed, so an expired name stops counting towards max-keys
+                .evictionListener((String key, Object value, RemovalCause cause) -> pushedKeys.remove(pushedName(key)))
+                .build();
+        this.pollIntervalAdvisor = new PollIntervalAdvisor(properties.getMaxCacheSize(),
+                Duration.ofMillis(properties.getAdaptivePolling().getMaxIntervalMs() * 2),
+                System::currentTimeMillis);
+        this.derivedMetrics = new DerivedMetricRegistry(properties.getMaxCacheSize(),
+                Duration.ofMillis(properties.getAdaptivePolling().getMaxIntervalMs() * 2));
+        MetricsProxyProperties.Snapshot snapshotProperties = properties.getSnapshot();
+        this.snapshot = snapshotProperties.isEnabled() && properties.isEnableCaching()
+                ? new MetricsCacheSnapshot(Path.of(snapshotProperties.getPath()), objectMapper)
+                : null;
+        this.upstreamStreams = new UpstreamStreams(properties.getStreaming(), this::storeStreamedValue,
+                System::currentTimeMillis);
+        restoreSnapshot();
+    }
+
+    /**
+     * Expose the upstream memory budget: bytes reserved for buffered bodies, the
+     * limit, and requests waiting for room.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (byteBudget == null) {
+            return;
+        }
+        Gauge.builder("metrics.proxy.upstream.buffered.bytes", byteBudget, UpstreamByteBudget::inUse)
+                .description("Bytes reserved for upstream response bodies being buffered")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("metrics.proxy.upstream.buffered.bytes.max", byteBudget, UpstreamByteBudget::limit)
+                .description("Memory budget for buffered upstream response bodies")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("metrics.proxy.upstream.buffered.waiting", byteBudget, UpstreamByteBudget::queued)
+                .description("Upstream requests waiting for room in the memory budget")
+                .register(registry);
     }
 
     public Mono<ResponseEntity<Object>> proxyRequest(String targetUrl, String nodeName) {
-        logger.debug("Proxying request to: {} (node: {})", targetUrl, nodeName);
+        return proxyRequest(targetUrl, nodeName, null, null);
+    }
+
+    /**
+     * Proxy a metrics request, narrowing the adaptive poll-hint bounds with the
+     * caller's own bounds (usually taken from the diagram config). Null bounds fall
+     * back to the configured defaults.
+     */
+    public Mono<ResponseEntity<Object>> proxyRequest(String targetUrl, String nodeName,
+            Long minIntervalMs, Long maxIntervalMs) {
+        return proxyRequest(targetUrl, nodeName, minIntervalMs, maxIntervalMs, null);
+    }
+
+    /**
+     * Proxy a metrics request, returning only the selected fields of the upstream
+     * response (in the response's own shape) if {@code fields} is non-null. The
+     * selected fields are read from the streamed body without buffering the rest,
+     * so responses far larger than the in-memory limit can be used.
+     */
+    public Mono<ResponseEntity<Object>> proxyRequest(String targetUrl, String nodeName,
+            Long minIntervalMs, Long maxIntervalMs, FieldSelection fields) {
+        logger.debug("Proxying request to: {} (node: {}, fields: {})", targetUrl, nodeName, fields);
+
+        String cacheKey = cacheKeyFor(targetUrl, nodeName, fields);
+        return fetchValue(targetUrl, nodeName, cacheKey, fields)
+                .map(body -> okWithPollHint(body, cacheKey, minIntervalMs, maxIntervalMs))
+                .onErrorResume(this::handleError);
+    }
+
+    public static boolean isPushUrl(String url) {
+        return url != null && url.startsWith(PUSH_URL_PREFIX);
+    }
 
+    public static boolean isStreamUrl(String url) {
+        return url != null && url.startsWith(STREAM_URL_PREFIX);
+    }
+
+    // Package-private so fetch plans can bind their URLs to a cache key up front
+    String cacheKeyFor(String targetUrl, String nodeName, FieldSelection fields) {
+        if (isPushUrl(targetUrl)) {
+            // Pushed values are stored whole and shared by every node
+            return buildCacheKey(targetUrl, null, null);
+        }
+        if (isStreamUrl(targetUrl)) {
+            // Streams deliver whole events, so field selections share one connection
+            String streamUrl = targetUrl.substring(STREAM_URL_PREFIX.length());
+            return buildCacheKey(targetUrl, nodeName, authenticationResolver.getAuthFingerprint(streamUrl, nodeName));
+        }
         String authFingerprint = authenticationResolver.getAuthFingerprint(targetUrl, nodeName);
-        String cacheKey = buildCacheKey(targetUrl, nodeName, authFingerprint);
+        String key = buildCacheKey(targetUrl, nodeName, authFingerprint);
+        // An extract is a different value from the full body of the same URL
+        return fields != null ? key + CACHE_KEY_SEPARATOR + fields.canonical() : key;
+    }
+
+    /**
+     * The current value for a cache key: cached, restored from the snapshot, or
+     * fetched (once, however many callers are waiting) from the upstream.
+     */
+    private Mono<Object> fetchValue(String targetUrl, String nodeName, String cacheKey, FieldSelection fields) {
+        if (isPushUrl(targetUrl)) {
+            return pushedValue(targetUrl, cacheKey);
+        }
+        if (isStreamUrl(targetUrl)) {
+            return streamedValue(targetUrl, nodeName, cacheKey);
+        }
 
         // Check cache first
         if (properties.isEnableCaching()) {
             Object cached = cache.getIfPresent(cacheKey);
             if (cached != null) {
                 logger.debug("Returning cached response for: {} (key: {})", targetUrl, cacheKey);
-                return Mono.just(ResponseEntity.ok(cached));
+                return Mono.just(cached);
+            }
+
+            MetricsCacheSnapshot.Entry stale = staleEntries.get(cacheKey);
+            if (stale != null) {
+                if (System.currentTimeMillis() - stale.fetchedAt() < properties.getSnapshot().getMaxAgeMs()) {
+                    // Serve the restored value now and refresh it in the background
+                    logger.debug("Returning snapshot value for: {} while refreshing", targetUrl);
+                    sharedFetch(targetUrl, nodeName, cacheKey, fields).subscribe(
+                            response -> { },
+                            error -> logger.debug("Background refresh failed for {}: {}", targetUrl, error.getMessage()));
+                    return Mono.just(stale.value());
+                }
+                staleEntries.remove(cacheKey, stale);
             }
         }
 
@@ -70,50 +270,684 @@ public class MetricsProxyService {
         // fires when the cached Mono terminates, so very late subscribers after termination will
         // still receive the cached value/error, but a new upstream request may be created for
         // subsequent callers. This is an acceptable trade-off for the current requirements.
-        Mono<Object> shared = inFlight.computeIfAbsent(cacheKey, k ->
-                makeAuthenticatedRequest(targetUrl, nodeName)
+        return sharedFetch(targetUrl, nodeName, cacheKey, fields);
+    }
+
+    /**
+     * The latest pushed value for a {@code push:} source. Pushed sources are never
+     * polled, so a key nothing has been pushed to (or whose value has expired)
+     * fails instead of falling back to an upstream request.
+     */
+    private Mono<Object> pushedValue(String targetUrl, String cacheKey) {
+        Object pushed = pushedValues.getIfPresent(cacheKey);
+        if (pushed != null) {
+            return Mono.just(pushed);
+        }
+        MetricsCacheSnapshot.Entry stale = staleEntries.get(cacheKey);
+        if (stale != null && System.currentTimeMillis() - stale.fetchedAt() < properties.getSnapshot().getMaxAgeMs()) {
+            return Mono.just(stale.value());
+        }
+        return Mono.error(new NoPushedValueException(targetUrl));
+    }
+
+    /**
+     * The latest event of a {@code stream:} source, opening its upstream stream on
+     * first use. Each event already updates the cache, so reads never poll; the
+     * first read of a new stream waits up to the request timeout for an event.
+     */
+    private Mono<Object> streamedValue(String targetUrl, String nodeName, String cacheKey) {
+        String streamUrl = targetUrl.substring(STREAM_URL_PREFIX.length());
+        Mono<Object> latest = upstreamStreams.latest(cacheKey, streamUrl, () -> openStream(streamUrl, nodeName));
+        Object cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return latest.timeout(Duration.ofMillis(properties.getTimeoutMs()));
+    }
+
+    private void storeStreamedValue(String cacheKey, Object value) {
+        cache.put(cacheKey, value);
+        staleEntries.remove(cacheKey);
+        pollIntervalAdvisor.recordSample(cacheKey, value);
+    }
+
+    /**
+     * Open one upstream stream connection. Server-sent events are decoded from
+     * their {@code data} (JSON, or kept as text); any other content type is read
+     * as a stream of JSON values, such as newline-delimited JSON.
+     */
+    // Visible for testing (package-private to allow Mockito spy in tests)
+    Flux<Object> openStream(String targetUrl, String nodeName) {
+        return webClient.get()
+                .uri(targetUrl)
+                .headers(headers -> authenticationResolver.addAuthenticationHeaders(headers, targetUrl, nodeName))
+                .headers(headers -> {
+                    headers.add("User-Agent", "Diagram-Designer-Proxy/1.0");
+                    headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON));
+                })
+                .exchangeToFlux(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.createError().flux();
+                    }
+                    MediaType contentType = response.headers().contentType().orElse(MediaType.APPLICATION_NDJSON);
+                    if (MediaType.TEXT_EVENT_STREAM.isCompatibleWith(contentType)) {
+                        return response.bodyToFlux(SSE_TYPE).mapNotNull(event -> eventValue(event.data()));
+                    }
+                    return response.bodyToFlux(Object.class);
+                });
+    }
+
+    // Visible for testing
+    Object eventValue(String data) {
+        if (data == null || data.isBlank()) {
+            return null; // Keep-alive or comment-only event
+        }
+        try {
+            return objectMapper.readValue(data, Object.class);
+        } catch (JsonProcessingException e) {
+            return data;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.proxy.streaming.idle-check-ms:60000}")
+    public void closeIdleStreams() {
+        int closed = upstreamStreams.closeIdle();
+        if (closed > 0) {
+            logger.info("Closed {} idle upstream streams; {} still open", closed, upstreamStreams.size());
+        }
+    }
+
+    @PreDestroy
+    public void closeStreams() {
+        upstreamStreams.closeAll();
+    }
+
+    /**
+     * Store pushed metric values. The input is JSON lines, each line an object
+     * mapping metric names to values: {@code {"orders.depth": 42, "orders.rate": 3.5}}.
+     * A name is read back through the source URL {@code push:<name>}.
+     *
+     * Lines are parsed as a token stream straight into the cache: names are
+     * canonicalised by the parser and map to a precomputed cache key, so a numeric
+     * sample costs one boxed number. Values already stored before a malformed line
+     * are kept and counted in the result.
+     */
+    public PushResult ingestPushed(InputStream in) throws IOException {
+        int accepted = 0;
+        int rejected = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    return new PushResult(accepted, rejected, "Each line must be a JSON object of metric values");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String cacheKey = pushedCacheKey(parser.currentName());
+                    JsonToken valueToken = parser.nextToken();
+                    if (cacheKey == null || valueToken == JsonToken.VALUE_NULL) {
+                        parser.skipChildren();
+                        rejected++;
+                        continue;
+                    }
+                    Object value = valueToken.isNumeric()
+                            ? parser.getNumberValue()
+                            : objectMapper.readValue(parser, Object.class);
+                    pushedValues.put(cacheKey, value);
+                    staleEntries.remove(cacheKey);
+                    pollIntervalAdvisor.recordSample(cacheKey, value);
+                    accepted++;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            return new PushResult(accepted, rejected, "Malformed JSON: " + e.getOriginalMessage());
+        }
+        return new PushResult(accepted, rejected, null);
+    }
+
+    // Null if the name is invalid or no new names can be accepted
+    private String pushedCacheKey(String name) {
+        String cacheKey = pushedKeys.get(name);
+        if (cacheKey != null) {
+            return cacheKey;
+        }
+        if (!PUSH_NAME.matcher(name).matches() || !hasRoomForPushedName()) {
+            logger.debug("Rejected pushed metric name: {}", name);
+            return null;
+        }
+        return pushedKeys.computeIfAbsent(name, n -> buildCacheKey(PUSH_URL_PREFIX + n, null, null));
+    }
+
+    private boolean hasRoomForPushedName() {
+        int maxKeys = properties.getPush().getMaxKeys();
+        if (pushedKeys.size() < maxKeys) {
+            return true;
+        }
+        // Expired entries are removed lazily; drop them before turning a name away
+        pushedValues.cleanUp();
+        return pushedKeys.size() < maxKeys;
+    }
+
+    // The metric name of a pushed value's cache key ("push:<name>" plus empty node and auth parts)
+    private static String pushedName(String cacheKey) {
+        return cacheKey.substring(PUSH_URL_PREFIX.length(), cacheKey.indexOf(CACHE_KEY_SEPARATOR));
+    }
+
+    /**
+     * When the value currently served for a cache key was fetched upstream (epoch ms).
+     */
+    private long sampledAt(String cacheKey) {
+        long now = System.currentTimeMillis();
+        if (cacheKey.startsWith(PUSH_URL_PREFIX)) {
+            OptionalLong age = pushedValues.policy().expireAfterWrite().orElseThrow()
+                    .ageOf(cacheKey, TimeUnit.MILLISECONDS);
+            return age.isPresent() ? now - age.getAsLong() : now;
+        }
+        if (properties.isEnableCaching()) {
+            OptionalLong age = cache.policy().expireAfterWrite().orElseThrow().ageOf(cacheKey, TimeUnit.MILLISECONDS);
+            if (age.isPresent()) {
+                return now - age.getAsLong();
+            }
+            MetricsCacheSnapshot.Entry stale = staleEntries.get(cacheKey);
+            if (stale != null) {
+                return stale.fetchedAt();
+            }
+        }
+        return now;
+    }
+
+    private Mono<Object> sharedFetch(String targetUrl, String nodeName, String cacheKey, FieldSelection fields) {
+        return inFlight.computeIfAbsent(cacheKey, k ->
+                fetchUpstream(targetUrl, nodeName, k, fields)
                         .doOnNext(response -> {
                             if (properties.isEnableCaching()) {
                                 cache.put(k, response);
                             }
+                            staleEntries.remove(k);
+                            pollIntervalAdvisor.recordSample(k, response);
                         })
                         .doFinally(signal -> inFlight.remove(k))
                         .cache()
         );
+    }
 
-        return shared
-                .map(ResponseEntity::ok)
-                .onErrorResume(this::handleError);
+    /**
+     * Write the current cache contents (and any restored values not yet refreshed)
+     * to the snapshot file.
+     */
+    @Scheduled(fixedDelayString = "${metrics.proxy.snapshot.interval-ms:60000}",
+            initialDelayString = "${metrics.proxy.snapshot.interval-ms:60000}")
+    @PreDestroy
+    public void writeSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<MetricsCacheSnapshot.Entry> entries = new ArrayList<>();
+        addSnapshotEntries(cache, now, entries);
+        addSnapshotEntries(pushedValues, now, entries);
+        staleEntries.forEach((key, entry) -> {
+            if (!cache.asMap().containsKey(key) && !pushedValues.asMap().containsKey(key)) {
+                entries.add(entry);
+            }
+        });
+        try {
+            snapshot.write(entries);
+            logger.debug("Wrote {} entries to metrics cache snapshot", entries.size());
+        } catch (Exception e) {
+            logger.warn("Failed to write metrics cache snapshot: {}", e.getMessage());
+        }
+    }
+
+    private static void addSnapshotEntries(Cache<String, Object> values, long now,
+            List<MetricsCacheSnapshot.Entry> entries) {
+        Policy.FixedExpiration<String, Object> expiration = values.policy().expireAfterWrite().orElseThrow();
+        values.asMap().forEach((key, value) -> expiration.ageOf(key, TimeUnit.MILLISECONDS)
+                .ifPresent(age -> entries.add(new MetricsCacheSnapshot.Entry(key, now - age, value))));
     }
 
-    public Mono<Map<String, Object>> getBatchMetrics(java.util.List<Map<String, String>> requests) {
-        return reactor.core.publisher.Flux.fromIterable(requests)
+    private void restoreSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        long notBefore = System.currentTimeMillis() - properties.getSnapshot().getMaxAgeMs();
+        for (MetricsCacheSnapshot.Entry entry : snapshot.read(notBefore)) {
+            if (staleEntries.size() >= properties.getMaxCacheSize()) {
+                break;
+            }
+            staleEntries.put(entry.key(), entry);
+        }
+        if (!staleEntries.isEmpty()) {
+            logger.info("Restored {} metric values from snapshot; serving them until refreshed", staleEntries.size());
+        }
+    }
+
+    /**
+     * Fetch a batch of metrics and write the response object incrementally as
+     * results arrive: one field per request key, followed by {@link #POLL_HINTS_FIELD}.
+     *
+     * Keys are unique in the response: the first request with a given key is
+     * fetched, later requests with the same key are skipped. The reserved
+     * {@code _pollHints} key is never used for a result.
+     */
+    public void writeBatchMetrics(List<? extends Map<String, ?>> requests, OutputStream out) throws IOException {
+        List<KeyHint> hints = new ArrayList<>();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<BatchEntry> entries = fetchBatch(requests).toStream()) {
+            generator.writeStartObject();
+            for (BatchEntry entry : (Iterable<BatchEntry>) entries::iterator) {
+                generator.writeFieldName(entry.key());
+                batchValueWriter.writeValue(generator, entry.body());
+                if (entry.pollHintMs() != null) {
+                    hints.add(new KeyHint(entry.key(), entry.pollHintMs()));
+                }
+            }
+            if (!hints.isEmpty()) {
+                generator.writeObjectFieldStart(POLL_HINTS_FIELD);
+                for (KeyHint hint : hints) {
+                    generator.writeNumberField(hint.key(), hint.pollHintMs());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private Flux<BatchEntry> fetchBatch(List<? extends Map<String, ?>> requests) {
+        Set<String> seenKeys = new HashSet<>();
+        return Flux.fromIterable(requests)
+                .filter(req -> {
+                    String expression = stringValue(req, "expression");
+                    String key = batchKey(req);
+                    if ((stringValue(req, "url") == null && expression == null) || POLL_HINTS_FIELD.equals(key)) {
+                        return false;
+                    }
+                    if (!seenKeys.add(key)) {
+                        logger.debug("Skipping duplicate batch key: {}", key);
+                        return false;
+                    }
+                    return true;
+                })
                 .flatMap(req -> {
-                    String url = req.get("url");
-                    String node = req.get("node");
-                    String key = req.getOrDefault("key", url); // Use URL as key if no specific key provided
+                    String key = batchKey(req);
+                    if (stringValue(req, "expression") != null) {
+                        return Mono.defer(() -> fetchDerived(key, req))
+                                .onErrorResume(e -> Mono.just(new BatchEntry(key, Map.of("error", String.valueOf(e.getMessage())), null)));
+                    }
 
-                    if (url == null)
-                        return Mono.empty();
+                    String url = stringValue(req, "url");
+                    if (isStreamUrl(url) && !isAllowedUpstream(url)) {
+                        // A stream holds a long-lived connection, so its target gets the /api/metrics checks
+                        return Mono.just(new BatchEntry(key, Map.of("error", "URL not allowed: " + url), null));
+                    }
 
-                    return proxyRequest(url, node)
+                    // Deferred so a malformed field (e.g. a bad aggregate) fails only this item
+                    return Mono.defer(() -> proxyRequest(url, stringValue(req, "node"),
+                                    parseInterval(stringValue(req, "minIntervalMs")),
+                                    parseInterval(stringValue(req, "maxIntervalMs")),
+                                    FieldSelection.of(fieldList(req.get("fields")))))
                             .map(response -> {
                                 Object body = response.getBody();
-                                return Map.of(key, body != null ? body : Map.of("error", "Empty response"));
+                                return new BatchEntry(key, body != null ? body : Map.of("error", "Empty response"),
+                                        parseInterval(response.getHeaders().getFirst(POLL_HINT_HEADER)));
                             })
-                            .onErrorResume(e -> Mono.just(Map.of(key, Map.of("error", e.getMessage()))));
+                            .onErrorResume(e -> Mono.just(new BatchEntry(key, Map.of("error", String.valueOf(e.getMessage())), null)));
+                });
+    }
+
+    /**
+     * Evaluate a derived batch item: {@code expression} over the named
+     * {@code inputs}, each of which is a {@code url} plus the {@code valueField}
+     * to read from its response. Inputs go through the normal cache, and the
+     * compiled expression (with its rate/delta state) is shared by every request
+     * for the same definition.
+     */
+    private Mono<BatchEntry> fetchDerived(String key, Map<String, ?> req) {
+        String node = stringValue(req, "node");
+        Map<String, DerivedInput> inputs = parseDerivedInputs(req.get("inputs"), node);
+
+        StringBuilder definition = new StringBuilder(stringValue(req, "expression"));
+        inputs.forEach((name, input) -> definition.append(CACHE_KEY_SEPARATOR).append(name)
+                .append('=').append(input.cacheKey()).append(CACHE_KEY_SEPARATOR).append(input.valueField()));
+        DerivedExpression expression = derivedMetrics.get(definition.toString(), stringValue(req, "expression"));
+
+        List<String> names = expression.inputNames();
+        for (String name : names) {
+            if (!inputs.containsKey(name)) {
+                return Mono.just(new BatchEntry(key, Map.of("error", "No input defined for '" + name + "'"), null));
+            }
+        }
+
+        return Flux.fromIterable(names)
+                .flatMapSequential(name -> {
+                    DerivedInput input = inputs.get(name);
+                    return fetchValue(input.url(), node, input.cacheKey(), input.fields())
+                            .map(body -> new DerivedSample(input.valueField().resolveDouble(body), sampledAt(input.cacheKey())));
                 })
-                .collect(java.util.stream.Collectors.toMap(
-                        m -> m.keySet().iterator().next(),
-                        m -> m.values().iterator().next()));
+                .collectList()
+                .map(samples -> {
+                    double[] values = new double[samples.size()];
+                    long[] times = new long[samples.size()];
+                    long latest = 0;
+                    for (int i = 0; i < samples.size(); i++) {
+                        values[i] = samples.get(i).value();
+                        times[i] = samples.get(i).sampledAt();
+                        latest = Math.max(latest, times[i]);
+                    }
+                    double result = expression.evaluate(values, times);
+                    Map<String, Object> body = new LinkedHashMap<>();
+                    // Non-finite results (no previous sample yet, division by zero) have no JSON form
+                    body.put("value", Double.isFinite(result) ? result : null);
+                    body.put("timestamp", latest);
+                    return new BatchEntry(key, body, null);
+                });
     }
 
+    private Map<String, DerivedInput> parseDerivedInputs(Object value, String node) {
+        if (!(value instanceof Map<?, ?> raw) || raw.isEmpty()) {
+            throw new IllegalArgumentException("Derived metric requires an 'inputs' object");
+        }
+        if (raw.size() > MAX_DERIVED_INPUTS) {
+            throw new IllegalArgumentException("Derived metric has more than " + MAX_DERIVED_INPUTS + " inputs");
+        }
+        // Sorted so the same inputs always produce the same definition key
+        Map<String, DerivedInput> inputs = new TreeMap<>();
+        raw.forEach((name, spec) -> {
+            String url = spec instanceof Map<?, ?> map ? stringValue(map, "url") : null;
+            if (url == null) {
+                throw new IllegalArgumentException("Input '" + name + "' requires a 'url'");
+            }
+            if (!isAllowedUpstream(url)) {
+                throw new IllegalArgumentException("Input '" + name + "' has a URL that is not allowed: " + url);
+            }
+            String valueField = stringValue((Map<?, ?>) spec, "valueField");
+            // Only the one field is needed, so large responses are not buffered
+            FieldSelection selection = FieldSelection.of(valueField != null ? List.of(valueField) : List.of());
+            inputs.put(String.valueOf(name),
+                    new DerivedInput(url, cacheKeyFor(url, node, selection), FieldPath.compile(valueField), selection));
+        });
+        return inputs;
+    }
+
+    // Pushed sources never leave the proxy; stream sources are checked by the URL after their prefix
+    private boolean isAllowedUpstream(String url) {
+        if (isPushUrl(url)) {
+            return true;
+        }
+        String upstreamUrl = isStreamUrl(url) ? url.substring(STREAM_URL_PREFIX.length()) : url;
+        return urlValidator.isValidUrl(upstreamUrl);
+    }
+
+    // Batch items may list fields as a JSON array or a comma-separated string
+    private static List<String> fieldList(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            return List.of(text.split(","));
+        }
+        return List.of();
+    }
+
+    private static String batchKey(Map<String, ?> req) {
+        String key = stringValue(req, "key");
+        return key != null ? key : stringValue(req, "url"); // Use URL as key if no specific key provided
+    }
+
+    private static String stringValue(Map<?, ?> map, String field) {
+        Object value = map.get(field);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Fetch every source of a diagram's fetch plan (each distinct upstream once)
+     * and write the status and dataGrid values of all its nodes:
+     * {@code {"diagram": ..., "timestamp": ..., "nodes": {name: {"status": ..., "dataGrid": [...]}}}}.
+     * Derived dataGrid items are evaluated from the values of their inputs' sources.
+     */
+    public void writeDiagramMetrics(MetricsFetchPlan plan, OutputStream out) throws IOException {
+        List<MetricsFetchPlan.Source> sources = plan.sources();
+        Object[] values = new Object[sources.size()];
+        String[] errors = new String[sources.size()];
+        Flux.range(0, sources.size())
+                .flatMap(i -> {
+                    MetricsFetchPlan.Source source = sources.get(i);
+                    return fetchValue(source.url(), source.node(), source.cacheKey(), source.fields())
+                            .map(value -> new SourceResult(i, value, null))
+                            .onErrorResume(e -> Mono.just(new SourceResult(i, null, upstreamErrorMessage(e))));
+                })
+                .doOnNext(result -> {
+                    values[result.index()] = result.value();
+                    errors[result.index()] = result.error();
+                })
+                .blockLast();
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("diagram", plan.getDiagramName());
+            generator.writeNumberField("timestamp", System.currentTimeMillis());
+            generator.writeObjectFieldStart("nodes");
+            for (MetricsFetchPlan.NodeBinding node : plan.nodes()) {
+                generator.writeObjectFieldStart(node.name());
+                MetricsFetchPlan.StatusBinding status = node.status();
+                if (status != null) {
+                    generator.writeObjectFieldStart("status");
+                    String error = bindingError(status.source(), status.error(), values, errors);
+                    if (error != null) {
+                        generator.writeStringField("state", "unknown");
+                        generator.writeStringField("error", error);
+                    } else {
+                        Object value = status.valueField().resolve(values[status.source()]);
+                        String state = value == null ? "unknown"
+                                : value.equals(status.upValue()) ? "up"
+                                : value.equals(status.downValue()) ? "down" : "unknown";
+                        generator.writeStringField("state", state);
+                        generator.writeFieldName("value");
+                        batchValueWriter.writeValue(generator, value);
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeArrayFieldStart("dataGrid");
+                for (MetricsFetchPlan.ItemBinding item : node.dataGrid()) {
+                    generator.writeStartObject();
+                    generator.writeStringField("label", item.label());
+                    MetricsFetchPlan.DerivedBinding derived = item.derived();
+                    String error = derived != null ? derivedError(derived, values, errors)
+                            : bindingError(item.source(), item.error(), values, errors);
+                    if (error != null) {
+                        generator.writeStringField("error", error);
+                    } else {
+                        generator.writeFieldName("value");
+                        batchValueWriter.writeValue(generator, derived != null
+                                ? evaluateDerived(derived, sources, values)
+                                : item.valueField().resolve(values[item.source()]));
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+    private static String derivedError(MetricsFetchPlan.DerivedBinding derived, Object[] values, String[] errors) {
+        for (MetricsFetchPlan.DerivedInputBinding input : derived.inputs()) {
+            String error = bindingError(input.source(), null, values, errors);
+            if (error != null) {
+                return "Input '" + input.name() + "': " + error;
+            }
+        }
+        return null;
+    }
+
+    // Same evaluation as a derived batch item, sharing its state with every viewer of the plan
+    private Double evaluateDerived(MetricsFetchPlan.DerivedBinding derived, List<MetricsFetchPlan.Source> sources,
+            Object[] values) {
+        DerivedExpression expression = derivedMetrics.get(derived.definitionKey(), derived.expression());
+        List<MetricsFetchPlan.DerivedInputBinding> inputs = derived.inputs();
+        double[] inputValues = new double[inputs.size()];
+        long[] sampledAt = new long[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            MetricsFetchPlan.DerivedInputBinding input = inputs.get(i);
+            inputValues[i] = input.valueField().resolveDouble(values[input.source()]);
+            sampledAt[i] = sampledAt(sources.get(input.source()).cacheKey());
+        }
+        double result = expression.evaluate(inputValues, sampledAt);
+        return Double.isFinite(result) ? result : null;
+    }
+
+    private static String bindingError(int source, String compileError, Object[] values, String[] errors) {
+        if (source == MetricsFetchPlan.NO_SOURCE) {
+            return compileError;
+        }
+        if (values[source] == null) {
+            return errors[source] != null ? errors[source] : "Empty response";
+        }
+        return null;
+    }
+
+    private static String upstreamErrorMessage(Throwable error) {
+        if (error instanceof WebClientResponseException wcre) {
+            return "Upstream service error: " + wcre.getStatusCode().value();
+        }
+        return error.getMessage() != null ? error.getMessage() : "Network error";
+    }
+
+    private ResponseEntity<Object> okWithPollHint(Object body, String cacheKey, Long minIntervalMs, Long maxIntervalMs) {
+        MetricsProxyProperties.AdaptivePolling adaptive = properties.getAdaptivePolling();
+        if (!adaptive.isEnabled()) {
+            return ResponseEntity.ok(body);
+        }
+        // Caller bounds may only narrow the configured range, never leave it
+        long min = clampInterval(minIntervalMs, adaptive.getMinIntervalMs(), adaptive);
+        long max = clampInterval(maxIntervalMs, adaptive.getMaxIntervalMs(), adaptive);
+        if (properties.isEnableCaching()) {
+            // Polling faster than the cache TTL can only ever return the cached value
+            min = Math.max(min, Math.min(properties.getCacheTtlMs(), max));
+        }
+        long hint = pollIntervalAdvisor.recommendIntervalMs(cacheKey, min, max);
+        return ResponseEntity.ok()
+                .header(POLL_HINT_HEADER, Long.toString(hint))
+                .body(body);
+    }
+
+    private static long clampInterval(Long requested, long fallback, MetricsProxyProperties.AdaptivePolling adaptive) {
+        long value = requested != null ? requested : fallback;
+        return Math.max(adaptive.getMinIntervalMs(), Math.min(value, adaptive.getMaxIntervalMs()));
+    }
+
+    private static Long parseInterval(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            return parsed > 0 ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Outcome of a push: values stored, values rejected (invalid or surplus names,
+     * nulls), and the reason the rest of the input was not read, if any.
+     */
+    public record PushResult(int accepted, int rejected, String error) {}
+
+    /**
+     * A {@code push:} source has no current value.
+     */
+    static class NoPushedValueException extends RuntimeException {
+        NoPushedValueException(String url) {
+            super("No value has been pushed for " + url);
+        }
+    }
+
+    private record BatchEntry(String key, Object body, Long pollHintMs) {}
+
+    private record DerivedInput(String url, String cacheKey, FieldPath valueField, FieldSelection fields) {}
+
+    private record DerivedSample(double value, long sampledAt) {}
+
+    private record SourceResult(int index, Object value, String error) {}
+
+    private record KeyHint(String key, long pollHintMs) {}
+
     // Visible for testing (package-private to allow Mockito spy in tests)
     String buildCacheKey(String targetUrl, String nodeName, String authFingerprint) {
         return targetUrl + CACHE_KEY_SEPARATOR + (nodeName != null ? nodeName : "")
                 + CACHE_KEY_SEPARATOR + (authFingerprint != null ? authFingerprint : "");
     }
 
+    private Mono<Object> fetchUpstream(String targetUrl, String nodeName, String cacheKey, FieldSelection fields) {
+        if (pollCoordinator.isEnabled()) {
+            // Another instance may own this upstream; only poll it if we hold the lease
+            return pollCoordinator.fetch(cacheKey, () -> requestUpstream(targetUrl, nodeName, fields));
+        }
+        return requestUpstream(targetUrl, nodeName, fields);
+    }
+
+    /**
+     * Request the upstream, hedging to another instance of the same service if
+     * hedging is enabled and this host is slower than its usual p95.
+     */
+    private Mono<Object> requestUpstream(String targetUrl, String nodeName, FieldSelection fields) {
+        if (!properties.getHedging().isEnabled()) {
+            return request(targetUrl, nodeName, fields);
+        }
+        String host = hostOf(targetUrl);
+        Mono<Object> primary = timed(host, request(targetUrl, nodeName, fields));
+        Duration delay = host != null ? requestHedger.hedgeDelay(host) : null;
+        if (delay == null) {
+            return primary;
+        }
+        List<String> alternates = serviceDiscovery.alternateInstanceUrls(targetUrl);
+        if (alternates.isEmpty()) {
+            return primary;
+        }
+
+        String alternate = alternates.get(ThreadLocalRandom.current().nextInt(alternates.size()));
+        Mono<Object> hedge = Mono.delay(delay).flatMap(tick -> {
+            if (!requestHedger.tryAcquire(host)) {
+                // Budget used up: leave it to the primary
+                return Mono.never();
+            }
+            logger.debug("No response from {} after {} ms; hedging to {}", host, delay.toMillis(), alternate);
+            return timed(hostOf(alternate), request(alternate, nodeName, fields))
+                    .doFinally(signal -> requestHedger.release(host));
+        });
+        // First response (or error) wins; the other request is cancelled
+        return Mono.firstWithSignal(primary, hedge);
+    }
+
+    private Mono<Object> timed(String host, Mono<Object> request) {
+        if (host == null) {
+            return request;
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // Also on error and cancellation: a primary that lost to its hedge was at least this slow,
+            // and leaving it out would bias the window towards fast responses
+            return request.doFinally(signal -> requestHedger.recordLatency(host,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        });
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return URI.create(url).getRawAuthority();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Mono<Object> request(String targetUrl, String nodeName, FieldSelection fields) {
+        return fields != null
+                ? makeExtractingRequest(targetUrl, nodeName, fields)
+                : makeAuthenticatedRequest(targetUrl, nodeName);
+    }
+
     // Visible for testing (package-private to allow Mockito spy in tests)
     Mono<Object> makeAuthenticatedRequest(String targetUrl, String nodeName) {
         try {
@@ -123,8 +957,12 @@ public class MetricsProxyService {
                     .headers(headers -> authenticationResolver.addAuthenticationHeaders(headers, targetUrl, nodeName))
                     .headers(headers -> headers.add("User-Agent", "Diagram-Designer-Proxy/1.0"));
 
-            return request.retrieve()
-                    .bodyToMono(Object.class)
+            if (byteBudget == null) {
+                return request.retrieve()
+                        .bodyToMono(Object.class)
+                        .timeout(Duration.ofMillis(properties.getTimeoutMs()));
+            }
+            return request.exchangeToMono(this::readBudgetedBody)
                     .timeout(Duration.ofMillis(properties.getTimeoutMs()));
 
         } catch (Exception e) {
@@ -133,6 +971,74 @@ public class MetricsProxyService {
         }
     }
 
+    /**
+     * Decode a response body within the global memory budget: the bytes it may
+     * occupy (its Content-Length, or the whole buffer limit when unknown) are
+     * reserved before it is read and released once it has been decoded.
+     */
+    private Mono<Object> readBudgetedBody(ClientResponse response) {
+        if (response.statusCode().isError()) {
+            // Same exception (and error body) as retrieve() produces
+            return response.createError();
+        }
+        long expected = response.headers().contentLength().orElse(MAX_BUFFERED_BODY_BYTES);
+        return byteBudget.acquire(Math.min(expected, MAX_BUFFERED_BODY_BYTES))
+                .onErrorResume(UpstreamByteBudget.ExhaustedException.class,
+                        e -> response.releaseBody().then(Mono.error(e)))
+                .flatMap(reserved -> response.bodyToMono(Object.class)
+                        .doFinally(signal -> byteBudget.release(reserved)));
+    }
+
+    /**
+     * Request the upstream and extract only the selected fields while the body
+     * streams in. Each chunk is fed to the extractor and released straight away,
+     * and the rest of the body is not read once every field has been found.
+     */
+    // Visible for testing (package-private to allow Mockito spy in tests)
+    Mono<Object> makeExtractingRequest(String targetUrl, String nodeName, FieldSelection fields) {
+        try {
+            WebClient.RequestHeadersSpec<?> request = webClient.get()
+                    .uri(targetUrl)
+                    .headers(headers -> authenticationResolver.addAuthenticationHeaders(headers, targetUrl, nodeName))
+                    .headers(headers -> headers.add("User-Agent", "Diagram-Designer-Proxy/1.0"));
+
+            return Mono.defer(() -> {
+                        StreamingFieldExtractor extractor = fields.newExtractor(properties.getMaxStreamedBytes());
+                        return extractFields(request.retrieve().bodyToFlux(DataBuffer.class), extractor);
+                    })
+                    .timeout(Duration.ofMillis(properties.getTimeoutMs()));
+
+        } catch (Exception e) {
+            logger.error("Error creating request for URL: {}", targetUrl, e);
+            return Mono.error(new RuntimeException("Invalid URL: " + targetUrl, e));
+        }
+    }
+
+    // Visible for testing
+    static Mono<Object> extractFields(Flux<DataBuffer> body, StreamingFieldExtractor extractor) {
+        byte[][] chunk = {new byte[8192]};
+        return body.<Object>handle((buffer, sink) -> {
+                    try {
+                        int length = buffer.readableByteCount();
+                        if (chunk[0].length < length) {
+                            chunk[0] = new byte[Math.max(length, chunk[0].length * 2)];
+                        }
+                        buffer.read(chunk[0], 0, length);
+                        if (extractor.feed(chunk[0], 0, length)) {
+                            // Everything found: complete now, which cancels the rest of the body
+                            sink.next(extractor.result());
+                            sink.complete();
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .concatWith(Mono.fromCallable(extractor::finish))
+                .next();
+    }
+
     private Mono<ResponseEntity<Object>> handleError(Throwable error) {
         if (error instanceof WebClientResponseException wcre) {
             logger.warn("HTTP error from upstream service: {} {}", wcre.getStatusCode(), wcre.getMessage());
@@ -145,6 +1051,14 @@ public class MetricsProxyService {
                 return Mono.just(ResponseEntity.status(wcre.getStatusCode())
                         .body(Map.of("error", "Upstream service error", "status", wcre.getStatusCode().value())));
             }
+        } else if (error instanceof NoPushedValueException) {
+            logger.debug(error.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", error.getMessage())));
+        } else if (error instanceof UpstreamByteBudget.ExhaustedException) {
+            logger.warn("Rejected metrics request: {}", error.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Service unavailable", "message", error.getMessage())));
         } else {
             logger.error("Unexpected error in metrics proxy", error);
             return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
@@ -0,0 +1,117 @@
+package com.example.diagramdesigner.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.regex.Pattern;
+
+/**
+ * Validates metrics proxy targets: absolute http(s) URLs that do not point at
+ * private or local addresses (SSRF prevention), or service names to be resolved
+ * through {@link ServiceDiscovery}.
+ */
+@Component
+public class MetricsUrlValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsUrlValidator.class);
+
+    // Letters, numbers and hyphens, optionally followed by a path
+    private static final Pattern SERVICE_NAME = Pattern.compile("^[a-zA-Z0-9-]+(/.*)?$");
+
+    public boolean isValidUrl(String url) {
+        try {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+
+            // Must have http or https scheme
+            if (scheme == null || (!scheme.equals("http") && !scheme.equals("https"))) {
+                return false;
+            }
+
+            // Must have a host
+            if (host == null || host.isEmpty()) {
+                return false;
+            }
+
+            // SSRF prevention: block private/internal IP ranges
+            if (isPrivateOrLocalAddress(host)) {
+                logger.warn("Blocked request to private/local address: {}", host);
+                return false;
+            }
+
+            return true;
+        } catch (Exception e) {
+            logger.warn("Invalid URL provided: {}", url, e);
+            return false;
+        }
+    }
+
+    /**
+     * Check if the input looks like a service name (optionally with a path) rather
+     * than a full URL, e.g. {@code imc-db-server/api/db01/fleet/summary}.
+     */
+    public boolean isServiceName(String input) {
+        if (input.startsWith("http://") || input.startsWith("https://")) {
+            return false;
+        }
+        return SERVICE_NAME.matcher(input).matches();
+    }
+
+    /**
+     * Check if a hostname resolves to a private or local IP address.
+     * Blocks: localhost, 127.0.0.0/8, 10.0.0.0/8, 172.16.0.0/12, 192.168.0.0/16, 169.254.0.0/16
+     */
+    private boolean isPrivateOrLocalAddress(String host) {
+        try {
+            // Check for obvious localhost patterns first
+            if (host.equalsIgnoreCase("localhost") || host.equals("127.0.0.1") || host.equals("::1")) {
+                return true;
+            }
+
+            // Resolve hostname and check IP
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress()
+                    || address.isSiteLocalAddress()
+                    || address.isLinkLocalAddress()
+                    || address.isAnyLocalAddress()
+                    || isPrivateIPv4(address);
+        } catch (Exception e) {
+            // If we can't resolve the hostname, block it to be safe
+            logger.warn("Could not resolve hostname for SSRF check: {}", host);
+            return true;
+        }
+    }
+
+    private boolean isPrivateIPv4(InetAddress address) {
+        byte[] addr = address.getAddress();
+        if (addr.length != 4) {
+            return false; // Not IPv4
+        }
+
+        int firstOctet = addr[0] & 0xFF;
+        int secondOctet = addr[1] & 0xFF;
+
+        // 10.0.0.0/8
+        if (firstOctet == 10) {
+            return true;
+        }
+        // 172.16.0.0/12
+        if (firstOctet == 172 && secondOctet >= 16 && secondOctet <= 31) {
+            return true;
+        }
+        // 192.168.0.0/16
+        if (firstOctet == 192 && secondOctet == 168) {
+            return true;
+        }
+        // 169.254.0.0/16 (link-local)
+        if (firstOctet == 169 && secondOctet == 254) {
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Coordinates upstream polling between API instances that share one database.
+ *
+ * Each upstream key is owned by at most one instance at a time through a row in
+ * {@code metric_lease}. The owner polls the upstream and publishes the latest value
+ * to {@code metric_value}; every other instance serves that shared value instead of
+ * polling the same upstream itself. Leases are renewed on every poll and expire after
+ * {@code metrics.proxy.coordination.lease-ttl-ms}, so another instance takes over
+ * when the owner stops polling or goes away.
+ */
+@Component
+public class PollCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PollCoordinator.class);
+
+    private static final String SELECT_VALUE_SQL =
+            "SELECT payload, fetched_at FROM metric_value WHERE upstream_key = ?";
+
+    // Insert a new lease, or take over one that is ours already or has expired
+    private static final String ACQUIRE_LEASE_SQL =
+            "INSERT INTO metric_lease (upstream_key, owner_id, expires_at) VALUES (?, ?, ?) "
+                    + "ON CONFLICT (upstream_key) DO UPDATE "
+                    + "SET owner_id = excluded.owner_id, expires_at = excluded.expires_at "
+                    + "WHERE metric_lease.owner_id = excluded.owner_id OR metric_lease.expires_at < ?";
+
+    private static final String PUBLISH_VALUE_SQL =
+            "INSERT INTO metric_value (upstream_key, payload, fetched_at) VALUES (?, ?, ?) "
+                    + "ON CONFLICT (upstream_key) DO UPDATE "
+                    + "SET payload = excluded.payload, fetched_at = excluded.fetched_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MetricsProxyProperties properties;
+    private final String instanceId;
+    private final Clock clock;
+
+    @Autowired
+    public PollCoordinator(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MetricsProxyProperties properties) {
+        this(jdbcTemplate, objectMapper, properties, Clock.systemUTC());
+    }
+
+    PollCoordinator(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MetricsProxyProperties properties,
+            Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.clock = clock;
+        String configuredId = properties.getCoordination().getInstanceId();
+        this.instanceId = StringUtils.hasText(configuredId) ? configuredId : UUID.randomUUID().toString();
+    }
+
+    public boolean isEnabled() {
+        return properties.getCoordination().isEnabled();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Fetch the value for a proxy cache key, polling the upstream only if this
+     * instance owns (or can take over) the lease for it.
+     */
+    public Mono<Object> fetch(String cacheKey, Supplier<Mono<Object>> upstream) {
+        String key = upstreamKey(cacheKey);
+        return Mono.fromCallable(() -> decide(key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    logger.warn("Poll coordination unavailable for key {}; polling directly: {}", key, e.getMessage());
+                    return Mono.just(Decision.UNCOORDINATED);
+                })
+                .flatMap(decision -> {
+                    if (decision.fresh()) {
+                        logger.debug("Serving shared value for key {}", key);
+                        return Mono.just(decision.sharedValue());
+                    }
+                    if (decision.owner()) {
+                        return upstream.get()
+                                .flatMap(value -> Mono.fromCallable(() -> publish(key, value))
+                                        .subscribeOn(Schedulers.boundedElastic()));
+                    }
+                    if (decision.sharedValue() != null) {
+                        logger.debug("Key {} is owned by another instance; serving its last value", key);
+                        return Mono.just(decision.sharedValue());
+                    }
+                    // Owned elsewhere but nothing published yet (or coordination failed)
+                    return upstream.get();
+                });
+    }
+
+    private Decision decide(String key) throws Exception {
+        long now = clock.millis();
+        SharedValue shared = jdbcTemplate.query(SELECT_VALUE_SQL,
+                rs -> rs.next() ? new SharedValue(rs.getString(1), rs.getLong(2)) : null, key);
+
+        Object sharedValue = shared != null ? objectMapper.readValue(shared.payload(), Object.class) : null;
+        if (shared != null && now - shared.fetchedAt() < properties.getCacheTtlMs()) {
+            return new Decision(sharedValue, true, false);
+        }
+
+        long expiresAt = now + properties.getCoordination().getLeaseTtlMs();
+        boolean owner = jdbcTemplate.update(ACQUIRE_LEASE_SQL, key, instanceId, expiresAt, now) > 0;
+        return new Decision(sharedValue, false, owner);
+    }
+
+    private Object publish(String key, Object value) {
+        try {
+            jdbcTemplate.update(PUBLISH_VALUE_SQL, key, objectMapper.writeValueAsString(value), clock.millis());
+        } catch (Exception e) {
+            logger.warn("Failed to publish shared value for key {}: {}", key, e.getMessage());
+        }
+        return value;
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.proxy.coordination.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        if (!isEnabled()) {
+            return;
+        }
+        long cutoff = clock.millis() - properties.getCoordination().getPurgeAfterMs();
+        int leases = jdbcTemplate.update("DELETE FROM metric_lease WHERE expires_at < ?", cutoff);
+        int values = jdbcTemplate.update("DELETE FROM metric_value WHERE fetched_at < ?", cutoff);
+        logger.debug("Purged {} expired leases and {} stale shared values", leases, values);
+    }
+
+    // Visible for testing
+    static String upstreamKey(String cacheKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(cacheKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record SharedValue(String payload, long fetchedAt) {}
+
+    private record Decision(Object sharedValue, boolean fresh, boolean owner) {
+        static final Decision UNCOORDINATED = new Decision(null, false, false);
+    }
+}
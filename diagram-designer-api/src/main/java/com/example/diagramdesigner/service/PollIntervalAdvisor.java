@@ -0,0 +1,95 @@
+package com.example.diagramdesigner.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks how often each proxied metric actually changes and turns that into a
+ * recommended next-poll delay for clients.
+ *
+ * Values that have not changed for a long time back off towards the upper bound;
+ * values that change on every fetch tighten towards the lower bound. The hint is
+ * half of the expected time between changes, so a poller following it sees each
+ * change at most one interval late.
+ */
+class PollIntervalAdvisor {
+
+    // Weight of the newest change interval in the moving average
+    private static final double SMOOTHING = 0.3;
+
+    private final Cache<String, ChangeStats> stats;
+    private final LongSupplier clock;
+
+    PollIntervalAdvisor(int maxEntries, Duration idleExpiry, LongSupplier clock) {
+        this.stats = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(idleExpiry)
+                .build();
+        this.clock = clock;
+    }
+
+    /**
+     * Record a freshly fetched upstream value for the given metric key.
+     */
+    void recordSample(String key, Object value) {
+        long now = clock.getAsLong();
+        stats.get(key, k -> new ChangeStats(now)).record(Objects.hashCode(value), now);
+    }
+
+    /**
+     * Recommended delay before the next poll of the given metric key, clamped to
+     * {@code [minMs, maxMs]}. Keys without any recorded samples get {@code minMs}.
+     */
+    long recommendIntervalMs(String key, long minMs, long maxMs) {
+        long upper = Math.max(minMs, maxMs);
+        ChangeStats s = stats.getIfPresent(key);
+        if (s == null) {
+            return minMs;
+        }
+        long expectedChangeMs = s.expectedChangeIntervalMs(clock.getAsLong());
+        return Math.max(minMs, Math.min(upper, expectedChangeMs / 2));
+    }
+
+    private static final class ChangeStats {
+        private boolean seeded;
+        private int lastHash;
+        private long lastChangeAt;
+        private double avgChangeIntervalMs = Double.NaN;
+
+        ChangeStats(long now) {
+            this.lastChangeAt = now;
+        }
+
+        synchronized void record(int hash, long now) {
+            if (!seeded) {
+                seeded = true;
+                lastHash = hash;
+                lastChangeAt = now;
+                return;
+            }
+            if (hash == lastHash) {
+                return;
+            }
+            long interval = Math.max(0, now - lastChangeAt);
+            avgChangeIntervalMs = Double.isNaN(avgChangeIntervalMs)
+                    ? interval
+                    : SMOOTHING * interval + (1 - SMOOTHING) * avgChangeIntervalMs;
+            lastHash = hash;
+            lastChangeAt = now;
+        }
+
+        synchronized long expectedChangeIntervalMs(long now) {
+            // A value that has been quiet for longer than its usual change interval
+            // is treated as having slowed down, so the quiet period dominates.
+            long quietMs = Math.max(0, now - lastChangeAt);
+            if (Double.isNaN(avgChangeIntervalMs)) {
+                return quietMs;
+            }
+            return Math.max((long) avgChangeIntervalMs, quietMs);
+        }
+    }
+}
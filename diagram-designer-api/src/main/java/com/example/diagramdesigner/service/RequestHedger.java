@@ -0,0 +1,111 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-host latency tracking and hedge budget for hedged upstream requests.
+ *
+ * Each host keeps its most recent response times in a fixed ring buffer; the hedge
+ * delay is the p95 of that window, recomputed every few samples rather than on
+ * every request. Each primary host may only have a bounded number of hedges in
+ * flight, so a host that slows down for everyone does not get its load doubled.
+ */
+class RequestHedger {
+
+    private static final int WINDOW_SIZE = 128;
+    private static final int RECOMPUTE_EVERY = 16;
+    private static final double PERCENTILE = 0.95;
+
+    private final MetricsProxyProperties.Hedging properties;
+    private final Cache<String, LatencyWindow> latencies;
+    private final Cache<String, AtomicInteger> activeHedges;
+
+    RequestHedger(MetricsProxyProperties.Hedging properties, int maxHosts) {
+        this.properties = properties;
+        this.latencies = Caffeine.newBuilder()
+                .maximumSize(maxHosts)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+        this.activeHedges = Caffeine.newBuilder()
+                .maximumSize(maxHosts)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    void recordLatency(String host, long latencyMs) {
+        latencies.get(host, h -> new LatencyWindow()).record(latencyMs);
+    }
+
+    /**
+     * How long to wait for the given host before hedging, or {@code null} if too
+     * few latencies have been observed to tell what is slow for it.
+     */
+    Duration hedgeDelay(String host) {
+        LatencyWindow window = latencies.getIfPresent(host);
+        if (window == null) {
+            return null;
+        }
+        long p95 = window.percentile(properties.getMinSamples());
+        return p95 < 0 ? null : Duration.ofMillis(Math.max(properties.getMinDelayMs(), p95));
+    }
+
+    /**
+     * Reserve one hedge for the given primary host; {@code false} if its budget is
+     * used up. Every successful call must be paired with {@link #release}.
+     */
+    boolean tryAcquire(String host) {
+        AtomicInteger active = activeHedges.get(host, h -> new AtomicInteger());
+        int max = properties.getMaxHedgesPerHost();
+        int current;
+        do {
+            current = active.get();
+            if (current >= max) {
+                return false;
+            }
+        } while (!active.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release(String host) {
+        AtomicInteger active = activeHedges.getIfPresent(host);
+        if (active != null) {
+            active.updateAndGet(current -> Math.max(0, current - 1));
+        }
+    }
+
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private long cachedPercentile = -1;
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % WINDOW_SIZE;
+            if (count < WINDOW_SIZE) {
+                count++;
+            }
+            sinceRecompute++;
+        }
+
+        synchronized long percentile(int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            if (cachedPercentile < 0 || sinceRecompute >= RECOMPUTE_EVERY) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                cachedPercentile = sorted[(int) Math.ceil(PERCENTILE * count) - 1];
+                sinceRecompute = 0;
+            }
+            return cachedPercentile;
+        }
+    }
+}
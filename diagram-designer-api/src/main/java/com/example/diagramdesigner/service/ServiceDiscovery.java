@@ -8,6 +8,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -16,11 +18,15 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
 import java.time.Duration;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
-public class ServiceDiscovery {
+public class ServiceDiscovery implements ApplicationEventPublisherAware {
 
     private static final Logger logger = LoggerFactory.getLogger(ServiceDiscovery.class);
 
@@ -31,6 +37,13 @@ public class ServiceDiscovery {
 
     // Bounded cache for service URLs with TTL
     private final Cache<String, String> serviceUrlCache;
+    // All instance base URLs of services found through the DiscoveryClient, by service name
+    private final Cache<String, List<String>> instanceUrlCache;
+    // Service name by instance base URL, to find the other instances behind a resolved URL
+    private final Cache<String, String> serviceByInstanceUrl;
+    // Last URL discovered for each service name, kept past cache expiry to detect changes
+    private final Cache<String, String> lastKnownUrls;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public ServiceDiscovery(DiscoveryClient discoveryClient, ObjectMapper objectMapper, Environment environment,
@@ -45,6 +58,21 @@ public class ServiceDiscovery {
                 .maximumSize(cacheProperties.getServiceDiscovery().getMaxSize())
                 .expireAfterWrite(Duration.ofSeconds(cacheProperties.getServiceDiscovery().getTtlSeconds()))
                 .build();
+        this.instanceUrlCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getServiceDiscovery().getMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(cacheProperties.getServiceDiscovery().getTtlSeconds()))
+                .build();
+        this.serviceByInstanceUrl = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getServiceDiscovery().getMaxSize() * 4L)
+                .build();
+        this.lastKnownUrls = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getServiceDiscovery().getMaxSize() * 4L)
+                .build();
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.eventPublisher = applicationEventPublisher;
     }
 
     /**
@@ -61,7 +89,7 @@ public class ServiceDiscovery {
             // Try Spring Cloud DiscoveryClient first (best approach)
             String serviceUrl = discoverServiceViaDiscoveryClient(nodeName);
             if (serviceUrl != null) {
-                serviceUrlCache.put(nodeName, serviceUrl);
+                remember(nodeName, serviceUrl);
                 logger.info("Discovered service URL using DiscoveryClient for {}: {}", nodeName, serviceUrl);
                 return serviceUrl;
             }
@@ -69,7 +97,7 @@ public class ServiceDiscovery {
             // Try Cloud Foundry URL patterns as fallback
             String cfUrl = tryCloudFoundryUrlPattern(nodeName);
             if (cfUrl != null) {
-                serviceUrlCache.put(nodeName, cfUrl);
+                remember(nodeName, cfUrl);
                 logger.info("Discovered service URL using CF pattern for {}: {}", nodeName, cfUrl);
                 return cfUrl;
             }
@@ -79,13 +107,14 @@ public class ServiceDiscovery {
             if (registryUrl != null) {
                 String queryResult = queryRegistryForService(registryUrl, nodeName);
                 if (queryResult != null) {
-                    serviceUrlCache.put(nodeName, queryResult);
+                    remember(nodeName, queryResult);
                     logger.info("Discovered service URL using registry query for {}: {}", nodeName, queryResult);
                     return queryResult;
                 }
             }
 
             logger.debug("Service discovery failed for: {} - no service found", nodeName);
+            remember(nodeName, null);
             return null;
 
         } catch (Exception e) {
@@ -94,6 +123,25 @@ public class ServiceDiscovery {
         }
     }
 
+    // Cache a discovery result, announcing it if it differs from the last one for the name
+    private void remember(String serviceName, String url) {
+        String previous = url != null ? lastKnownUrls.asMap().put(serviceName, url)
+                : lastKnownUrls.asMap().remove(serviceName);
+        if (url != null) {
+            serviceUrlCache.put(serviceName, url);
+        }
+        if (previous != null && !Objects.equals(previous, url)) {
+            logger.info("Service URL for {} changed from {} to {}", serviceName, previous, url);
+            publishChange(Set.of(serviceName));
+        }
+    }
+
+    private void publishChange(Set<String> serviceNames) {
+        if (eventPublisher != null && !serviceNames.isEmpty()) {
+            eventPublisher.publishEvent(new ServiceUrlChangedEvent(serviceNames));
+        }
+    }
+
     /**
      * Use Spring Cloud DiscoveryClient to find services
      * This is the recommended approach for Spring Cloud applications
@@ -103,6 +151,7 @@ public class ServiceDiscovery {
             // Try exact service name first
             List<ServiceInstance> instances = discoveryClient.getInstances(serviceName);
             if (instances != null && !instances.isEmpty()) {
+                rememberInstances(serviceName, instances);
                 ServiceInstance instance = instances.get(0);
                 String serviceUrl = instance.getUri().toString();
                 logger.debug("Found service {} using DiscoveryClient: {}", serviceName, serviceUrl);
@@ -121,6 +170,7 @@ public class ServiceDiscovery {
                 if (!variation.equals(serviceName)) { // Skip if same as original
                     instances = discoveryClient.getInstances(variation);
                     if (instances != null && !instances.isEmpty()) {
+                        rememberInstances(variation, instances);
                         ServiceInstance instance = instances.get(0);
                         String serviceUrl = instance.getUri().toString();
                         logger.debug("Found service {} using variation '{}' via DiscoveryClient: {}", serviceName, variation, serviceUrl);
@@ -138,6 +188,58 @@ public class ServiceDiscovery {
         }
     }
 
+    /**
+     * The same request URL on every other registered instance of the service the
+     * URL was resolved to, e.g. {@code http://10.0.0.2:8080/actuator/health} for
+     * {@code http://10.0.0.1:8080/actuator/health}. Empty if the URL does not
+     * belong to a service discovered through the DiscoveryClient or the service has
+     * a single instance.
+     */
+    public List<String> alternateInstanceUrls(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+                return List.of();
+            }
+            String base = uri.getScheme() + "://" + uri.getRawAuthority();
+            String serviceName = serviceByInstanceUrl.getIfPresent(base);
+            if (serviceName == null) {
+                return List.of();
+            }
+            List<String> instanceUrls = instanceUrlCache.getIfPresent(serviceName);
+            if (instanceUrls == null) {
+                List<ServiceInstance> instances = discoveryClient.getInstances(serviceName);
+                instanceUrls = instances != null ? rememberInstances(serviceName, instances) : List.of();
+            }
+            String path = url.substring(base.length());
+            List<String> alternates = new ArrayList<>(instanceUrls.size());
+            for (String instanceUrl : instanceUrls) {
+                if (!instanceUrl.equals(base)) {
+                    alternates.add(instanceUrl + path);
+                }
+            }
+            return alternates;
+        } catch (Exception e) {
+            logger.debug("Could not determine alternate instances for {}: {}", url, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<String> rememberInstances(String serviceName, List<ServiceInstance> instances) {
+        List<String> instanceUrls = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            String instanceUrl = instance.getUri().toString();
+            if (instanceUrl.endsWith("/")) {
+                instanceUrl = instanceUrl.substring(0, instanceUrl.length() - 1);
+            }
+            instanceUrls.add(instanceUrl);
+            serviceByInstanceUrl.put(instanceUrl, serviceName);
+        }
+        List<String> result = List.copyOf(instanceUrls);
+        instanceUrlCache.put(serviceName, result);
+        return result;
+    }
+
     /**
      * Try Cloud Foundry URL patterns based on the current app's domain
      */
@@ -556,11 +658,54 @@ public class ServiceDiscovery {
         return cleaned;
     }
 
+    /**
+     * Resolve a service name with an optional path, e.g.
+     * {@code imc-db-server/api/db01/fleet/summary}, to a full URL. Returns
+     * {@code null} if the service is not registered.
+     */
+    public String resolveServiceUrl(String serviceInput) {
+        try {
+            // Extract service name from input like "imc-db-server/api/db01/fleet/summary"
+            String serviceName;
+            String remainingPath = "";
+
+            if (serviceInput.contains("/")) {
+                String[] parts = serviceInput.split("/", 2);
+                serviceName = parts[0];
+                remainingPath = "/" + parts[1];
+            } else {
+                serviceName = serviceInput;
+            }
+
+            logger.debug("Attempting to resolve service: {} with path: {}", serviceName, remainingPath);
+
+            String baseUrl = discoverServiceUrl(serviceName);
+            if (baseUrl != null) {
+                // Ensure baseUrl doesn't end with "/" to avoid double slashes
+                if (baseUrl.endsWith("/")) {
+                    baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+                }
+                return baseUrl + remainingPath;
+            }
+
+            return null;
+        } catch (Exception e) {
+            logger.error("Error resolving service URL for input: {}", serviceInput, e);
+            return null;
+        }
+    }
+
     /**
      * Clear the service URL cache (useful for refresh)
      */
     public void clearCache() {
+        Set<String> cleared = Set.copyOf(lastKnownUrls.asMap().keySet());
         serviceUrlCache.invalidateAll();
+        instanceUrlCache.invalidateAll();
+        serviceByInstanceUrl.invalidateAll();
+        lastKnownUrls.invalidateAll();
         logger.info("Service URL cache cleared");
+        // Configs rendered with the old URLs are re-resolved on next use
+        publishChange(cleared);
     }
 }
\ No newline at end of file
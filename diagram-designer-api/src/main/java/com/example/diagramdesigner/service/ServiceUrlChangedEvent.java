@@ -0,0 +1,10 @@
+package com.example.diagramdesigner.service;
+
+import java.util.Set;
+
+/**
+ * Published by {@link ServiceDiscovery} when the URL it resolves for a service
+ * name changes, disappears, or is cleared from its cache.
+ */
+public record ServiceUrlChangedEvent(Set<String> serviceNames) {
+}
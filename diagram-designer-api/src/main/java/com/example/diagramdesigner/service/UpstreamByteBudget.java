@@ -0,0 +1,145 @@
+package com.example.diagramdesigner.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global budget for upstream response bodies buffered in memory at once.
+ *
+ * Callers reserve the bytes a body may occupy before reading it and release them
+ * once it has been decoded. Reservations that do not fit wait in FIFO order, so a
+ * large body is not starved by a stream of small ones, and fail with
+ * {@link ExhaustedException} once {@code maxWait} has passed (immediately if it is
+ * zero). A single reservation larger than the whole budget is clamped to it, so
+ * it runs alone rather than never.
+ */
+class UpstreamByteBudget {
+
+    private final long maxBytes;
+    private final Duration maxWait;
+    private final AtomicLong used = new AtomicLong();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    UpstreamByteBudget(long maxBytes, Duration maxWait) {
+        this.maxBytes = maxBytes;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Reserve {@code bytes}, completing with the amount actually reserved once it
+     * fits. That amount must be passed to {@link #release} exactly once.
+     */
+    Mono<Long> acquire(long bytes) {
+        long amount = Math.min(Math.max(bytes, 0), maxBytes);
+        return Mono.defer(() -> {
+            // Only jump the queue when nobody is waiting
+            if (waiters.isEmpty() && tryReserve(amount)) {
+                return Mono.just(amount);
+            }
+            if (maxWait.isZero()) {
+                return Mono.error(new ExhaustedException(amount, inUse()));
+            }
+            return Mono.<Long>create(sink -> {
+                        Waiter waiter = new Waiter(amount, sink);
+                        sink.onCancel(() -> cancel(waiter));
+                        waiting.incrementAndGet();
+                        waiters.add(waiter);
+                        drain();
+                    })
+                    .timeout(maxWait, Mono.error(() -> new ExhaustedException(amount, inUse())));
+        });
+    }
+
+    void release(long bytes) {
+        used.addAndGet(-bytes);
+        drain();
+    }
+
+    long inUse() {
+        return used.get();
+    }
+
+    long limit() {
+        return maxBytes;
+    }
+
+    int queued() {
+        return waiting.get();
+    }
+
+    private boolean tryReserve(long amount) {
+        long current;
+        do {
+            current = used.get();
+            // An empty budget always admits one reservation, whatever its size
+            if (current > 0 && current + amount > maxBytes) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + amount));
+        return true;
+    }
+
+    private void cancel(Waiter waiter) {
+        if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+            waiting.decrementAndGet();
+            waiters.remove(waiter);
+            // A large waiter at the head may have been holding up smaller ones
+            drain();
+        } else if (waiter.state.get() == Waiter.GRANTED) {
+            // Granted, but the subscriber went away before it could use the bytes
+            release(waiter.bytes);
+        }
+    }
+
+    // Grant waiters in arrival order for as long as the head one fits
+    private synchronized void drain() {
+        Waiter head;
+        while ((head = waiters.peek()) != null) {
+            if (head.state.get() == Waiter.CANCELLED) {
+                waiters.poll();
+                continue;
+            }
+            if (!tryReserve(head.bytes)) {
+                return;
+            }
+            waiters.poll();
+            if (head.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                waiting.decrementAndGet();
+                head.sink.success(head.bytes);
+            } else {
+                used.addAndGet(-head.bytes);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        static final int WAITING = 0;
+        static final int GRANTED = 1;
+        static final int CANCELLED = 2;
+
+        final long bytes;
+        final MonoSink<Long> sink;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(long bytes, MonoSink<Long> sink) {
+            this.bytes = bytes;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * The budget stayed exhausted for longer than the configured wait.
+     */
+    static class ExhaustedException extends RuntimeException {
+        ExhaustedException(long requested, long inUse) {
+            super("Upstream memory budget exhausted (" + requested + " bytes requested, " + inUse + " in use)");
+        }
+    }
+}
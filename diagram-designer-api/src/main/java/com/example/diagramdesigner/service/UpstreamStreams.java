@@ -0,0 +1,122 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Long-lived upstream connections for streaming sources, one per cache key.
+ *
+ * A stream is opened by the first read of its source and every value it emits is
+ * handed to the value listener (which updates the proxy cache). When the upstream
+ * fails or closes the connection it is reopened with exponential backoff, reset
+ * once events flow again. Streams that nobody has read for the idle timeout are
+ * closed by {@link #closeIdle()}, so a source removed from every diagram does not
+ * hold its connection forever.
+ */
+class UpstreamStreams {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamStreams.class);
+
+    private final MetricsProxyProperties.Streaming properties;
+    private final BiConsumer<String, Object> valueListener;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, Stream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * @param valueListener receives (cache key, value) for every event
+     */
+    UpstreamStreams(MetricsProxyProperties.Streaming properties, BiConsumer<String, Object> valueListener,
+            LongSupplier clock) {
+        this.properties = properties;
+        this.valueListener = valueListener;
+        this.clock = clock;
+    }
+
+    /**
+     * The latest value of the stream for a cache key, opening the stream with
+     * {@code connector} (one upstream connection emitting each event value) if
+     * needed. Completes as soon as the stream has emitted at least one value.
+     */
+    Mono<Object> latest(String cacheKey, String url, Supplier<Flux<Object>> connector) {
+        Stream stream = streams.get(cacheKey);
+        if (stream == null) {
+            if (streams.size() >= properties.getMaxStreams()) {
+                return Mono.error(new IllegalStateException(
+                        "Too many open streaming sources (max " + properties.getMaxStreams() + ")"));
+            }
+            stream = streams.computeIfAbsent(cacheKey, key -> open(key, url, connector));
+        }
+        stream.lastReadAt = clock.getAsLong();
+        return stream.latest.asFlux().next();
+    }
+
+    int size() {
+        return streams.size();
+    }
+
+    /**
+     * Close streams that have not been read for the idle timeout.
+     */
+    int closeIdle() {
+        long cutoff = clock.getAsLong() - properties.getIdleTimeoutMs();
+        int closed = 0;
+        for (var entry : streams.entrySet()) {
+            Stream stream = entry.getValue();
+            if (stream.lastReadAt < cutoff && streams.remove(entry.getKey(), stream)) {
+                logger.debug("Closing idle stream {}", stream.url);
+                stream.connection.dispose();
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    void closeAll() {
+        streams.values().forEach(stream -> stream.connection.dispose());
+        streams.clear();
+    }
+
+    private Stream open(String cacheKey, String url, Supplier<Flux<Object>> connector) {
+        logger.info("Opening upstream stream {}", url);
+        Stream stream = new Stream(url);
+        Retry reconnect = Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(properties.getMinBackoffMs()))
+                .maxBackoff(Duration.ofMillis(properties.getMaxBackoffMs()))
+                // Back off from the minimum again once the stream has delivered events
+                .transientErrors(true)
+                .doBeforeRetry(signal -> logger.debug("Reconnecting stream {} after: {}",
+                        url, signal.failure().getMessage()));
+        stream.connection = Flux.defer(connector)
+                // A stream the upstream ends cleanly is reconnected like a failed one
+                .concatWith(Mono.error(() -> new IllegalStateException("Stream closed by upstream")))
+                .retryWhen(reconnect)
+                .subscribe(value -> {
+                    valueListener.accept(cacheKey, value);
+                    stream.latest.tryEmitNext(value);
+                }, error -> logger.warn("Stream {} stopped: {}", url, error.getMessage()));
+        return stream;
+    }
+
+    private static final class Stream {
+        final String url;
+        final Sinks.Many<Object> latest = Sinks.many().replay().latest();
+        volatile long lastReadAt;
+        volatile Disposable connection;
+
+        Stream(String url) {
+            this.url = url;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- SHA-256 hex digest and UTF-8 byte length of diagram.config, maintained by the
+-- application on every write. Rows written before this migration are filled in
+-- at startup.
+ALTER TABLE diagram ADD COLUMN content_hash VARCHAR(64);
+ALTER TABLE diagram ADD COLUMN content_size BIGINT;
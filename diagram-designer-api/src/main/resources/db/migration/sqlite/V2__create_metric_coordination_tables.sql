@@ -0,0 +1,13 @@
+-- Leader-per-endpoint coordination between API instances sharing one database.
+-- upstream_key is a SHA-256 hex digest of the proxy cache key (URL + node + auth fingerprint).
+CREATE TABLE IF NOT EXISTS metric_lease (
+    upstream_key VARCHAR(64) PRIMARY KEY,
+    owner_id VARCHAR(128) NOT NULL,
+    expires_at BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS metric_value (
+    upstream_key VARCHAR(64) PRIMARY KEY,
+    payload TEXT NOT NULL,
+    fetched_at BIGINT NOT NULL
+);
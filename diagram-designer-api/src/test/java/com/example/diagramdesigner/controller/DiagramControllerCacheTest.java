@@ -1,16 +1,39 @@
 package com.example.diagramdesigner.controller;
 
 import com.example.diagramdesigner.config.CacheProperties;
+import com.example.diagramdesigner.service.BundledConfigIndex;
 import com.example.diagramdesigner.service.ConfigsDirectoryResolver;
+import com.example.diagramdesigner.service.ConfigsDirectoryWatcher;
+import com.example.diagramdesigner.service.ConfigsInvalidatedEvent;
 import com.example.diagramdesigner.service.ConfigurationProcessor;
 import com.example.diagramdesigner.service.DiagramService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 class DiagramControllerCacheTest {
@@ -24,13 +47,19 @@ class DiagramControllerCacheTest {
     @Mock
     private ConfigsDirectoryResolver configsDirectoryResolver;
 
+    @Mock
+    private ConfigsDirectoryWatcher configsDirectoryWatcher;
+
+    @Mock
+    private BundledConfigIndex bundledConfigIndex;
+
     private CacheProperties cacheProperties;
     private DiagramController controller;
 
     @BeforeEach
     void setUp() {
         cacheProperties = new CacheProperties();
-        controller = new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, cacheProperties);
+        controller = new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, configsDirectoryWatcher, bundledConfigIndex, cacheProperties);
     }
 
     @Test
@@ -44,9 +73,128 @@ class DiagramControllerCacheTest {
         cacheProperties.getDiagramCache().setMaxSize(32);
         cacheProperties.getDiagramCache().setTtlSeconds(120);
 
-        DiagramController customController = new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, cacheProperties);
+        DiagramController customController = new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, configsDirectoryWatcher, bundledConfigIndex, cacheProperties);
         assertNotNull(customController);
         assertEquals(32, cacheProperties.getDiagramCache().getMaxSize());
         assertEquals(120, cacheProperties.getDiagramCache().getTtlSeconds());
     }
+
+    @Test
+    void configsOverTheThresholdAreStreamedAndNotCached(@TempDir Path configsDir) throws Exception {
+        Files.writeString(configsDir.resolve("small.json"), "{\"a\":1}");
+        Files.writeString(configsDir.resolve("large.json"), "{\"nodes\":[\"" + "x".repeat(200) + "\"]}");
+        when(configsDirectoryResolver.findConfigsDirectory()).thenReturn(configsDir);
+        when(configurationProcessor.processVariableSubstitutionToBytes("diagram-file:small.json", "{\"a\":1}"))
+                .thenReturn(utf8("{\"a\":1}"));
+        doAnswer(inv -> {
+            inv.<InputStream>getArgument(0).transferTo(inv.<OutputStream>getArgument(1));
+            return null;
+        }).when(configurationProcessor).processVariableSubstitution(any(InputStream.class), any(OutputStream.class));
+        cacheProperties.getDiagramCache().setStreamingThresholdBytes(100);
+        DiagramController streamingController =
+                new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, configsDirectoryWatcher, bundledConfigIndex, cacheProperties);
+
+        assertEquals("{\"a\":1}", body(streamingController.getDiagramConfig("small.json")));
+
+        ResponseEntity<?> large = streamingController.getDiagramConfig("large.json");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) large.getBody()).writeTo(out);
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("{\"nodes\""));
+        streamingController.getDiagramConfig("large.json");
+        verify(configurationProcessor, never()).processVariableSubstitutionToBytes(anyString(), startsWith("{\"nodes\""));
+    }
+
+    @Test
+    void invalidatedConfigsAreRenderedAgainOnNextRequest(@TempDir Path configsDir) throws Exception {
+        Files.writeString(configsDir.resolve("a.json"), "{\"url\":\"${API_HOST}\"}");
+        when(configsDirectoryResolver.findConfigsDirectory()).thenReturn(configsDir);
+        when(configurationProcessor.processVariableSubstitutionToBytes("diagram-file:a.json", "{\"url\":\"${API_HOST}\"}"))
+                .thenReturn(utf8("{\"url\":\"a\"}"))
+                .thenReturn(utf8("{\"url\":\"b\"}"));
+
+        assertEquals("{\"url\":\"a\"}", body(controller.getDiagramConfig("a.json")));
+        controller.onConfigsInvalidated(new ConfigsInvalidatedEvent(Set.of("diagram:a.json")));
+        assertEquals("{\"url\":\"a\"}", body(controller.getDiagramConfig("a.json")));
+
+        controller.onConfigsInvalidated(new ConfigsInvalidatedEvent(Set.of("diagram-file:a.json")));
+        assertEquals("{\"url\":\"b\"}", body(controller.getDiagramConfig("a.json")));
+    }
+
+    @Test
+    void watchedConfigsAreServedFromCacheUntilTheirVersionChanges(@TempDir Path configsDir) throws Exception {
+        Path config = Files.writeString(configsDir.resolve("a.json"), "{\"v\":1}");
+        when(configsDirectoryResolver.findConfigsDirectory()).thenReturn(configsDir);
+        when(configsDirectoryWatcher.isWatching(configsDir)).thenReturn(true);
+        when(configsDirectoryWatcher.versionOf("a.json")).thenReturn(1L, 1L, 2L);
+        when(configurationProcessor.processVariableSubstitutionToBytes(eq("diagram-file:a.json"), anyString()))
+                .thenAnswer(inv -> utf8(inv.getArgument(1)));
+
+        assertEquals("{\"v\":1}", body(controller.getDiagramConfig("a.json")));
+        // Same version: served from memory, even though the file is gone
+        Files.delete(config);
+        assertEquals("{\"v\":1}", body(controller.getDiagramConfig("a.json")));
+
+        Files.writeString(config, "{\"v\":2}");
+        assertEquals("{\"v\":2}", body(controller.getDiagramConfig("a.json")));
+    }
+
+    @Test
+    void unchangedConfigsAreAnsweredWithNotModified(@TempDir Path configsDir) throws Exception {
+        Files.writeString(configsDir.resolve("a.json"), "{\"v\":1}");
+        when(configsDirectoryResolver.findConfigsDirectory()).thenReturn(configsDir);
+        when(configurationProcessor.processVariableSubstitutionToBytes(eq("diagram-file:a.json"), anyString()))
+                .thenAnswer(inv -> utf8(inv.getArgument(1)));
+        cacheProperties.getDiagramCache().setHttpCacheControl("private, max-age=30");
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new DiagramController(
+                configurationProcessor, diagramService, configsDirectoryResolver, configsDirectoryWatcher,
+                bundledConfigIndex, cacheProperties)).build();
+
+        MvcResult first = mockMvc.perform(get("/api/diagrams/a.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "private, max-age=30"))
+                .andExpect(content().json("{\"v\":1}"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+        assertTrue(etag.startsWith("\"") && !etag.startsWith("W/"));
+
+        mockMvc.perform(get("/api/diagrams/a.json").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/diagrams/a.json").header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    @Test
+    void largeConfigsAreServedGzippedToClientsThatAcceptIt(@TempDir Path configsDir) throws Exception {
+        String json = "{\"nodes\":[" + "{\"name\":\"node\",\"url\":\"https://example.com\"},".repeat(100) + "{}]}";
+        Files.writeString(configsDir.resolve("a.json"), json);
+        when(configsDirectoryResolver.findConfigsDirectory()).thenReturn(configsDir);
+        when(configurationProcessor.processVariableSubstitutionToBytes(eq("diagram-file:a.json"), anyString()))
+                .thenAnswer(inv -> utf8(inv.getArgument(1)));
+
+        ResponseEntity<?> plain = controller.getDiagramConfig("a.json", "identity");
+        ResponseEntity<?> gzipped = controller.getDiagramConfig("a.json", "br;q=1.0, gzip;q=0.8");
+
+        assertEquals(json, body(plain));
+        assertNull(plain.getHeaders().getFirst("Content-Encoding"));
+        assertEquals("gzip", gzipped.getHeaders().getFirst("Content-Encoding"));
+        assertEquals("Accept-Encoding", gzipped.getHeaders().getFirst("Vary"));
+        assertNotEquals(plain.getHeaders().getETag(), gzipped.getHeaders().getETag());
+        byte[] compressed = (byte[]) gzipped.getBody();
+        assertTrue(compressed.length < json.length() / 4);
+        try (InputStream in = new java.util.zip.GZIPInputStream(new java.io.ByteArrayInputStream(compressed))) {
+            assertEquals(json, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        // The compressed variant is built once and reused
+        assertSame(compressed, controller.getDiagramConfig("a.json", "gzip").getBody());
+    }
+
+    private static String body(ResponseEntity<?> response) {
+        return new String((byte[]) response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -4,24 +4,36 @@ import com.example.diagramdesigner.config.CacheProperties;
 import com.example.diagramdesigner.dto.DiagramRequest;
 import com.example.diagramdesigner.dto.DiagramResponse;
 import com.example.diagramdesigner.model.Diagram;
+import com.example.diagramdesigner.repository.DiagramSummary;
+import com.example.diagramdesigner.service.BundledConfigIndex;
 import com.example.diagramdesigner.service.ConfigsDirectoryResolver;
+import com.example.diagramdesigner.service.ConfigsDirectoryWatcher;
 import com.example.diagramdesigner.service.ConfigurationProcessor;
 import com.example.diagramdesigner.service.DiagramService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,21 +48,28 @@ class DiagramControllerListTest {
     @Mock
     private ConfigsDirectoryResolver configsDirectoryResolver;
 
+    @Mock
+    private ConfigsDirectoryWatcher configsDirectoryWatcher;
+
+    @Mock
+    private BundledConfigIndex bundledConfigIndex;
+
     private DiagramController controller;
 
     @BeforeEach
     void setUp() {
         CacheProperties cacheProperties = new CacheProperties();
-        controller = new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, cacheProperties);
+        controller = new DiagramController(configurationProcessor, diagramService, configsDirectoryResolver, configsDirectoryWatcher, bundledConfigIndex, cacheProperties);
     }
 
     @Test
     void listDiagrams_returnsDbEntriesWhenPresent() {
-        Diagram d1 = makeDiagram("my-diagram", "My Diagram");
-        Diagram d2 = makeDiagram("other-diagram", "Other");
-        when(diagramService.listDiagrams()).thenReturn(List.of(d1, d2));
+        DiagramSummary d1 = summary("my-diagram", "My Diagram");
+        DiagramSummary d2 = summary("other-diagram", "Other");
+        when(diagramService.listDiagramSummaries(isNull(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(d1, d2)));
 
-        ResponseEntity<List<String>> response = controller.listDiagrams();
+        ResponseEntity<List<String>> response = controller.listDiagrams(null, null, null);
 
         assertThat(response.getStatusCode().value()).isEqualTo(200);
         assertThat(response.getBody()).containsExactly("my-diagram.json", "other-diagram.json");
@@ -58,15 +77,60 @@ class DiagramControllerListTest {
 
     @Test
     void listDiagrams_fallsBackToFileScanWhenDbEmpty() {
-        when(diagramService.listDiagrams()).thenReturn(Collections.emptyList());
+        when(diagramService.listDiagramSummaries(isNull(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.emptyList()));
 
-        ResponseEntity<List<String>> response = controller.listDiagrams();
+        ResponseEntity<List<String>> response = controller.listDiagrams(null, null, null);
 
         // Should not fail — returns whatever the file scan finds (may be empty list or file-based results)
         assertThat(response.getStatusCode().value()).isEqualTo(200);
         assertThat(response.getBody()).isNotNull();
     }
 
+    @Test
+    void listDiagrams_usesTheBundledIndexWhenServingFromTheClasspath() {
+        when(diagramService.listDiagramSummaries(eq("IMC"), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.emptyList()));
+        when(bundledConfigIndex.isPresent()).thenReturn(true);
+        when(bundledConfigIndex.configs()).thenReturn(List.of(
+                new BundledConfigIndex.Entry("IMC-chatbot.json", "Chatbot", 10, "ab"),
+                new BundledConfigIndex.Entry("diagram-config.json", "Default", 20, "cd")));
+
+        ResponseEntity<List<String>> response = controller.listDiagrams("IMC", null, null);
+
+        assertThat(response.getBody()).containsExactly("IMC-chatbot.json");
+    }
+
+    @Test
+    void listDbDiagrams_pagesSortsAndFiltersSummaries() {
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        when(diagramService.listDiagramSummaries(eq("tele"), pageable.capture()))
+                .thenAnswer(inv -> new PageImpl<>(List.of(summary("telemetry", "Telemetry")),
+                        inv.getArgument(1), 11));
+
+        ResponseEntity<List<DiagramResponse>> response = controller.listDbDiagrams("tele", 2, 5, "updatedAt,desc");
+
+        assertThat(pageable.getValue().getPageNumber()).isEqualTo(2);
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(5);
+        assertThat(pageable.getValue().getSort())
+                .isEqualTo(Sort.by(Sort.Direction.DESC, "updatedAt").and(Sort.by("name")));
+        assertThat(response.getHeaders().getFirst("X-Total-Count")).isEqualTo("11");
+        assertThat(response.getBody()).singleElement().satisfies(d -> {
+            assertThat(d.getName()).isEqualTo("telemetry");
+            assertThat(d.getConfig()).isNull();
+        });
+    }
+
+    @Test
+    void listDbDiagrams_rejectsUnknownSortAndOversizedPages() {
+        assertThatThrownBy(() -> controller.listDbDiagrams(null, null, null, "config"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("400");
+        assertThatThrownBy(() -> controller.listDbDiagrams(null, 0, 10_000, null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("400");
+    }
+
     @Test
     void createDbDiagram_returnsProcessedConfig() {
         Diagram created = makeDiagram("new-diagram", "New Diagram");
@@ -117,6 +181,10 @@ class DiagramControllerListTest {
         assertThat(response.getBody().getConfig()).isEqualTo("{\"target\":\"https://service\"}");
     }
 
+    private DiagramSummary summary(String name, String title) {
+        return new DiagramSummary(1L, name, title, LocalDateTime.now(), LocalDateTime.now());
+    }
+
     private Diagram makeDiagram(String name, String title) {
         Diagram d = new Diagram();
         d.setName(name);
@@ -0,0 +1,67 @@
+package com.example.diagramdesigner.controller;
+
+import com.example.diagramdesigner.service.MetricsFetchPlan;
+import com.example.diagramdesigner.service.MetricsFetchPlanner;
+import com.example.diagramdesigner.service.MetricsProxyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = DiagramMetricsController.class)
+class DiagramMetricsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MetricsFetchPlanner fetchPlanner;
+
+    @MockBean
+    private MetricsProxyService metricsProxyService;
+
+    @Test
+    void diagramMetricsAreWrittenFromCompiledPlan() throws Exception {
+        MetricsFetchPlan plan = mock(MetricsFetchPlan.class);
+        when(fetchPlanner.planFor("telemetry")).thenReturn(plan);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"diagram\":\"telemetry\",\"nodes\":{}}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(metricsProxyService).writeDiagramMetrics(any(MetricsFetchPlan.class), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/diagrams/telemetry/metrics"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.diagram").value("telemetry"));
+    }
+
+    @Test
+    void unknownDiagramReturns404() throws Exception {
+        when(fetchPlanner.planFor("missing"))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Diagram not found with name: missing"));
+
+        mockMvc.perform(get("/api/diagrams/missing/metrics"))
+                .andExpect(status().isNotFound());
+    }
+}
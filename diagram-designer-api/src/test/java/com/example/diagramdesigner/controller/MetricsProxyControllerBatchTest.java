@@ -0,0 +1,81 @@
+package com.example.diagramdesigner.controller;
+
+import com.example.diagramdesigner.service.MetricsProxyService;
+import com.example.diagramdesigner.service.MetricsUrlValidator;
+import com.example.diagramdesigner.service.ServiceDiscovery;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = MetricsProxyController.class)
+@Import(MetricsUrlValidator.class)
+class MetricsProxyControllerBatchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MetricsProxyService metricsProxyService;
+
+    @MockBean
+    private ServiceDiscovery serviceDiscovery;
+
+    @Test
+    void batchResponseIsStreamedFromService() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"k1\":{\"v\":1}}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(metricsProxyService).writeBatchMetrics(anyList(), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(post("/api/metrics/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"url\":\"http://host/metrics\",\"node\":\"n\",\"key\":\"k1\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.k1.v").value(1));
+    }
+
+    @Test
+    void oversizedBatchIsRejected() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 101; i++) {
+            body.append(i > 0 ? "," : "").append("{\"url\":\"http://host/").append(i).append("\"}");
+        }
+        body.append(']');
+
+        MvcResult result = mockMvc.perform(post("/api/metrics/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Batch size exceeds maximum of 100"));
+        verify(metricsProxyService, never()).writeBatchMetrics(anyList(), any(OutputStream.class));
+    }
+}
@@ -1,11 +1,13 @@
 package com.example.diagramdesigner.controller;
 
 import com.example.diagramdesigner.service.MetricsProxyService;
+import com.example.diagramdesigner.service.MetricsUrlValidator;
 import com.example.diagramdesigner.service.ServiceDiscovery;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.hamcrest.Matchers.containsString;
@@ -15,6 +17,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = MetricsProxyController.class)
+@Import(MetricsUrlValidator.class)
 class MetricsProxyControllerSecurityTest {
 
     @Autowired
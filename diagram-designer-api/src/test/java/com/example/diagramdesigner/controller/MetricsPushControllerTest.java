@@ -0,0 +1,75 @@
+package com.example.diagramdesigner.controller;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.example.diagramdesigner.service.MetricsProxyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = MetricsPushController.class)
+@Import(MetricsProxyProperties.class)
+@TestPropertySource(properties = {
+        "metrics.proxy.push.enabled=true",
+        "metrics.proxy.push.token=s3cret"
+})
+class MetricsPushControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MetricsProxyService metricsProxyService;
+
+    @Test
+    void pushWithValidTokenIsIngested() throws Exception {
+        when(metricsProxyService.ingestPushed(any(InputStream.class)))
+                .thenReturn(new MetricsProxyService.PushResult(2, 1, null));
+
+        mockMvc.perform(post("/api/metrics/push")
+                        .header("Authorization", "Bearer s3cret")
+                        .contentType("application/x-ndjson")
+                        .content("{\"orders.depth\": 42, \"orders.rate\": 3.5, \"bad name\": 1}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(1));
+    }
+
+    @Test
+    void pushWithoutValidTokenIsRejected() throws Exception {
+        mockMvc.perform(post("/api/metrics/push").content("{\"orders.depth\": 42}"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/metrics/push")
+                        .header("Authorization", "Bearer wrong")
+                        .content("{\"orders.depth\": 42}"))
+                .andExpect(status().isUnauthorized());
+
+        verify(metricsProxyService, never()).ingestPushed(any(InputStream.class));
+    }
+
+    @Test
+    void malformedInputReportsWhatWasStored() throws Exception {
+        when(metricsProxyService.ingestPushed(any(InputStream.class)))
+                .thenReturn(new MetricsProxyService.PushResult(1, 0, "Malformed JSON: unexpected end-of-input"));
+
+        mockMvc.perform(post("/api/metrics/push")
+                        .header("Authorization", "Bearer s3cret")
+                        .content("{\"orders.depth\": 42}\n{\"orders.rate\":"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.error").exists());
+    }
+}
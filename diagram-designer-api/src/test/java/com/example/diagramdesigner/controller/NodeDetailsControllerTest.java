@@ -1,5 +1,6 @@
 package com.example.diagramdesigner.controller;
 
+import com.example.diagramdesigner.config.CacheProperties;
 import com.example.diagramdesigner.service.ConfigurationProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -7,13 +8,21 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = NodeDetailsController.class)
+@Import(CacheProperties.class)
 class NodeDetailsControllerTest {
 
     @Autowired
@@ -74,4 +83,21 @@ class NodeDetailsControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").exists());
     }
+
+    @org.junit.jupiter.api.Test
+    void processedDetailsAreCachedAndRevalidatedWithTheirETag() throws Exception {
+        when(configurationProcessor.processVariableSubstitution(eq("node-details:test-node"), anyString()))
+                .thenAnswer(inv -> inv.<String>getArgument(1).replace("${CONSOLE_URL:https://console.example.com}",
+                        "https://console.example.com"));
+
+        String etag = mockMvc.perform(get("/api/node-details/test-node"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[0].url").value("https://console.example.com"))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/node-details/test-node").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        verify(configurationProcessor, times(1)).processVariableSubstitution(eq("node-details:test-node"), anyString());
+    }
 }
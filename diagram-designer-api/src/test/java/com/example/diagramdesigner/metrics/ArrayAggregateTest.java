@@ -0,0 +1,63 @@
+package com.example.diagramdesigner.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayAggregateTest {
+
+    private final Map<String, Object> body = Map.of(
+            "queues", List.of(
+                    Map.of("name", "orders", "state", "running", "messages", 10),
+                    Map.of("name", "audit", "state", "idle", "messages", 5),
+                    Map.of("name", "billing", "state", "running", "messages", "7"),
+                    Map.of("name", "dead", "state", "running")),
+            "sizes", Arrays.asList(3, null, 4.5, "n/a"));
+
+    @Test
+    void aggregatesEveryElement() {
+        assertEquals(22.0, FieldPath.compile("sum(queues[*].messages)").resolve(body));
+        assertEquals(22.0 / 3, FieldPath.compile("avg(queues[*].messages)").resolve(body));
+        assertEquals(5.0, FieldPath.compile("min(queues[*].messages)").resolve(body));
+        assertEquals(10.0, FieldPath.compile("max(queues[*].messages)").resolve(body));
+        assertEquals(4L, FieldPath.compile("count(queues[*])").resolve(body));
+        assertEquals(3L, FieldPath.compile("count(queues[*].messages)").resolve(body));
+        assertEquals(7.5, FieldPath.compile("sum(sizes[*])").resolve(body));
+    }
+
+    @Test
+    void filtersElements() {
+        assertEquals(17.0, FieldPath.compile("sum(queues[?state=running].messages)").resolve(body));
+        assertEquals(1L, FieldPath.compile("count(queues[?state != 'running'])").resolve(body));
+        assertEquals(2L, FieldPath.compile("count(queues[?messages>=7])").resolve(body));
+        assertEquals(0L, FieldPath.compile("count(queues[?messages>100])").resolve(body));
+    }
+
+    @Test
+    void emptyOrMissingArrays() {
+        assertEquals(0.0, FieldPath.compile("sum(queues[?state=stopped].messages)").resolve(body));
+        assertNull(FieldPath.compile("avg(queues[?state=stopped].messages)").resolve(body));
+        assertNull(FieldPath.compile("max(missing[*].value)").resolve(body));
+        assertNull(FieldPath.compile("count(queues[0].name[*])").resolve(body));
+    }
+
+    @Test
+    void rootArraysAndCanonicalText() {
+        List<Object> root = List.of(Map.of("size", 2), Map.of("size", 3));
+        assertEquals(5.0, FieldPath.compile("sum([*].size)").resolve(root));
+        assertEquals("sum(queues[?state=running].messages)",
+                ArrayAggregate.compile(" SUM( queues[?state=running].messages ) ").text());
+        assertFalse(ArrayAggregate.isAggregate("queue_totals.messages"));
+    }
+
+    @Test
+    void malformedAggregatesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.compile("sum(queues.messages)"));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.compile("sum(a[*].b[*].c)"));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.compile("count(queues[?state])"));
+    }
+}
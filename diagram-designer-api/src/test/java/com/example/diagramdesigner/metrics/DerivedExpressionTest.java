@@ -0,0 +1,70 @@
+package com.example.diagramdesigner.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DerivedExpressionTest {
+
+    @Test
+    void inputNamesAreListedInFirstUseOrder() {
+        DerivedExpression expression = DerivedExpression.compile("ratio(rate(errors), sum(rate(requests), errors, 1))");
+        assertEquals(List.of("errors", "requests"), expression.inputNames());
+    }
+
+    @Test
+    void rateIsPerSecondAndNeedsTwoSamples() {
+        DerivedExpression rate = DerivedExpression.compile("rate(sent)");
+
+        assertTrue(Double.isNaN(rate.evaluate(new double[] {100}, new long[] {1_000})));
+        assertEquals(25.0, rate.evaluate(new double[] {150}, new long[] {3_000}));
+    }
+
+    @Test
+    void rateOnlyAdvancesOnNewerSamples() {
+        DerivedExpression rate = DerivedExpression.compile("rate(sent)");
+        rate.evaluate(new double[] {100}, new long[] {1_000});
+        assertEquals(10.0, rate.evaluate(new double[] {110}, new long[] {2_000}));
+
+        // Another viewer evaluating the same sample sees the same rate
+        assertEquals(10.0, rate.evaluate(new double[] {110}, new long[] {2_000}));
+        // An older sample is ignored
+        assertEquals(10.0, rate.evaluate(new double[] {50}, new long[] {1_500}));
+    }
+
+    @Test
+    void counterResetCountsValueSinceReset() {
+        DerivedExpression rate = DerivedExpression.compile("rate(sent)");
+        rate.evaluate(new double[] {1_000}, new long[] {1_000});
+        assertEquals(5.0, rate.evaluate(new double[] {5}, new long[] {2_000}));
+    }
+
+    @Test
+    void deltaReportsChangeIncludingDecreases() {
+        DerivedExpression delta = DerivedExpression.compile("delta(depth)");
+        delta.evaluate(new double[] {40}, new long[] {1_000});
+        assertEquals(-15.0, delta.evaluate(new double[] {25}, new long[] {2_000}));
+    }
+
+    @Test
+    void ratioAndSumCombineInputsAndLiterals() {
+        assertEquals(0.25, DerivedExpression.compile("ratio(a, b)").evaluate(new double[] {1, 4}, new long[] {1, 1}));
+        assertTrue(Double.isNaN(DerivedExpression.compile("ratio(a, 0)").evaluate(new double[] {1}, new long[] {1})));
+        assertEquals(7.5, DerivedExpression.compile("sum(a, b, 0.5)").evaluate(new double[] {3, 4}, new long[] {1, 1}));
+    }
+
+    @Test
+    void missingInputPropagatesAsNaN() {
+        assertTrue(Double.isNaN(DerivedExpression.compile("sum(a, b)")
+                .evaluate(new double[] {1, Double.NaN}, new long[] {1, 1})));
+    }
+
+    @Test
+    void malformedExpressionsAreRejected() {
+        for (String source : List.of("", "rate(", "rate(a, b)", "ratio(a)", "sum()", "max(a)", "a b", "rate(a))", "a + b")) {
+            assertThrows(IllegalArgumentException.class, () -> DerivedExpression.compile(source), source);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.diagramdesigner.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldPathTest {
+
+    private final Map<String, Object> body = Map.of(
+            "queue_totals", Map.of("messages", 42),
+            "measurements", List.of(Map.of("value", 1.5), Map.of("value", "2.5")),
+            "status", "UP");
+
+    @Test
+    void resolvesDottedAndIndexedPaths() {
+        assertEquals(42, FieldPath.compile("queue_totals.messages").resolve(body));
+        assertEquals(1.5, FieldPath.compile("measurements[0].value").resolve(body));
+        assertEquals(2.5, FieldPath.compile("measurements.1.value").resolveDouble(body));
+    }
+
+    @Test
+    void missingSegmentsResolveToNull() {
+        assertNull(FieldPath.compile("queue_totals.unknown").resolve(body));
+        assertNull(FieldPath.compile("measurements[5].value").resolve(body));
+        assertNull(FieldPath.compile("status.value").resolve(body));
+        assertTrue(Double.isNaN(FieldPath.compile("status").resolveDouble(body)));
+    }
+
+    @Test
+    void emptyPathResolvesToRoot() {
+        assertSame(body, FieldPath.compile("").resolve(body));
+        assertEquals(3.0, FieldPath.compile(null).resolveDouble(3));
+    }
+}
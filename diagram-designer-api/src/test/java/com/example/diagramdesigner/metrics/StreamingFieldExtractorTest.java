@@ -0,0 +1,127 @@
+package com.example.diagramdesigner.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingFieldExtractorTest {
+
+    private static final String OVERVIEW = """
+            {"management_version": "3.12.0",
+             "queue_totals": {"messages": 42, "messages_ready": 40},
+             "object_totals": {"queues": 3},
+             "listeners": [{"port": 5672}, {"port": 15672}],
+             "message_stats": {"publish": 1000, "publish_details": {"rate": 12.5}}}""";
+
+    @Test
+    void extractsSelectedFieldsInDocumentShape() throws IOException {
+        Object result = extract(OVERVIEW, 7, "queue_totals.messages", "listeners[1].port", "message_stats.publish_details");
+
+        assertEquals(Map.of(
+                "queue_totals", Map.of("messages", 42),
+                "listeners", Arrays.asList(null, Map.of("port", 15672)),
+                "message_stats", Map.of("publish_details", Map.of("rate", 12.5))), result);
+        assertEquals(12.5, FieldPath.compile("message_stats.publish_details.rate").resolve(result));
+        assertEquals(15672, FieldPath.compile("listeners[1].port").resolve(result));
+    }
+
+    @Test
+    void reportsCompletionBeforeTheEndOfTheDocument() throws IOException {
+        StreamingFieldExtractor extractor = FieldSelection.of(List.of("management_version")).newExtractor(1 << 20);
+        byte[] bytes = OVERVIEW.getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(extractor.feed(bytes, 0, 40));
+        assertEquals(Map.of("management_version", "3.12.0"), extractor.result());
+    }
+
+    @Test
+    void missingPathsAreAbsentFromTheResult() throws IOException {
+        Object result = extract(OVERVIEW, 16, "queue_totals.unknown", "object_totals.queues");
+
+        assertEquals(3, FieldPath.compile("object_totals.queues").resolve(result));
+        assertNull(FieldPath.compile("queue_totals.unknown").resolve(result));
+    }
+
+    @Test
+    void skipsLargeUnselectedSubtrees() throws IOException {
+        StringBuilder json = new StringBuilder("{\"queues\":[");
+        for (int i = 0; i < 50_000; i++) {
+            json.append(i > 0 ? "," : "").append("{\"name\":\"q").append(i).append("\",\"messages\":").append(i).append('}');
+        }
+        json.append("],\"totals\":{\"messages\":7}}");
+
+        Object result = extract(json.toString(), 8192, "totals.messages");
+
+        assertEquals(Map.of("totals", Map.of("messages", 7)), result);
+    }
+
+    @Test
+    void responsesOverTheLimitFail() {
+        StreamingFieldExtractor extractor = FieldSelection.of(List.of("missing")).newExtractor(100);
+        byte[] bytes = OVERVIEW.getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> extractor.feed(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void selectionWithWholeBodyPathIsNotCompiled() {
+        assertNull(FieldSelection.of(List.of("status", "")));
+        assertNull(FieldSelection.of(List.of()));
+        assertEquals("a,a.b.c,z", FieldSelection.of(List.of("z", "a.b[c]", "a")).canonical());
+    }
+
+    @Test
+    void aggregatesArraysWhileParsing() throws IOException {
+        StringBuilder json = new StringBuilder("{\"queues\":[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i > 0 ? "," : "").append("{\"name\":\"q").append(i).append("\",\"state\":\"")
+                    .append(i % 2 == 0 ? "running" : "idle").append("\",\"stats\":{\"messages\":").append(i)
+                    .append("},\"args\":{\"x-max-length\":1000}}");
+        }
+        json.append("],\"totals\":{\"messages\":7}}");
+
+        Object result = extract(json.toString(), 512, "sum(queues[?state=running].stats.messages)",
+                "count(queues[*])", "max(queues[*].stats.messages)", "totals.messages");
+
+        // Only the aggregate values are kept, not the array
+        assertEquals(Map.of(
+                "sum(queues[?state=running].stats.messages)", 249500.0,
+                "count(queues[*])", 1000L,
+                "max(queues[*].stats.messages)", 999.0,
+                "totals", Map.of("messages", 7)), result);
+        assertEquals(249500.0, FieldPath.compile("sum(queues[?state = running].stats.messages)").resolve(result));
+    }
+
+    @Test
+    void aggregatesCompleteWhenTheirArrayEnds() throws IOException {
+        StreamingFieldExtractor extractor = FieldSelection.of(List.of("sum(listeners[*].port)")).newExtractor(1 << 20);
+        byte[] bytes = OVERVIEW.getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(extractor.feed(bytes, 0, OVERVIEW.indexOf("\"message_stats\"")));
+        assertEquals(Map.of("sum(listeners[*].port)", 21344.0), extractor.result());
+        assertEquals(Map.of("sum([*])", 6.0), extract("[1, 2, \"3\"]", 4, "sum([*])"));
+    }
+
+    @Test
+    void aggregateOverAnArrayAlsoReadByIndexFallsBackToWholeBody() {
+        assertNull(FieldSelection.of(List.of("listeners[0].port", "count(listeners[*])")));
+        assertNotNull(FieldSelection.of(List.of("listeners", "count(listeners[*])")));
+    }
+
+    private static Object extract(String json, int chunkSize, String... paths) throws IOException {
+        StreamingFieldExtractor extractor = FieldSelection.of(List.of(paths)).newExtractor(1 << 24);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            if (extractor.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset))) {
+                return extractor.result();
+            }
+        }
+        return extractor.finish();
+    }
+}
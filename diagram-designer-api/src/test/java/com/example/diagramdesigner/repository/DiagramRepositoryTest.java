@@ -4,6 +4,9 @@ import com.example.diagramdesigner.model.Diagram;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.Optional;
@@ -35,6 +38,8 @@ class DiagramRepositoryTest {
         assertThat(found.get().getName()).isEqualTo("test-diagram");
         assertThat(found.get().getTitle()).isEqualTo("Test Diagram");
         assertThat(found.get().getConfig()).isEqualTo("{\"nodes\": []}");
+        assertThat(found.get().getContentHash()).isEqualTo(Diagram.contentHashOf("{\"nodes\": []}"));
+        assertThat(found.get().getContentSize()).isEqualTo(13L);
     }
 
     @Test
@@ -56,4 +61,24 @@ class DiagramRepositoryTest {
 
         assertThat(found).isEmpty();
     }
+
+    @Test
+    void shouldPageSummariesByNamePrefix() {
+        for (String name : new String[] {"tele-b", "tele-a", "other", "tele_c"}) {
+            Diagram diagram = new Diagram();
+            diagram.setName(name);
+            diagram.setTitle(name.toUpperCase());
+            diagram.setConfig("{\"nodes\": []}");
+            diagramRepository.save(diagram);
+        }
+
+        Page<DiagramSummary> page = diagramRepository.findByNameStartingWith("tele-",
+                PageRequest.of(0, 1, Sort.by("name")));
+
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).extracting(DiagramSummary::name).containsExactly("tele-a");
+        assertThat(page.getContent().get(0).title()).isEqualTo("TELE-A");
+        assertThat(diagramRepository.findByNameStartingWith("", PageRequest.of(0, 10)).getTotalElements())
+                .isEqualTo(4);
+    }
 }
@@ -0,0 +1,45 @@
+package com.example.diagramdesigner.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BundledConfigIndexTest {
+
+    @Test
+    void indexesConfigsAndNodeDetailsWithTitlesSizesAndHashes(@TempDir Path configsDir) throws Exception {
+        Files.writeString(configsDir.resolve("b.json"), "{\"config\": {\"title\": \"Bee\"}, \"nodes\": []}");
+        Files.writeString(configsDir.resolve("a.json"), "{\"nodes\": []}");
+        Files.writeString(configsDir.resolve("notes.txt"), "ignored");
+        Files.createDirectory(configsDir.resolve("details"));
+        Files.writeString(configsDir.resolve("details/node.json"), "{\"title\": \"Node\"}");
+        Path indexFile = configsDir.resolve("out/META-INF/diagram-index.json");
+
+        BundledConfigIndex.main(new String[] {configsDir.toString(), indexFile.toString()});
+        BundledConfigIndex.Index index = new ObjectMapper().readValue(indexFile.toFile(), BundledConfigIndex.Index.class);
+
+        assertEquals(List.of("a.json", "b.json"), index.configs().stream().map(BundledConfigIndex.Entry::name).toList());
+        BundledConfigIndex.Entry b = index.configs().get(1);
+        assertEquals("Bee", b.title());
+        assertEquals(Files.size(configsDir.resolve("b.json")), b.size());
+        assertEquals(64, b.sha256().length());
+        assertNull(index.configs().get(0).title());
+        assertEquals(List.of(new BundledConfigIndex.Entry("node.json", "Node", 17,
+                index.details().get(0).sha256())), index.details());
+    }
+
+    @Test
+    void indexBuiltIntoTheClasspathIsLoaded() {
+        BundledConfigIndex index = new BundledConfigIndex(new ObjectMapper());
+
+        // Generated into target/classes during process-classes
+        assertTrue(index.isPresent());
+        assertTrue(index.configs().stream().anyMatch(entry -> entry.name().equals("diagram-config.json")));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.diagramdesigner.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConfigsDirectoryWatcherTest {
+
+    private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+    private final ConfigsDirectoryWatcher watcher =
+            new ConfigsDirectoryWatcher(mock(ConfigsDirectoryResolver.class), publisher);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        watcher.stop();
+    }
+
+    @Test
+    void changedConfigFilesGetANewVersionAndAreAnnounced(@TempDir Path configsDir) throws Exception {
+        Files.writeString(configsDir.resolve("a.json"), "{}");
+        watcher.watch(configsDir);
+        assertTrue(watcher.isWatching(configsDir));
+        long before = watcher.versionOf("a.json");
+
+        Files.writeString(configsDir.resolve("a.json"), "{\"changed\":true}");
+        Files.writeString(configsDir.resolve("notes.txt"), "ignored");
+
+        verify(publisher, timeout(10_000).atLeastOnce())
+                .publishEvent(new ConfigsInvalidatedEvent(Set.of("diagram-file:a.json")));
+        assertTrue(watcher.versionOf("a.json") > before);
+        assertEquals(0, watcher.versionOf("b.json"));
+    }
+
+    @Test
+    void stoppedWatcherNoLongerClaimsTheDirectory(@TempDir Path configsDir) throws Exception {
+        watcher.watch(configsDir);
+        watcher.stop();
+
+        assertFalse(watcher.isWatching(configsDir));
+        assertFalse(watcher.isWatching(null));
+    }
+}
@@ -1,14 +1,27 @@
 package com.example.diagramdesigner.service;
 
+import com.example.diagramdesigner.config.CacheProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.env.Environment;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,7 +37,7 @@ class ConfigurationProcessorTest {
 
     @BeforeEach
     void setUp() {
-        configurationProcessor = new ConfigurationProcessor(environment, new ObjectMapper(), serviceDiscovery);
+        configurationProcessor = new ConfigurationProcessor(environment, new ObjectMapper(), serviceDiscovery, new CacheProperties());
     }
 
     @Test
@@ -54,4 +67,127 @@ class ConfigurationProcessorTest {
 
         assertThat(result).contains("http://fallback.local");
     }
+
+    @Test
+    void rendersCompactJsonWithSubstitutedStringsEscaped() {
+        when(environment.getProperty("LABEL", (String) null)).thenReturn("say \"hi\"\n");
+
+        String result = configurationProcessor.processVariableSubstitution("""
+                {"nodes": [ {"name": "${LABEL}", "size": 1.5, "tags": ["a", "${MISSING}", null, true]} ],
+                 "${LABEL}": {"empty": {}, "n": -3}}""");
+
+        assertThat(result).isEqualTo("{\"nodes\":[{\"name\":\"say \\\"hi\\\"\\n\",\"size\":1.5,"
+                + "\"tags\":[\"a\",\"${MISSING}\",null,true]}],\"${LABEL}\":{\"empty\":{},\"n\":-3}}");
+    }
+
+    @Test
+    void reusesTheRenderingUntilAResolvedValueChanges() {
+        when(environment.getProperty("API_HOST", (String) null)).thenReturn("a.example.com", "a.example.com", "b.example.com");
+        String config = "{\"url\":\"https://${API_HOST}/health\",\"backup\":\"https://${API_HOST}/backup\"}";
+
+        String first = configurationProcessor.processVariableSubstitution(config);
+        String second = configurationProcessor.processVariableSubstitution(new String(config));
+        String third = configurationProcessor.processVariableSubstitution(config);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(third).isEqualTo("{\"url\":\"https://b.example.com/health\",\"backup\":\"https://b.example.com/backup\"}");
+        // Each distinct placeholder is resolved once per render
+        verify(environment, times(3)).getProperty("API_HOST", (String) null);
+    }
+
+    @Test
+    void returnsInvalidJsonUnchanged() {
+        assertThat(configurationProcessor.processVariableSubstitution("{not json ${API_HOST}")).isEqualTo("{not json ${API_HOST}");
+    }
+
+    @Test
+    void byteRenderingIsReturnedWithoutCopying() {
+        when(environment.getProperty("API_HOST", (String) null)).thenReturn("api.example.com");
+        String config = "{\"url\":\"https://${API_HOST}/health\"}";
+
+        byte[] first = configurationProcessor.processVariableSubstitutionToBytes("diagram-file:a.json", config);
+        byte[] second = configurationProcessor.processVariableSubstitutionToBytes("diagram-file:a.json", config);
+
+        assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("{\"url\":\"https://api.example.com/health\"}");
+        assertThat(second).isSameAs(first);
+        assertThat(configurationProcessor.processVariableSubstitutionToBytes("diagram-file:b.json", "{not json"))
+                .isEqualTo("{not json".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void streamingSubstitutionMatchesTheTemplateOutput() throws Exception {
+        when(environment.getProperty("API_HOST", (String) null)).thenReturn("api.example.com");
+        String config = """
+                {"nodes": [{"url": "https://${API_HOST}/a", "other": "${API_HOST}:${MISSING}", "n": [1, 2.5, null]}]}""";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        configurationProcessor.processVariableSubstitution(
+                new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)), out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo(configurationProcessor.processVariableSubstitution(config))
+                .contains("\"api.example.com:${MISSING}\"");
+    }
+
+    @Test
+    void resolvesServicePlaceholdersConcurrently() {
+        when(serviceDiscovery.discoverServiceUrl(anyString())).thenAnswer(inv -> {
+            Thread.sleep(300);
+            return "http://" + inv.getArgument(0) + ".apps.local";
+        });
+        String config = "{\"a\":\"${orders-service}\",\"b\":\"${billing-service}\",\"c\":\"${audit-service}/x\","
+                + "\"d\":\"${orders-service}\"}";
+
+        long start = System.nanoTime();
+        String result = configurationProcessor.processVariableSubstitution(config);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(result).isEqualTo("{\"a\":\"http://orders-service.apps.local\",\"b\":\"http://billing-service.apps.local\","
+                + "\"c\":\"http://audit-service.apps.local/x\",\"d\":\"http://orders-service.apps.local\"}");
+        assertThat(elapsedMs).isLessThan(800);
+        verify(serviceDiscovery, times(1)).discoverServiceUrl("orders-service");
+    }
+
+    @Test
+    void lookupsPastTheSharedDeadlineFallBackToDefaults() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getServiceDiscovery().setResolveTimeoutMs(100);
+        ConfigurationProcessor processor = new ConfigurationProcessor(environment, new ObjectMapper(), serviceDiscovery,
+                cacheProperties);
+        when(serviceDiscovery.discoverServiceUrl("fast-service")).thenReturn("http://fast.local");
+        when(serviceDiscovery.discoverServiceUrl("slow-service")).thenAnswer(inv -> {
+            Thread.sleep(2000);
+            return "http://slow.local";
+        });
+        when(environment.getProperty("slow-service", "http://fallback.local")).thenReturn("http://fallback.local");
+
+        long start = System.nanoTime();
+        String result = processor.processVariableSubstitution(
+                "{\"a\":\"${fast-service}\",\"b\":\"${slow-service:http://fallback.local}\"}");
+
+        assertThat(result).isEqualTo("{\"a\":\"http://fast.local\",\"b\":\"http://fallback.local\"}");
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(1000);
+    }
+
+    @Test
+    void changedVariablesInvalidateOnlyTheDocumentsThatUseThem() {
+        ApplicationEventPublisher publisher = org.mockito.Mockito.mock(ApplicationEventPublisher.class);
+        configurationProcessor.setApplicationEventPublisher(publisher);
+        when(environment.getProperty("API_HOST", (String) null)).thenReturn("api.example.com");
+        when(serviceDiscovery.discoverServiceUrl("orders-service")).thenReturn("http://orders.local");
+        configurationProcessor.processVariableSubstitution("diagram-file:a.json", "{\"url\":\"${API_HOST}\"}");
+        configurationProcessor.processVariableSubstitution("diagram:b", "{\"url\":\"${orders-service}/x\"}");
+        configurationProcessor.processVariableSubstitution("diagram:c", "{\"url\":\"https://static\"}");
+
+        configurationProcessor.onEnvironmentChanged(new EnvironmentChangeEvent(Set.of("API_HOST", "OTHER")));
+        verify(publisher).publishEvent(new ConfigsInvalidatedEvent(Set.of("diagram-file:a.json")));
+
+        configurationProcessor.onServiceUrlChanged(new ServiceUrlChangedEvent(Set.of("orders-service")));
+        verify(publisher).publishEvent(new ConfigsInvalidatedEvent(Set.of("diagram:b")));
+
+        // Invalidated documents are only tracked again once they are processed again
+        configurationProcessor.onEnvironmentChanged(new EnvironmentChangeEvent(Set.of("API_HOST")));
+        verify(publisher, times(2)).publishEvent(any(Object.class));
+        verify(publisher, never()).publishEvent(new ConfigsInvalidatedEvent(Set.of("diagram:c")));
+    }
 }
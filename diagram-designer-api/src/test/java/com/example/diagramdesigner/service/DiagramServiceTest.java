@@ -2,6 +2,7 @@ package com.example.diagramdesigner.service;
 
 import com.example.diagramdesigner.dto.DiagramRequest;
 import com.example.diagramdesigner.model.Diagram;
+import com.example.diagramdesigner.repository.DiagramFingerprint;
 import com.example.diagramdesigner.repository.DiagramRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,12 +12,16 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -35,6 +40,9 @@ class DiagramServiceTest {
     @Mock
     private ConfigsDirectoryResolver configsDirectoryResolver;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private DiagramService diagramService;
@@ -42,7 +50,7 @@ class DiagramServiceTest {
     @BeforeEach
     void setUp() {
         diagramService = new DiagramService(diagramRepository, configurationProcessor,
-                objectMapper, configsDirectoryResolver);
+                objectMapper, configsDirectoryResolver, transactionManager);
     }
 
     // --- CRUD Tests ---
@@ -149,6 +157,23 @@ class DiagramServiceTest {
         assertThat(result.getConfig()).isEqualTo("{\"updated\":true}");
     }
 
+    @Test
+    void updateDiagram_withUnchangedContent_doesNotSave() {
+        Diagram existing = makeDiagram(1L, "same", "Same");
+        when(diagramRepository.findById(1L)).thenReturn(Optional.of(existing));
+
+        DiagramRequest dto = new DiagramRequest();
+        dto.setName("same");
+        dto.setTitle("Same");
+        dto.setConfig("{\"nodes\":[]}");
+
+        Diagram result = diagramService.updateDiagram(1L, dto);
+
+        assertThat(result).isSameAs(existing);
+        verify(diagramRepository, never()).save(any(Diagram.class));
+        verify(diagramRepository, never()).findByName(anyString());
+    }
+
     @Test
     void updateDiagram_duplicateNameOnDifferentDiagram_throws409() {
         when(diagramRepository.findById(1L)).thenReturn(Optional.of(makeDiagram(1L, "old", "Old")));
@@ -219,17 +244,13 @@ class DiagramServiceTest {
                 "{\"config\":{\"title\":\"Another Diagram\"},\"nodes\":[]}");
         Files.writeString(tempDir.resolve("readme.txt"), "should be ignored");
 
-        when(diagramRepository.findByName(anyString())).thenReturn(Optional.empty());
-        when(diagramRepository.save(any(Diagram.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of());
 
         diagramService.importFromDirectory(tempDir);
 
-        ArgumentCaptor<Diagram> captor = ArgumentCaptor.forClass(Diagram.class);
-        verify(diagramRepository, times(2)).save(captor.capture());
-
-        List<Diagram> saved = captor.getAllValues();
-        assertThat(saved).extracting(Diagram::getName)
+        assertThat(savedDiagrams()).extracting(Diagram::getName)
                 .containsExactlyInAnyOrder("test-diagram", "another");
+        verify(diagramRepository, never()).findByName(anyString());
     }
 
     @Test
@@ -237,46 +258,112 @@ class DiagramServiceTest {
         Files.writeString(tempDir.resolve("my-app.json"),
                 "{\"config\":{\"title\":\"My Application\"},\"nodes\":[]}");
 
-        when(diagramRepository.findByName("my-app")).thenReturn(Optional.empty());
-        when(diagramRepository.save(any(Diagram.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of());
+
+        diagramService.importFromDirectory(tempDir);
+
+        assertThat(savedDiagrams()).singleElement()
+                .extracting(Diagram::getTitle).isEqualTo("My Application");
+    }
+
+    @Test
+    void importFromDirectory_skipsUnchangedDiagrams(@TempDir Path tempDir) throws Exception {
+        String content = "{\"config\":{\"title\":\"Existing\"},\"nodes\":[]}";
+        Files.writeString(tempDir.resolve("existing.json"), content);
+
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of(
+                new DiagramFingerprint(1L, "existing", Diagram.contentHashOf(content), LocalDateTime.now().minusDays(1))));
 
         diagramService.importFromDirectory(tempDir);
 
-        ArgumentCaptor<Diagram> captor = ArgumentCaptor.forClass(Diagram.class);
-        verify(diagramRepository).save(captor.capture());
-        assertThat(captor.getValue().getTitle()).isEqualTo("My Application");
+        verify(diagramRepository, never()).saveAll(any());
+        verifyNoInteractions(transactionManager);
     }
 
     @Test
-    void importFromDirectory_skipsExistingDiagrams(@TempDir Path tempDir) throws Exception {
+    void importFromDirectory_updatesDiagramsWhoseFileChanged(@TempDir Path tempDir) throws Exception {
         Files.writeString(tempDir.resolve("existing.json"),
-                "{\"config\":{\"title\":\"Existing\"},\"nodes\":[]}");
+                "{\"config\":{\"title\":\"Renamed\"},\"nodes\":[{\"name\":\"new\"}]}");
+        Diagram row = makeDiagram(1L, "existing", "Existing");
 
-        when(diagramRepository.findByName("existing"))
-                .thenReturn(Optional.of(makeDiagram(1L, "existing", "Existing")));
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of(
+                new DiagramFingerprint(1L, "existing", row.getContentHash(), LocalDateTime.now().minusDays(1))));
+        when(diagramRepository.findAllById(Set.of(1L))).thenReturn(List.of(row));
+
+        diagramService.importFromDirectory(tempDir);
+
+        assertThat(savedDiagrams()).containsExactly(row);
+        assertThat(row.getTitle()).isEqualTo("Renamed");
+        assertThat(row.getConfig()).contains("\"new\"");
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void importFromDirectory_keepsDiagramsEditedAfterTheirFile(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("edited.json"),
+                "{\"config\":{\"title\":\"From File\"},\"nodes\":[]}");
+
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of(
+                new DiagramFingerprint(1L, "edited", Diagram.contentHashOf("{\"nodes\":[\"edited\"]}"), LocalDateTime.now().plusMinutes(1))));
 
         diagramService.importFromDirectory(tempDir);
 
-        verify(diagramRepository, never()).save(any());
+        verify(diagramRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void importFromDirectory_insertsInBatchesWithinOneTransaction(@TempDir Path tempDir) throws Exception {
+        int count = DiagramService.IMPORT_BATCH_SIZE * 2 + 1;
+        for (int i = 0; i < count; i++) {
+            Files.writeString(tempDir.resolve("d" + i + ".json"), "{\"nodes\":[]}");
+        }
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of());
+
+        diagramService.importFromDirectory(tempDir);
+
+        verify(diagramRepository, times(3)).saveAll(any());
+        assertThat(savedDiagrams()).hasSize(count);
+        verify(transactionManager).getTransaction(any());
+        verify(transactionManager).commit(any());
     }
 
     @Test
     void importFromDirectory_isIdempotent(@TempDir Path tempDir) throws Exception {
-        Files.writeString(tempDir.resolve("diagram.json"),
-                "{\"config\":{\"title\":\"Diagram\"},\"nodes\":[]}");
+        String content = "{\"config\":{\"title\":\"Diagram\"},\"nodes\":[]}";
+        Files.writeString(tempDir.resolve("diagram.json"), content);
 
         // First import: diagram doesn't exist yet
-        when(diagramRepository.findByName("diagram")).thenReturn(Optional.empty());
-        when(diagramRepository.save(any(Diagram.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of());
         diagramService.importFromDirectory(tempDir);
-        verify(diagramRepository, times(1)).save(any());
+        verify(diagramRepository, times(1)).saveAll(any());
 
-        // Second import: diagram now exists
+        // Second import: diagram now exists with the same content
         reset(diagramRepository);
-        when(diagramRepository.findByName("diagram"))
-                .thenReturn(Optional.of(makeDiagram(1L, "diagram", "Diagram")));
+        when(diagramRepository.findAllFingerprints()).thenReturn(List.of(
+                new DiagramFingerprint(1L, "diagram", Diagram.contentHashOf(content), LocalDateTime.now())));
         diagramService.importFromDirectory(tempDir);
-        verify(diagramRepository, never()).save(any());
+        verify(diagramRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void backfillContentHashes_recordsHashAndSizeOfUnhashedRows() {
+        Diagram legacy = new Diagram();
+        legacy.setId(4L);
+        when(diagramRepository.findByContentHashIsNull()).thenReturn(List.of(legacy));
+
+        diagramService.backfillContentHashes();
+
+        verify(diagramRepository).recordContentHash(4L, Diagram.contentHashOf(null), 0L);
+        verify(diagramRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void backfillContentHashes_doesNothingWhenAllRowsAreHashed() {
+        when(diagramRepository.findByContentHashIsNull()).thenReturn(List.of());
+
+        diagramService.backfillContentHashes();
+
+        verifyNoInteractions(transactionManager);
     }
 
     @Test
@@ -286,6 +373,15 @@ class DiagramServiceTest {
         verifyNoInteractions(diagramRepository);
     }
 
+    @SuppressWarnings("unchecked")
+    private List<Diagram> savedDiagrams() {
+        ArgumentCaptor<Iterable<Diagram>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(diagramRepository, atLeastOnce()).saveAll(captor.capture());
+        List<Diagram> saved = new ArrayList<>();
+        captor.getAllValues().forEach(batch -> batch.forEach(saved::add));
+        return saved;
+    }
+
     private Diagram makeDiagram(Long id, String name, String title) {
         Diagram d = new Diagram();
         d.setId(id);
@@ -0,0 +1,57 @@
+package com.example.diagramdesigner.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsCacheSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void roundTripsEntriesWithTimestampsAndScopedKeys() throws Exception {
+        MetricsCacheSnapshot snapshot = new MetricsCacheSnapshot(tempDir.resolve("cache.snapshot"), objectMapper);
+        String key = "http://host/metrics\0node-a\0fingerprint";
+
+        snapshot.write(List.of(new MetricsCacheSnapshot.Entry(key, 1_000, Map.of("queues", List.of(1, 2)))));
+
+        List<MetricsCacheSnapshot.Entry> entries = snapshot.read(0);
+        assertEquals(1, entries.size());
+        assertEquals(key, entries.get(0).key());
+        assertEquals(1_000, entries.get(0).fetchedAt());
+        assertEquals(Map.of("queues", List.of(1, 2)), entries.get(0).value());
+    }
+
+    @Test
+    void skipsEntriesOlderThanCutoff() throws Exception {
+        MetricsCacheSnapshot snapshot = new MetricsCacheSnapshot(tempDir.resolve("cache.snapshot"), objectMapper);
+        snapshot.write(List.of(
+                new MetricsCacheSnapshot.Entry("old", 1_000, Map.of("v", 1)),
+                new MetricsCacheSnapshot.Entry("new", 5_000, Map.of("v", 2))));
+
+        List<MetricsCacheSnapshot.Entry> entries = snapshot.read(2_000);
+        assertEquals(1, entries.size());
+        assertEquals("new", entries.get(0).key());
+    }
+
+    @Test
+    void missingOrCorruptSnapshotLoadsAsEmpty() throws Exception {
+        Path file = tempDir.resolve("cache.snapshot");
+        MetricsCacheSnapshot snapshot = new MetricsCacheSnapshot(file, objectMapper);
+        assertTrue(snapshot.read(0).isEmpty());
+
+        Files.writeString(file, "not a snapshot");
+        assertTrue(snapshot.read(0).isEmpty());
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.CacheProperties;
+import com.example.diagramdesigner.model.Diagram;
+import com.example.diagramdesigner.repository.DiagramFingerprint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MetricsFetchPlannerTest {
+
+    private static final String CONFIG = """
+            {"config": {"title": "Test"},
+             "nodes": [
+               {"name": "api",
+                "status": {"url": "https://api.example.com/health", "valueField": "status",
+                           "upValue": "UP", "downValue": "DOWN"},
+                "dataGrid": [
+                  {"label": "Requests", "url": "https://api.example.com/health", "valueField": "details.requests"},
+                  {"label": "Queue", "url": "queue-service/stats", "valueField": "depth"},
+                  {"label": "Missing", "url": "missing-service/stats", "valueField": "depth"},
+                  {"label": "Bad", "url": "ftp://nope", "valueField": "x"}
+                ]},
+               {"name": "label-only", "dataGrid": []}
+             ]}""";
+
+    private ConfigurationProcessor configurationProcessor;
+    private MetricsUrlValidator urlValidator;
+    private ServiceDiscovery serviceDiscovery;
+    private DiagramService diagramService;
+    private ConfigsDirectoryResolver configsDirectoryResolver;
+    private MetricsFetchPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        configurationProcessor = mock(ConfigurationProcessor.class);
+        when(configurationProcessor.processVariableSubstitution(anyString(), anyString())).thenAnswer(inv -> inv.getArgument(1));
+        urlValidator = mock(MetricsUrlValidator.class);
+        when(urlValidator.isValidUrl(anyString())).thenAnswer(inv -> inv.<String>getArgument(0).startsWith("https://"));
+        when(urlValidator.isServiceName(anyString())).thenAnswer(inv -> !inv.<String>getArgument(0).contains(":"));
+        serviceDiscovery = mock(ServiceDiscovery.class);
+        when(serviceDiscovery.resolveServiceUrl("queue-service/stats")).thenReturn("https://queue.example.com/stats");
+        MetricsProxyService metricsProxyService = mock(MetricsProxyService.class);
+        when(metricsProxyService.cacheKeyFor(anyString(), anyString(), any()))
+                .thenAnswer(inv -> inv.getArgument(0) + "|" + inv.getArgument(1) + "|" + inv.getArgument(2));
+
+        diagramService = mock(DiagramService.class);
+        configsDirectoryResolver = mock(ConfigsDirectoryResolver.class);
+
+        planner = new MetricsFetchPlanner(configurationProcessor, urlValidator, serviceDiscovery,
+                metricsProxyService, diagramService, configsDirectoryResolver, mock(ConfigsDirectoryWatcher.class),
+                new ObjectMapper(), new CacheProperties());
+    }
+
+    @Test
+    void compileMergesDuplicateUrlsAndResolvesServiceNames() {
+        MetricsFetchPlan plan = planner.compile("test", CONFIG);
+
+        assertEquals(2, plan.sources().size());
+        assertEquals("https://api.example.com/health", plan.sources().get(0).url());
+        assertEquals("https://queue.example.com/stats", plan.sources().get(1).url());
+        // Only the fields the bindings read are extracted from each source
+        assertEquals(java.util.List.of("details.requests", "status"), plan.sources().get(0).fields().paths());
+        assertEquals(java.util.List.of("depth"), plan.sources().get(1).fields().paths());
+
+        assertEquals(1, plan.nodes().size());
+        MetricsFetchPlan.NodeBinding node = plan.nodes().get(0);
+        assertEquals(0, node.status().source());
+        assertEquals(0, node.dataGrid().get(0).source());
+        assertEquals(1, node.dataGrid().get(1).source());
+        assertEquals(2, node.dataGrid().get(0).valueField().resolve(
+                Map.of("details", Map.of("requests", 2))));
+    }
+
+    @Test
+    void pushedAndStreamingSourcesKeepTheirPrefix() {
+        MetricsFetchPlan plan = planner.compile("test", """
+                {"nodes": [{"name": "orders", "dataGrid": [
+                  {"label": "Depth", "url": "push:orders.depth", "valueField": ""},
+                  {"label": "Rate", "url": "stream:queue-service/stats", "valueField": "rate"},
+                  {"label": "Bad", "url": "stream:ftp://nope", "valueField": "rate"}
+                ]}]}""");
+
+        assertEquals(2, plan.sources().size());
+        assertEquals("push:orders.depth", plan.sources().get(0).url());
+        assertEquals("stream:https://queue.example.com/stats", plan.sources().get(1).url());
+        assertEquals(MetricsFetchPlan.NO_SOURCE, plan.nodes().get(0).dataGrid().get(2).source());
+    }
+
+    @Test
+    void unresolvableUrlsBecomeBindingErrors() {
+        MetricsFetchPlan.NodeBinding node = planner.compile("test", CONFIG).nodes().get(0);
+
+        MetricsFetchPlan.ItemBinding missing = node.dataGrid().get(2);
+        assertEquals(MetricsFetchPlan.NO_SOURCE, missing.source());
+        assertTrue(missing.error().contains("Service not found"));
+        MetricsFetchPlan.ItemBinding bad = node.dataGrid().get(3);
+        assertEquals(MetricsFetchPlan.NO_SOURCE, bad.source());
+        assertTrue(bad.error().contains("Invalid URL"));
+    }
+
+    @Test
+    void aggregateValueFieldsAreExtractedAndMalformedOnesAreBindingErrors() {
+        MetricsFetchPlan plan = planner.compile("test", """
+                {"nodes": [{"name": "orders", "dataGrid": [
+                  {"label": "Running", "url": "https://api.example.com/queues", "valueField": "count(items[?state=running])"},
+                  {"label": "Backlog", "url": "https://api.example.com/queues", "valueField": "sum(items[*].messages)"},
+                  {"label": "Bad", "url": "https://api.example.com/queues", "valueField": "sum(items.messages)"}
+                ]}]}""");
+
+        assertEquals(1, plan.sources().size());
+        assertEquals(java.util.List.of("count(items[?state=running])", "sum(items[*].messages)"),
+                plan.sources().get(0).fields().paths());
+        MetricsFetchPlan.ItemBinding backlog = plan.nodes().get(0).dataGrid().get(1);
+        assertEquals(12.0, backlog.valueField().resolve(Map.of("sum(items[*].messages)", 12.0)));
+        MetricsFetchPlan.ItemBinding bad = plan.nodes().get(0).dataGrid().get(2);
+        assertEquals(MetricsFetchPlan.NO_SOURCE, bad.source());
+        assertTrue(bad.error().contains("selector"));
+    }
+
+    @Test
+    void derivedItemsBindTheirInputsToSharedSources() {
+        MetricsFetchPlan plan = planner.compile("test", """
+                {"nodes": [{"name": "api", "dataGrid": [
+                  {"label": "Requests", "url": "https://api.example.com/health", "valueField": "details.requests"},
+                  {"label": "Error rate", "expression": "ratio(errors, requests)",
+                   "inputs": {"requests": {"url": "https://api.example.com/health", "valueField": "details.requests"},
+                              "errors": {"url": "queue-service/stats", "valueField": "failed"}}}
+                ]}]}""");
+
+        assertEquals(2, plan.sources().size());
+        assertEquals(java.util.List.of("failed"), plan.sources().get(1).fields().paths());
+        MetricsFetchPlan.ItemBinding rate = plan.nodes().get(0).dataGrid().get(1);
+        assertNull(rate.error());
+        assertEquals(MetricsFetchPlan.NO_SOURCE, rate.source());
+        MetricsFetchPlan.DerivedBinding derived = rate.derived();
+        assertEquals("ratio(errors, requests)", derived.expression());
+        // In the order the compiled expression reads them
+        assertEquals(java.util.List.of("errors", "requests"),
+                derived.inputs().stream().map(MetricsFetchPlan.DerivedInputBinding::name).toList());
+        assertEquals(1, derived.inputs().get(0).source());
+        assertEquals(0, derived.inputs().get(1).source());
+    }
+
+    @Test
+    void derivedItemWithAnUnresolvableInputIsRejectedWhole() {
+        MetricsFetchPlan plan = planner.compile("test", """
+                {"nodes": [{"name": "api", "dataGrid": [
+                  {"label": "Ratio", "expression": "ratio(a, b)",
+                   "inputs": {"a": {"url": "https://api.example.com/a", "valueField": "v"},
+                              "b": {"url": "ftp://nope", "valueField": "v"}}},
+                  {"label": "Unbound", "expression": "sum(a, c)",
+                   "inputs": {"a": {"url": "https://api.example.com/a", "valueField": "v"}}},
+                  {"label": "Malformed", "expression": "sum(a", "inputs": {"a": {"url": "https://api.example.com/a"}}}
+                ]}]}""");
+
+        // No input of a rejected item is fetched
+        assertTrue(plan.sources().isEmpty());
+        java.util.List<MetricsFetchPlan.ItemBinding> items = plan.nodes().get(0).dataGrid();
+        assertNull(items.get(0).derived());
+        assertTrue(items.get(0).error().startsWith("Input 'b': Invalid URL"));
+        assertEquals("No input defined for 'c'", items.get(1).error());
+        assertNotNull(items.get(2).error());
+    }
+
+    @Test
+    void planIsReusedUntilTheStoredContentHashChanges() {
+        store("test", CONFIG);
+
+        MetricsFetchPlan first = planner.planFor("test");
+        assertSame(first, planner.planFor("test"));
+        verify(configurationProcessor, times(1)).processVariableSubstitution(anyString(), anyString());
+        // Only the fingerprint is read while the plan is current
+        verify(diagramService, times(1)).getDiagramByName("test");
+
+        store("test", CONFIG.replace("Requests", "Requests/s"));
+        MetricsFetchPlan recompiled = planner.planFor("test");
+        assertNotSame(first, recompiled);
+        assertEquals("Requests/s", recompiled.nodes().get(0).dataGrid().get(0).label());
+    }
+
+    @Test
+    void diagramsWithoutARowArePlannedFromTheirConfigFile(@TempDir Path configsDir) throws Exception {
+        Path file = Files.writeString(configsDir.resolve("files.json"), CONFIG);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        when(configsDirectoryResolver.findConfigsDirectory()).thenReturn(configsDir);
+
+        MetricsFetchPlan first = planner.planFor("files");
+        assertEquals("files", first.getDiagramName());
+        assertEquals(2, first.sources().size());
+        assertSame(first, planner.planFor("files"));
+        verify(configurationProcessor).processVariableSubstitution("diagram-file:files.json", CONFIG);
+
+        Files.writeString(file, CONFIG.replace("Requests", "Requests/s"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        assertEquals("Requests/s", planner.planFor("files").nodes().get(0).dataGrid().get(0).label());
+
+        ResponseStatusException missing = assertThrows(ResponseStatusException.class, () -> planner.planFor("missing"));
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertThrows(ResponseStatusException.class, () -> planner.planFor("../files"));
+    }
+
+    @Test
+    void bundledConfigsArePlannedWhenThereIsNoConfigsDirectory() {
+        MetricsFetchPlan plan = planner.planFor("diagram-config");
+
+        assertEquals("diagram-config", plan.getDiagramName());
+        assertFalse(plan.nodes().isEmpty());
+        assertThrows(ResponseStatusException.class, () -> planner.planFor("no-such-diagram"));
+    }
+
+    @Test
+    void malformedConfigCompilesToEmptyPlan() {
+        MetricsFetchPlan plan = planner.compile("broken", "{not json");
+        assertTrue(plan.sources().isEmpty());
+        assertTrue(plan.nodes().isEmpty());
+    }
+
+    @Test
+    void plansAreDroppedWhenAServiceTheyResolvedChanges() {
+        store("test", CONFIG);
+        MetricsFetchPlan first = planner.planFor("test");
+
+        planner.onServiceUrlChanged(new ServiceUrlChangedEvent(Set.of("unrelated-service")));
+        planner.onConfigsInvalidated(new ConfigsInvalidatedEvent(Set.of("diagram-file:test")));
+        assertSame(first, planner.planFor("test"));
+
+        when(serviceDiscovery.resolveServiceUrl("queue-service/stats")).thenReturn("https://queue2.example.com/stats");
+        planner.onServiceUrlChanged(new ServiceUrlChangedEvent(Set.of("queue-service")));
+        MetricsFetchPlan recompiled = planner.planFor("test");
+        assertNotSame(first, recompiled);
+        assertEquals("https://queue2.example.com/stats", recompiled.sources().get(1).url());
+
+        planner.onConfigsInvalidated(new ConfigsInvalidatedEvent(Set.of("diagram:test")));
+        assertNotSame(recompiled, planner.planFor("test"));
+    }
+
+    // A stored diagram, found by fingerprint and loaded in full only when its plan is compiled
+    private void store(String name, String config) {
+        Diagram diagram = new Diagram();
+        diagram.setName(name);
+        diagram.setConfig(config);
+        when(diagramService.findFingerprintByName(name))
+                .thenReturn(Optional.of(new DiagramFingerprint(1L, name, diagram.getContentHash(), null)));
+        when(diagramService.getDiagramByName(name)).thenReturn(diagram);
+    }
+}
@@ -1,19 +1,26 @@
 package com.example.diagramdesigner.service;
 
 import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.example.diagramdesigner.metrics.FieldSelection;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.ResponseEntity;
 
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
@@ -26,6 +33,9 @@ class MetricsProxyServiceTest {
     private MetricsProxyProperties properties;
     private ObjectMapper objectMapper;
     private AuthenticationResolver authResolver;
+    private PollCoordinator pollCoordinator;
+    private ServiceDiscovery serviceDiscovery;
+    private MetricsUrlValidator urlValidator;
     private MetricsProxyService service;
 
     @BeforeEach
@@ -39,7 +49,12 @@ class MetricsProxyServiceTest {
         authResolver = mock(AuthenticationResolver.class);
         // Default: return empty fingerprint for any URL/node
         when(authResolver.getAuthFingerprint(anyString(), any())).thenReturn("");
-        service = spy(new MetricsProxyService(properties, objectMapper, authResolver));
+        pollCoordinator = mock(PollCoordinator.class);
+        serviceDiscovery = mock(ServiceDiscovery.class);
+        // Test hosts such as "host" do not resolve, so only URLs a test forbids are rejected
+        urlValidator = mock(MetricsUrlValidator.class);
+        when(urlValidator.isValidUrl(anyString())).thenReturn(true);
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
     }
 
     @Test
@@ -221,7 +236,7 @@ class MetricsProxyServiceTest {
     @Test
     void cacheEvictsOldestEntryWhenMaxSizeExceeded() {
         properties.setMaxCacheSize(1);
-        service = spy(new MetricsProxyService(properties, objectMapper, authResolver));
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
         when(authResolver.getAuthFingerprint(anyString(), any())).thenReturn("");
 
         Map<String, Object> firstResponse = Map.of("data", "first");
@@ -294,7 +309,7 @@ class MetricsProxyServiceTest {
     @Test
     void cachingDisabledBypassesCacheEntirelyAndCallsUpstreamEveryTime() {
         properties.setEnableCaching(false);
-        service = spy(new MetricsProxyService(properties, objectMapper, authResolver));
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
         when(authResolver.getAuthFingerprint(anyString(), any())).thenReturn("");
 
         Map<String, Object> response = Map.of("data", "fresh");
@@ -315,6 +330,533 @@ class MetricsProxyServiceTest {
         verify(service, times(2)).makeAuthenticatedRequest("http://host/metrics", "node-a");
     }
 
+    @Test
+    void proxyResponseCarriesPollHintHeaderWithinBounds() {
+        doReturn(Mono.just((Object) Map.of("v", 1)))
+                .when(service).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        StepVerifier.create(service.proxyRequest("http://host/metrics", "node-a", 45_000L, 120_000L))
+                .assertNext(re -> {
+                    long hint = Long.parseLong(re.getHeaders().getFirst(MetricsProxyService.POLL_HINT_HEADER));
+                    assertTrue(hint >= 45_000 && hint <= 120_000, "Hint should respect caller bounds but was " + hint);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void callerBoundsAboveTheConfiguredMaximumAreClamped() {
+        properties.getAdaptivePolling().setMaxIntervalMs(60_000);
+        doReturn(Mono.just((Object) Map.of("v", 1)))
+                .when(service).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        StepVerifier.create(service.proxyRequest("http://host/metrics", "node-a", 600_000L, null))
+                .assertNext(re -> assertEquals("60000", re.getHeaders().getFirst(MetricsProxyService.POLL_HINT_HEADER)))
+                .verifyComplete();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void batchResponseIncludesPollHintsPerKey() {
+        doReturn(Mono.just((Object) Map.of("v", 1)))
+                .when(service).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        Map<String, Object> result = writeBatch(java.util.List.of(
+                Map.of("url", "http://host/metrics", "node", "node-a", "key", "k1")));
+
+        assertEquals(Map.of("v", 1), result.get("k1"));
+        Map<String, Object> hints = (Map<String, Object>) result.get(MetricsProxyService.POLL_HINTS_FIELD);
+        assertNotNull(hints);
+        assertTrue(hints.containsKey("k1"));
+    }
+
+    @Test
+    void batchWithDuplicateKeysFetchesFirstOccurrenceOnly() {
+        doReturn(Mono.just((Object) Map.of("v", "a")))
+                .when(service).makeAuthenticatedRequest("http://host/a", "node-a");
+        doReturn(Mono.just((Object) Map.of("v", "b")))
+                .when(service).makeAuthenticatedRequest("http://host/b", "node-b");
+
+        Map<String, Object> result = writeBatch(java.util.List.of(
+                Map.of("url", "http://host/a", "node", "node-a", "key", "same"),
+                Map.of("url", "http://host/b", "node", "node-b", "key", "same")));
+
+        assertEquals(Map.of("v", "a"), result.get("same"));
+        verify(service, never()).makeAuthenticatedRequest("http://host/b", "node-b");
+    }
+
+    @Test
+    void batchStreamsErrorsPerKeyAndSkipsReservedKey() {
+        doReturn(Mono.error(new RuntimeException("boom")))
+                .when(service).makeAuthenticatedRequest("http://host/fail", "node-a");
+        doReturn(Mono.just((Object) Map.of("v", 2)))
+                .when(service).makeAuthenticatedRequest("http://host/ok", "node-a");
+
+        Map<String, Object> result = writeBatch(java.util.List.of(
+                Map.of("url", "http://host/fail", "node", "node-a", "key", "failing"),
+                Map.of("url", "http://host/ok", "node", "node-a", "key", "ok"),
+                Map.of("url", "http://host/ok", "node", "node-a", "key", MetricsProxyService.POLL_HINTS_FIELD)));
+
+        assertTrue(((Map<?, ?>) result.get("failing")).containsKey("error"));
+        assertEquals(Map.of("v", 2), result.get("ok"));
+        assertFalse(((Map<?, ?>) result.get(MetricsProxyService.POLL_HINTS_FIELD)).containsKey("v"));
+    }
+
+    @Test
+    void derivedRateIsComputedFromSuccessiveCounterSamples() throws InterruptedException {
+        properties.setEnableCaching(false);
+        doReturn(Mono.just((Object) Map.of("message_stats", Map.of("publish", 100))))
+                .doReturn(Mono.just((Object) Map.of("message_stats", Map.of("publish", 160))))
+                .when(service).makeExtractingRequest(eq("http://host/overview"), eq("rabbit"), any());
+
+        Map<String, Object> item = Map.of("key", "publishRate", "node", "rabbit",
+                "expression", "rate(published)",
+                "inputs", Map.of("published", Map.of("url", "http://host/overview",
+                        "valueField", "message_stats.publish")));
+
+        Map<?, ?> first = (Map<?, ?>) writeBatch(java.util.List.of(item)).get("publishRate");
+        assertTrue(first.containsKey("value"));
+        assertNull(first.get("value"), "A rate needs two samples");
+
+        Thread.sleep(20);
+        Map<?, ?> second = (Map<?, ?>) writeBatch(java.util.List.of(item)).get("publishRate");
+        double rate = ((Number) second.get("value")).doubleValue();
+        assertTrue(rate > 0 && rate <= 60 * 1000.0 / 20, "Unexpected rate " + rate);
+        assertTrue(((Number) second.get("timestamp")).longValue() > 0);
+    }
+
+    @Test
+    void derivedItemWithInvalidExpressionOrMissingInputReturnsError() {
+        Map<String, Object> result = writeBatch(java.util.List.of(
+                Map.of("key", "bad", "node", "node-a", "expression", "rate(",
+                        "inputs", Map.of("x", Map.of("url", "http://host/ok"))),
+                Map.of("key", "unbound", "node", "node-a", "expression", "sum(x, y)",
+                        "inputs", Map.of("x", Map.of("url", "http://host/ok", "valueField", "v"))),
+                Map.of("key", "noInputs", "node", "node-a", "expression", "sum(x)")));
+
+        assertTrue(((Map<?, ?>) result.get("bad")).containsKey("error"));
+        assertTrue(((Map<?, ?>) result.get("unbound")).get("error").toString().contains("'y'"));
+        assertTrue(((Map<?, ?>) result.get("noInputs")).containsKey("error"));
+        verify(service, never()).makeAuthenticatedRequest("http://host/ok", "node-a");
+        verify(service, never()).makeExtractingRequest(eq("http://host/ok"), eq("node-a"), any());
+    }
+
+    @Test
+    void derivedItemWithAForbiddenInputIsRejectedWhole() {
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery,
+                new MetricsUrlValidator()));
+
+        Map<String, Object> result = writeBatch(java.util.List.of(
+                Map.of("key", "ratio", "node", "node-a", "expression", "ratio(a, b)",
+                        "inputs", Map.of(
+                                "a", Map.of("url", "push:allowed", "valueField", "v"),
+                                "b", Map.of("url", "http://127.0.0.1:8080/actuator/env", "valueField", "v")))));
+
+        assertTrue(((Map<?, ?>) result.get("ratio")).get("error").toString().contains("not allowed"));
+        verify(service, never()).makeExtractingRequest(eq("http://127.0.0.1:8080/actuator/env"), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void diagramMetricsFetchEachSourceOnceAndResolveBindings() throws Exception {
+        doReturn(Mono.just((Object) Map.of("status", "UP", "details", Map.of("requests", 7))))
+                .when(service).makeAuthenticatedRequest("http://host/health", "api");
+        doReturn(Mono.error(new RuntimeException("Connection refused")))
+                .when(service).makeAuthenticatedRequest("http://host/down", "api");
+
+        String healthKey = service.cacheKeyFor("http://host/health", "api", null);
+        String downKey = service.cacheKeyFor("http://host/down", "api", null);
+        com.example.diagramdesigner.metrics.FieldPath status = com.example.diagramdesigner.metrics.FieldPath.compile("status");
+        com.example.diagramdesigner.metrics.FieldPath requests = com.example.diagramdesigner.metrics.FieldPath.compile("details.requests");
+        MetricsFetchPlan plan = new MetricsFetchPlan("test", "{}",
+                java.util.List.of(new MetricsFetchPlan.Source("http://host/health", "api", healthKey, null),
+                        new MetricsFetchPlan.Source("http://host/down", "api", downKey, null)),
+                java.util.List.of(new MetricsFetchPlan.NodeBinding("api",
+                        new MetricsFetchPlan.StatusBinding(0, status, "UP", "DOWN", null),
+                        java.util.List.of(
+                                new MetricsFetchPlan.ItemBinding("Requests", 0, requests, null),
+                                new MetricsFetchPlan.ItemBinding("Down", 1, requests, null),
+                                new MetricsFetchPlan.ItemBinding("Unbound", MetricsFetchPlan.NO_SOURCE, requests, "Invalid URL")))));
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        service.writeDiagramMetrics(plan, out);
+        Map<String, Object> result = objectMapper.readValue(out.toByteArray(), Map.class);
+
+        Map<String, Object> node = (Map<String, Object>) ((Map<String, Object>) result.get("nodes")).get("api");
+        assertEquals(Map.of("state", "up", "value", "UP"), node.get("status"));
+        java.util.List<Map<String, Object>> grid = (java.util.List<Map<String, Object>>) node.get("dataGrid");
+        assertEquals(7, grid.get(0).get("value"));
+        assertEquals("Connection refused", grid.get(1).get("error"));
+        assertEquals("Invalid URL", grid.get(2).get("error"));
+        verify(service, times(1)).makeAuthenticatedRequest("http://host/health", "api");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void diagramMetricsEvaluateDerivedItemsFromTheirInputSources() throws Exception {
+        doReturn(Mono.just((Object) Map.of("errors", 3, "requests", 12)))
+                .when(service).makeAuthenticatedRequest("http://host/stats", "api");
+        doReturn(Mono.error(new RuntimeException("Connection refused")))
+                .when(service).makeAuthenticatedRequest("http://host/down", "api");
+
+        String statsKey = service.cacheKeyFor("http://host/stats", "api", null);
+        String downKey = service.cacheKeyFor("http://host/down", "api", null);
+        com.example.diagramdesigner.metrics.FieldPath errors = com.example.diagramdesigner.metrics.FieldPath.compile("errors");
+        com.example.diagramdesigner.metrics.FieldPath requests = com.example.diagramdesigner.metrics.FieldPath.compile("requests");
+        MetricsFetchPlan plan = new MetricsFetchPlan("test", "{}",
+                java.util.List.of(new MetricsFetchPlan.Source("http://host/stats", "api", statsKey, null),
+                        new MetricsFetchPlan.Source("http://host/down", "api", downKey, null)),
+                java.util.List.of(new MetricsFetchPlan.NodeBinding("api", null, java.util.List.of(
+                        new MetricsFetchPlan.ItemBinding("Error ratio", MetricsFetchPlan.NO_SOURCE, requests, null,
+                                new MetricsFetchPlan.DerivedBinding("ratio(e, r)", "ratio(e, r)|stats",
+                                        java.util.List.of(new MetricsFetchPlan.DerivedInputBinding("e", 0, errors),
+                                                new MetricsFetchPlan.DerivedInputBinding("r", 0, requests)))),
+                        new MetricsFetchPlan.ItemBinding("Broken", MetricsFetchPlan.NO_SOURCE, requests, null,
+                                new MetricsFetchPlan.DerivedBinding("sum(e, d)", "sum(e, d)|down",
+                                        java.util.List.of(new MetricsFetchPlan.DerivedInputBinding("e", 0, errors),
+                                                new MetricsFetchPlan.DerivedInputBinding("d", 1, requests))))))));
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        service.writeDiagramMetrics(plan, out);
+        Map<String, Object> result = objectMapper.readValue(out.toByteArray(), Map.class);
+
+        Map<String, Object> node = (Map<String, Object>) ((Map<String, Object>) result.get("nodes")).get("api");
+        java.util.List<Map<String, Object>> grid = (java.util.List<Map<String, Object>>) node.get("dataGrid");
+        assertEquals(0.25, grid.get(0).get("value"));
+        assertEquals("Input 'd': Connection refused", grid.get(1).get("error"));
+        verify(service, times(1)).makeAuthenticatedRequest("http://host/stats", "api");
+    }
+
+    @Test
+    void slowInstanceIsHedgedToAnotherInstanceOfTheService() {
+        properties.setEnableCaching(false);
+        properties.getHedging().setEnabled(true);
+        properties.getHedging().setMinSamples(1);
+        properties.getHedging().setMinDelayMs(20);
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        when(serviceDiscovery.alternateInstanceUrls("http://10.0.0.1:8080/health"))
+                .thenReturn(java.util.List.of("http://10.0.0.2:8080/health"));
+
+        // A fast response establishes the primary's latency; the next one hangs
+        doReturn(Mono.just((Object) Map.of("from", "primary")))
+                .doReturn(Mono.never())
+                .when(service).makeAuthenticatedRequest("http://10.0.0.1:8080/health", "api");
+        doReturn(Mono.just((Object) Map.of("from", "hedge")))
+                .when(service).makeAuthenticatedRequest("http://10.0.0.2:8080/health", "api");
+
+        StepVerifier.create(service.proxyRequest("http://10.0.0.1:8080/health", "api"))
+                .assertNext(re -> assertEquals(Map.of("from", "primary"), re.getBody()))
+                .verifyComplete();
+        StepVerifier.create(service.proxyRequest("http://10.0.0.1:8080/health", "api"))
+                .assertNext(re -> assertEquals(Map.of("from", "hedge"), re.getBody()))
+                .expectComplete()
+                .verify(java.time.Duration.ofSeconds(5));
+    }
+
+    @Test
+    void primariesThatLoseToTheirHedgeRaiseTheHedgeDelay() {
+        properties.setEnableCaching(false);
+        properties.getHedging().setEnabled(true);
+        properties.getHedging().setMinSamples(1);
+        properties.getHedging().setMinDelayMs(20);
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        when(serviceDiscovery.alternateInstanceUrls("http://10.0.0.1:8080/health"))
+                .thenReturn(java.util.List.of("http://10.0.0.2:8080/health"));
+        AtomicInteger primaryCalls = new AtomicInteger();
+        doAnswer(inv -> primaryCalls.getAndIncrement() == 0 ? Mono.just((Object) Map.of("from", "primary")) : Mono.never())
+                .when(service).makeAuthenticatedRequest("http://10.0.0.1:8080/health", "api");
+        doReturn(Mono.delay(java.time.Duration.ofMillis(100)).map(tick -> (Object) Map.of("from", "hedge")))
+                .when(service).makeAuthenticatedRequest("http://10.0.0.2:8080/health", "api");
+
+        // Enough cancelled primaries (each at least 120 ms) for the p95 to be recomputed; a call that
+        // arrives while the previous fetch is still in flight shares it instead of sending a primary
+        for (int i = 0; i < 100 && primaryCalls.get() < 18; i++) {
+            service.proxyRequest("http://10.0.0.1:8080/health", "api").block(java.time.Duration.ofSeconds(5));
+        }
+
+        RequestHedger hedger = readPrivateField(service, "requestHedger", RequestHedger.class);
+        long delayMs = hedger.hedgeDelay("10.0.0.1:8080").toMillis();
+        assertTrue(delayMs >= 100, "Slow primaries should raise the hedge delay, but it is " + delayMs + " ms");
+    }
+
+    @Test
+    void noHedgingWithoutAlternateInstances() {
+        properties.setEnableCaching(false);
+        properties.getHedging().setEnabled(true);
+        properties.getHedging().setMinSamples(1);
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        doReturn(Mono.just((Object) Map.of("v", 1)))
+                .when(service).makeAuthenticatedRequest("http://10.0.0.1:8080/health", "api");
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(service.proxyRequest("http://10.0.0.1:8080/health", "api"))
+                    .assertNext(re -> assertEquals(Map.of("v", 1), re.getBody()))
+                    .verifyComplete();
+        }
+        verify(service, times(2)).makeAuthenticatedRequest(anyString(), anyString());
+    }
+
+    @Test
+    void selectedFieldsAreCachedSeparatelyFromTheFullBody() {
+        FieldSelection fields = FieldSelection.of(java.util.List.of("queue_totals.messages"));
+        doReturn(Mono.just((Object) Map.of("queue_totals", Map.of("messages", 5))))
+                .when(service).makeExtractingRequest("http://host/overview", "rabbit", fields);
+        doReturn(Mono.just((Object) Map.of("queue_totals", Map.of("messages", 5, "ready", 2), "other", 1)))
+                .when(service).makeAuthenticatedRequest("http://host/overview", "rabbit");
+
+        StepVerifier.create(service.proxyRequest("http://host/overview", "rabbit", null, null, fields))
+                .assertNext(re -> assertEquals(Map.of("queue_totals", Map.of("messages", 5)), re.getBody()))
+                .verifyComplete();
+        StepVerifier.create(service.proxyRequest("http://host/overview", "rabbit"))
+                .assertNext(re -> assertEquals(1, ((Map<?, ?>) re.getBody()).get("other")))
+                .verifyComplete();
+        assertNotEquals(service.cacheKeyFor("http://host/overview", "rabbit", fields),
+                service.cacheKeyFor("http://host/overview", "rabbit", null));
+    }
+
+    @Test
+    void extractFieldsStopsReadingOnceAllFieldsAreFound() {
+        DefaultDataBufferFactory factory = new DefaultDataBufferFactory();
+        AtomicInteger chunksRead = new AtomicInteger();
+        Flux<DataBuffer> body = Flux
+                .just("{\"status\":\"UP\",", "\"details\":{\"a\":1}", ",\"rest\":[1,2,3]}")
+                .map(chunk -> (DataBuffer) factory.wrap(chunk.getBytes(StandardCharsets.UTF_8)))
+                .doOnNext(chunk -> chunksRead.incrementAndGet());
+        FieldSelection fields = FieldSelection.of(java.util.List.of("status"));
+
+        StepVerifier.create(MetricsProxyService.extractFields(body, fields.newExtractor(1024)))
+                .expectNext(Map.of("status", "UP"))
+                .verifyComplete();
+        assertEquals(1, chunksRead.get());
+    }
+
+    @Test
+    void exhaustedByteBudgetIsReportedAsUnavailable() {
+        doReturn(Mono.error(new UpstreamByteBudget.ExhaustedException(1024, 4096)))
+                .when(service).makeAuthenticatedRequest("http://host/big", "node-a");
+
+        StepVerifier.create(service.proxyRequest("http://host/big", "node-a"))
+                .assertNext(re -> {
+                    assertEquals(503, re.getStatusCode().value());
+                    assertTrue(((Map<?, ?>) re.getBody()).get("message").toString().contains("budget"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void byteBudgetGaugesAreRegistered() {
+        io.micrometer.core.instrument.simple.SimpleMeterRegistry registry =
+                new io.micrometer.core.instrument.simple.SimpleMeterRegistry();
+        service.bindTo(registry);
+
+        assertEquals(0.0, registry.get("metrics.proxy.upstream.buffered.bytes").gauge().value());
+        assertEquals(properties.getByteBudget().getMaxBytes(),
+                (long) registry.get("metrics.proxy.upstream.buffered.bytes.max").gauge().value());
+        assertEquals(0.0, registry.get("metrics.proxy.upstream.buffered.waiting").gauge().value());
+    }
+
+    @Test
+    void pushedValuesAreServedWithoutPollingUpstream() throws Exception {
+        String lines = "{\"orders.depth\": 42, \"orders.info\": {\"consumers\": 3}}\n"
+                + "{\"orders.depth\": 43, \"bad name\": 1, \"orders.gone\": null}\n";
+
+        MetricsProxyService.PushResult result =
+                service.ingestPushed(new java.io.ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(new MetricsProxyService.PushResult(3, 2, null), result);
+        StepVerifier.create(service.proxyRequest("push:orders.depth", "any-node"))
+                .assertNext(re -> assertEquals(43, re.getBody()))
+                .verifyComplete();
+        Map<String, Object> batch = writeBatch(java.util.List.of(
+                Map.of("key", "info", "url", "push:orders.info", "node", "queue"),
+                Map.of("key", "missing", "url", "push:orders.unknown", "node", "queue")));
+        assertEquals(Map.of("consumers", 3), batch.get("info"));
+        assertTrue(((Map<?, ?>) batch.get("missing")).get("error").toString().contains("push:orders.unknown"));
+        verify(service, never()).makeAuthenticatedRequest(anyString(), any());
+    }
+
+    @Test
+    void pushStopsAtMalformedLineAndKeepsEarlierValues() throws Exception {
+        properties.getPush().setMaxKeys(1);
+        String lines = "{\"a\": 1, \"b\": 2}\n{\"a\": 2,";
+
+        MetricsProxyService.PushResult result =
+                service.ingestPushed(new java.io.ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, result.accepted());
+        assertEquals(1, result.rejected(), "Names beyond max-keys are rejected");
+        assertNotNull(result.error());
+        StepVerifier.create(service.proxyRequest("push:a", null))
+                .assertNext(re -> assertEquals(2, re.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    void pushesBeyondThePollCacheSizeDoNotEvictPolledValues() throws Exception {
+        properties.setMaxCacheSize(10);
+        properties.getPush().setMaxKeys(100);
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        doReturn(Mono.just((Object) Map.of("v", 1)))
+                .when(service).makeAuthenticatedRequest("http://host/metrics", "node-a");
+        service.proxyRequest("http://host/metrics", "node-a").block();
+
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            lines.append("{\"pushed.").append(i).append("\": ").append(i).append("}\n");
+        }
+        MetricsProxyService.PushResult result = service.ingestPushed(
+                new java.io.ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8)));
+        readPrivateField(service, "cache", Cache.class).cleanUp();
+
+        assertEquals(50, result.accepted());
+        StepVerifier.create(service.proxyRequest("http://host/metrics", "node-a"))
+                .assertNext(re -> assertEquals(Map.of("v", 1), re.getBody()))
+                .verifyComplete();
+        verify(service, times(1)).makeAuthenticatedRequest("http://host/metrics", "node-a");
+        StepVerifier.create(service.proxyRequest("push:pushed.0", null))
+                .assertNext(re -> assertEquals(0, re.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    void expiredPushedNamesFreeTheirSlot() throws Exception {
+        properties.getPush().setMaxKeys(1);
+        properties.getPush().setTtlMs(50);
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+
+        assertEquals(1, push("{\"a\": 1, \"b\": 2}").rejected(), "b is over max-keys while a is live");
+        Thread.sleep(100);
+
+        assertEquals(new MetricsProxyService.PushResult(1, 0, null), push("{\"b\": 3}"));
+        StepVerifier.create(service.proxyRequest("push:a", null))
+                .expectNextMatches(re -> re.getStatusCode().isError())
+                .verifyComplete();
+    }
+
+    private MetricsProxyService.PushResult push(String lines) throws Exception {
+        return service.ingestPushed(new java.io.ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void streamingSourceIsServedFromItsLatestEvent() {
+        Sinks.Many<Object> events = Sinks.many().multicast().onBackpressureBuffer();
+        doReturn(events.asFlux()).when(service).openStream("http://host/events", "api");
+
+        StepVerifier.create(service.proxyRequest("stream:http://host/events", "api"))
+                .then(() -> events.tryEmitNext(Map.of("rps", 10)))
+                .assertNext(re -> assertEquals(Map.of("rps", 10), re.getBody()))
+                .verifyComplete();
+        events.tryEmitNext(Map.of("rps", 12));
+        StepVerifier.create(service.proxyRequest("stream:http://host/events", "api"))
+                .assertNext(re -> assertEquals(Map.of("rps", 12), re.getBody()))
+                .verifyComplete();
+
+        verify(service, times(1)).openStream("http://host/events", "api");
+        verify(service, never()).makeAuthenticatedRequest(anyString(), any());
+        service.closeStreams();
+    }
+
+    @Test
+    void batchStreamSourceOnAForbiddenHostIsNotOpened() {
+        service = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery,
+                new MetricsUrlValidator()));
+
+        Map<String, Object> result = writeBatch(java.util.List.of(
+                Map.of("key", "internal", "url", "stream:http://169.254.169.254/latest/events", "node", "api")));
+
+        assertTrue(((Map<?, ?>) result.get("internal")).get("error").toString().contains("not allowed"));
+        verify(service, never()).openStream(anyString(), any());
+    }
+
+    @Test
+    void eventDataIsParsedAsJsonOrKeptAsText() {
+        assertEquals(Map.of("a", 1), service.eventValue("{\"a\": 1}"));
+        assertEquals(42, service.eventValue("42"));
+        assertEquals("ready", service.eventValue("ready"));
+        assertNull(service.eventValue(" "));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> writeBatch(java.util.List<? extends Map<String, ?>> requests) {
+        try {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            service.writeBatchMetrics(requests, out);
+            return objectMapper.readValue(out.toByteArray(), Map.class);
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void pollHintsOmittedWhenAdaptivePollingDisabled() {
+        properties.getAdaptivePolling().setEnabled(false);
+        doReturn(Mono.just((Object) Map.of("v", 1)))
+                .when(service).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        StepVerifier.create(service.proxyRequest("http://host/metrics", "node-a"))
+                .assertNext(re -> assertNull(re.getHeaders().getFirst(MetricsProxyService.POLL_HINT_HEADER)))
+                .verifyComplete();
+    }
+
+    @Test
+    void restartServesSnapshotValueWhileRefreshingInBackground(@TempDir Path tempDir) {
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setPath(tempDir.resolve("metrics-cache.snapshot").toString());
+        MetricsProxyService first = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        doReturn(Mono.just((Object) Map.of("v", "before-restart")))
+                .when(first).makeAuthenticatedRequest("http://host/metrics", "node-a");
+        first.proxyRequest("http://host/metrics", "node-a").block();
+        first.writeSnapshot();
+
+        MetricsProxyService restarted = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        Sinks.One<Object> upstream = Sinks.one();
+        doReturn(upstream.asMono()).when(restarted).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        StepVerifier.create(restarted.proxyRequest("http://host/metrics", "node-a"))
+                .assertNext(re -> assertEquals(Map.of("v", "before-restart"), re.getBody()))
+                .verifyComplete();
+        verify(restarted, times(1)).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        upstream.tryEmitValue(Map.of("v", "refreshed"));
+        StepVerifier.create(restarted.proxyRequest("http://host/metrics", "node-a"))
+                .assertNext(re -> assertEquals(Map.of("v", "refreshed"), re.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    void snapshotIsScopedByAuthFingerprint(@TempDir Path tempDir) {
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setPath(tempDir.resolve("metrics-cache.snapshot").toString());
+        MetricsProxyService first = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        doReturn(Mono.just((Object) Map.of("v", "old-credentials")))
+                .when(first).makeAuthenticatedRequest("http://host/metrics", "node-a");
+        first.proxyRequest("http://host/metrics", "node-a").block();
+        first.writeSnapshot();
+
+        when(authResolver.getAuthFingerprint(anyString(), any())).thenReturn("rotated");
+        MetricsProxyService restarted = spy(new MetricsProxyService(properties, objectMapper, authResolver, pollCoordinator, serviceDiscovery, urlValidator));
+        doReturn(Mono.just((Object) Map.of("v", "new-credentials")))
+                .when(restarted).makeAuthenticatedRequest("http://host/metrics", "node-a");
+
+        StepVerifier.create(restarted.proxyRequest("http://host/metrics", "node-a"))
+                .assertNext(re -> assertEquals(Map.of("v", "new-credentials"), re.getBody()))
+                .verifyComplete();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void coordinatedFetchGoesThroughPollCoordinator() {
+        Map<String, Object> shared = Map.of("data", "from-owner");
+        when(pollCoordinator.isEnabled()).thenReturn(true);
+        when(pollCoordinator.fetch(anyString(), any(java.util.function.Supplier.class)))
+                .thenReturn(Mono.just((Object) shared));
+
+        StepVerifier.create(service.proxyRequest("http://host/metrics", "node-a"))
+                .assertNext(re -> assertEquals(shared, re.getBody()))
+                .verifyComplete();
+
+        verify(service, never()).makeAuthenticatedRequest("http://host/metrics", "node-a");
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T readPrivateField(Object target, String fieldName, Class<T> type) {
         try {
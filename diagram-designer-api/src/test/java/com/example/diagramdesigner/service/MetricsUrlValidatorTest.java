@@ -0,0 +1,41 @@
+package com.example.diagramdesigner.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsUrlValidatorTest {
+
+    private final MetricsUrlValidator validator = new MetricsUrlValidator();
+
+    @Test
+    void rejectsNonHttpSchemesAndMissingHosts() {
+        assertFalse(validator.isValidUrl("ftp://example.com/metrics"));
+        assertFalse(validator.isValidUrl("http:///metrics"));
+        assertFalse(validator.isValidUrl("not a url"));
+    }
+
+    @Test
+    void blocksPrivateAndLocalAddresses() {
+        assertFalse(validator.isValidUrl("http://localhost:8080/actuator"));
+        assertFalse(validator.isValidUrl("http://127.0.0.1/metrics"));
+        assertFalse(validator.isValidUrl("http://10.1.2.3/metrics"));
+        assertFalse(validator.isValidUrl("http://172.20.0.1/metrics"));
+        assertFalse(validator.isValidUrl("http://192.168.1.10/metrics"));
+        assertFalse(validator.isValidUrl("http://169.254.169.254/latest/meta-data"));
+    }
+
+    @Test
+    void acceptsPublicAddresses() {
+        assertTrue(validator.isValidUrl("https://8.8.8.8/metrics"));
+    }
+
+    @Test
+    void recognisesServiceNames() {
+        assertTrue(validator.isServiceName("imc-db-server"));
+        assertTrue(validator.isServiceName("imc-db-server/api/db01/fleet/summary"));
+        assertFalse(validator.isServiceName("http://imc-db-server/api"));
+        assertFalse(validator.isServiceName("bad_name/path"));
+    }
+}
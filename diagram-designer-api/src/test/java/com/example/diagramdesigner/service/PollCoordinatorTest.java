@@ -0,0 +1,151 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.sqlite.SQLiteDataSource;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two coordinators sharing one SQLite database file, standing in for two API
+ * instances behind a load balancer.
+ */
+class PollCoordinatorTest {
+
+    private static final String CACHE_KEY = "http://host/metrics\0node-a\0noauth";
+
+    @TempDir
+    Path tempDir;
+
+    private PollCoordinator instanceA;
+    private PollCoordinator instanceB;
+    private MetricsProxyProperties propertiesB;
+    private final MutableClock clock = new MutableClock();
+
+    @BeforeEach
+    void setUp() {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + tempDir.resolve("shared.db"));
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/sqlite")
+                .load()
+                .migrate();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        instanceA = new PollCoordinator(jdbcTemplate, new ObjectMapper(), properties("instance-a"), clock);
+        propertiesB = properties("instance-b");
+        instanceB = new PollCoordinator(jdbcTemplate, new ObjectMapper(), propertiesB, clock);
+    }
+
+    @Test
+    void onlyLeaseOwnerPollsUpstreamAndOthersReadSharedValue() {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Map<String, Object> value = Map.of("messages", 42);
+
+        StepVerifier.create(instanceA.fetch(CACHE_KEY, () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just(value);
+                }))
+                .assertNext(v -> assertEquals(value, v))
+                .verifyComplete();
+
+        StepVerifier.create(instanceB.fetch(CACHE_KEY, () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just(Map.of("messages", -1));
+                }))
+                .assertNext(v -> assertEquals(value, v))
+                .verifyComplete();
+
+        assertEquals(1, upstreamCalls.get(), "Only the lease owner should poll the upstream");
+    }
+
+    @Test
+    void nonOwnerServesStaleSharedValueWhileLeaseIsHeld() {
+        propertiesB.setCacheTtlMs(1_000);
+        instanceA.fetch(CACHE_KEY, () -> Mono.just(Map.of("v", 1))).block();
+        // Past B's cache TTL, well within A's 60 s lease
+        clock.advance(Duration.ofSeconds(5));
+
+        StepVerifier.create(instanceB.fetch(CACHE_KEY, () -> Mono.just(Map.of("v", 2))))
+                .assertNext(v -> assertEquals(Map.of("v", 1), v))
+                .verifyComplete();
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverByAnotherInstance() {
+        MetricsProxyProperties shortLease = properties("instance-a");
+        shortLease.getCoordination().setLeaseTtlMs(1_000);
+        propertiesB.setCacheTtlMs(1_000);
+        PollCoordinator shortLivedOwner = new PollCoordinator(
+                new JdbcTemplate(dataSourceFor("shared.db")), new ObjectMapper(), shortLease, clock);
+
+        shortLivedOwner.fetch(CACHE_KEY, () -> Mono.just(Map.of("v", 1))).block();
+        // Past both the lease and B's cache TTL
+        clock.advance(Duration.ofSeconds(5));
+
+        StepVerifier.create(instanceB.fetch(CACHE_KEY, () -> Mono.just(Map.of("v", 2))))
+                .assertNext(v -> assertEquals(Map.of("v", 2), v))
+                .verifyComplete();
+
+        // The new owner's value is now the shared one, fresh for A's 60 s cache TTL
+        StepVerifier.create(instanceA.fetch(CACHE_KEY, () -> Mono.just(Map.of("v", 3))))
+                .assertNext(v -> assertEquals(Map.of("v", 2), v))
+                .verifyComplete();
+    }
+
+    private SQLiteDataSource dataSourceFor(String fileName) {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + tempDir.resolve(fileName));
+        return dataSource;
+    }
+
+    private static MetricsProxyProperties properties(String instanceId) {
+        MetricsProxyProperties properties = new MetricsProxyProperties();
+        properties.setCacheTtlMs(60_000);
+        properties.getCoordination().setEnabled(true);
+        properties.getCoordination().setInstanceId(instanceId);
+        return properties;
+    }
+
+    /** A clock that only moves when told to. */
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.diagramdesigner.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PollIntervalAdvisorTest {
+
+    private static final long MIN = 1_000;
+    private static final long MAX = 300_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private PollIntervalAdvisor advisor;
+
+    @BeforeEach
+    void setUp() {
+        advisor = new PollIntervalAdvisor(100, Duration.ofHours(1), now::get);
+    }
+
+    @Test
+    void unknownKeyGetsLowerBound() {
+        assertEquals(MIN, advisor.recommendIntervalMs("unknown", MIN, MAX));
+    }
+
+    @Test
+    void staticValueBacksOffTowardsUpperBound() {
+        advisor.recordSample("static", Map.of("value", 1));
+        now.addAndGet(60_000);
+        advisor.recordSample("static", Map.of("value", 1));
+
+        assertEquals(30_000, advisor.recommendIntervalMs("static", MIN, MAX));
+
+        now.addAndGet(3_600_000);
+        advisor.recordSample("static", Map.of("value", 1));
+
+        assertEquals(MAX, advisor.recommendIntervalMs("static", MIN, MAX));
+    }
+
+    @Test
+    void volatileValueTightensTowardsLowerBound() {
+        for (int i = 0; i < 10; i++) {
+            advisor.recordSample("volatile", Map.of("value", i));
+            now.addAndGet(2_000);
+        }
+
+        assertEquals(MIN, advisor.recommendIntervalMs("volatile", MIN, MAX));
+    }
+
+    @Test
+    void hintIsHalfOfObservedChangeInterval() {
+        for (int i = 0; i < 10; i++) {
+            advisor.recordSample("steady", Map.of("value", i));
+            now.addAndGet(20_000);
+        }
+        now.addAndGet(-20_000);
+
+        assertEquals(10_000, advisor.recommendIntervalMs("steady", MIN, MAX));
+    }
+
+    @Test
+    void hintIsClampedToCallerBounds() {
+        advisor.recordSample("key", Map.of("value", 1));
+        now.addAndGet(600_000);
+
+        assertEquals(60_000, advisor.recommendIntervalMs("key", 5_000, 60_000));
+        assertEquals(400_000, advisor.recommendIntervalMs("key", 400_000, 60_000));
+    }
+}
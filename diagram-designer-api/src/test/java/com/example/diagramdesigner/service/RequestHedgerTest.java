@@ -0,0 +1,57 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTest {
+
+    private MetricsProxyProperties.Hedging properties;
+    private RequestHedger hedger;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MetricsProxyProperties.Hedging();
+        properties.setMinSamples(20);
+        properties.setMinDelayMs(10);
+        properties.setMaxHedgesPerHost(2);
+        hedger = new RequestHedger(properties, 100);
+    }
+
+    @Test
+    void noDelayUntilEnoughSamples() {
+        assertNull(hedger.hedgeDelay("host:8080"));
+        for (int i = 0; i < 19; i++) {
+            hedger.recordLatency("host:8080", 100);
+        }
+        assertNull(hedger.hedgeDelay("host:8080"));
+        hedger.recordLatency("host:8080", 100);
+        assertEquals(Duration.ofMillis(100), hedger.hedgeDelay("host:8080"));
+    }
+
+    @Test
+    void delayIsObservedP95PerHost() {
+        for (int i = 1; i <= 100; i++) {
+            hedger.recordLatency("slow:8080", i * 10);
+            hedger.recordLatency("fast:8080", 1);
+        }
+        assertEquals(Duration.ofMillis(950), hedger.hedgeDelay("slow:8080"));
+        // Floored at the configured minimum delay
+        assertEquals(Duration.ofMillis(10), hedger.hedgeDelay("fast:8080"));
+    }
+
+    @Test
+    void hedgesPerHostAreCapped() {
+        assertTrue(hedger.tryAcquire("host:8080"));
+        assertTrue(hedger.tryAcquire("host:8080"));
+        assertFalse(hedger.tryAcquire("host:8080"));
+        assertTrue(hedger.tryAcquire("other:8080"));
+
+        hedger.release("host:8080");
+        assertTrue(hedger.tryAcquire("host:8080"));
+    }
+}
@@ -6,10 +6,17 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.env.Environment;
 
+import java.util.List;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class ServiceDiscoveryCacheTest {
@@ -47,4 +54,46 @@ class ServiceDiscoveryCacheTest {
 
         assertDoesNotThrow(serviceDiscovery::clearCache);
     }
+
+    @Test
+    void alternateInstanceUrlsListOtherInstancesOfResolvedService() {
+        ServiceInstance first = new DefaultServiceInstance("a", "metrics-api", "10.0.0.1", 8080, false);
+        ServiceInstance second = new DefaultServiceInstance("b", "metrics-api", "10.0.0.2", 8080, false);
+        when(discoveryClient.getInstances("metrics-api")).thenReturn(List.of(first, second));
+        ServiceDiscovery serviceDiscovery = new ServiceDiscovery(
+                discoveryClient, new ObjectMapper(), environment, new CacheProperties());
+
+        assertEquals("http://10.0.0.1:8080/actuator/health",
+                serviceDiscovery.resolveServiceUrl("metrics-api/actuator/health"));
+        assertEquals(List.of("http://10.0.0.2:8080/actuator/health"),
+                serviceDiscovery.alternateInstanceUrls("http://10.0.0.1:8080/actuator/health"));
+        assertEquals(List.of(), serviceDiscovery.alternateInstanceUrls("http://unknown:8080/actuator/health"));
+    }
+
+    @Test
+    void changedOrClearedServiceUrlsArePublished() {
+        ServiceInstance first = new DefaultServiceInstance("a", "metrics-api", "10.0.0.1", 8080, false);
+        ServiceInstance moved = new DefaultServiceInstance("b", "metrics-api", "10.0.0.2", 8080, false);
+        when(discoveryClient.getInstances("metrics-api"))
+                .thenReturn(List.of(first))
+                .thenReturn(List.of(first))
+                .thenReturn(List.of(moved));
+        CacheProperties cacheProperties = new CacheProperties();
+        // Every lookup goes back to the registry
+        cacheProperties.getServiceDiscovery().setTtlSeconds(0);
+        ServiceDiscovery serviceDiscovery = new ServiceDiscovery(
+                discoveryClient, new ObjectMapper(), environment, cacheProperties);
+        ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+        serviceDiscovery.setApplicationEventPublisher(publisher);
+
+        serviceDiscovery.discoverServiceUrl("metrics-api");
+        serviceDiscovery.discoverServiceUrl("metrics-api");
+        verifyNoInteractions(publisher);
+
+        assertEquals("http://10.0.0.2:8080", serviceDiscovery.discoverServiceUrl("metrics-api"));
+        verify(publisher).publishEvent(new ServiceUrlChangedEvent(Set.of("metrics-api")));
+
+        serviceDiscovery.clearCache();
+        verify(publisher, times(2)).publishEvent(new ServiceUrlChangedEvent(Set.of("metrics-api")));
+    }
 }
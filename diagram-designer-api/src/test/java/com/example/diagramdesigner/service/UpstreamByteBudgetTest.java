@@ -0,0 +1,88 @@
+package com.example.diagramdesigner.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamByteBudgetTest {
+
+    @Test
+    void reservationsWithinBudgetAreGrantedImmediately() {
+        UpstreamByteBudget budget = new UpstreamByteBudget(1000, Duration.ZERO);
+
+        StepVerifier.create(budget.acquire(600)).expectNext(600L).verifyComplete();
+        StepVerifier.create(budget.acquire(400)).expectNext(400L).verifyComplete();
+        assertEquals(1000, budget.inUse());
+
+        budget.release(600);
+        budget.release(400);
+        assertEquals(0, budget.inUse());
+    }
+
+    @Test
+    void failsFastWhenExhaustedAndNotQueueing() {
+        UpstreamByteBudget budget = new UpstreamByteBudget(1000, Duration.ZERO);
+        budget.acquire(800).block();
+
+        StepVerifier.create(budget.acquire(300))
+                .expectError(UpstreamByteBudget.ExhaustedException.class)
+                .verify();
+        assertEquals(800, budget.inUse());
+    }
+
+    @Test
+    void waitersAreGrantedInArrivalOrderAsBytesAreReleased() {
+        UpstreamByteBudget budget = new UpstreamByteBudget(1000, Duration.ofSeconds(10));
+        budget.acquire(1000).block();
+        List<Long> granted = new ArrayList<>();
+
+        budget.acquire(700).subscribe(granted::add);
+        budget.acquire(200).subscribe(granted::add);
+        assertEquals(2, budget.queued());
+        assertTrue(granted.isEmpty());
+
+        // 500 free: the 700 waiter at the head does not fit, so the 200 behind it waits too
+        budget.release(500);
+        assertTrue(granted.isEmpty());
+
+        budget.release(500);
+        assertEquals(List.of(700L, 200L), granted);
+        assertEquals(900, budget.inUse());
+        assertEquals(0, budget.queued());
+    }
+
+    @Test
+    void timedOutOrCancelledWaitersHoldNoBytes() {
+        UpstreamByteBudget budget = new UpstreamByteBudget(1000, Duration.ofMillis(50));
+        budget.acquire(1000).block();
+
+        StepVerifier.create(budget.acquire(100))
+                .expectError(UpstreamByteBudget.ExhaustedException.class)
+                .verify(Duration.ofSeconds(5));
+        Disposable cancelled = budget.acquire(500).subscribe();
+        cancelled.dispose();
+        List<Long> granted = new ArrayList<>();
+        budget.acquire(100).subscribe(granted::add);
+
+        budget.release(1000);
+        assertEquals(List.of(100L), granted);
+        assertEquals(100, budget.inUse());
+        assertEquals(0, budget.queued());
+    }
+
+    @Test
+    void reservationLargerThanBudgetRunsAlone() {
+        UpstreamByteBudget budget = new UpstreamByteBudget(1000, Duration.ZERO);
+
+        StepVerifier.create(budget.acquire(5000)).expectNext(1000L).verifyComplete();
+        StepVerifier.create(budget.acquire(1))
+                .expectError(UpstreamByteBudget.ExhaustedException.class)
+                .verify();
+    }
+}
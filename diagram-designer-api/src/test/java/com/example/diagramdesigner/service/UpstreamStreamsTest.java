@@ -0,0 +1,115 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamStreamsTest {
+
+    private MetricsProxyProperties.Streaming properties;
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final Map<String, Object> stored = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new MetricsProxyProperties.Streaming();
+        properties.setMinBackoffMs(1);
+        properties.setMaxBackoffMs(5);
+        properties.setIdleTimeoutMs(60000);
+        properties.setMaxStreams(2);
+    }
+
+    @Test
+    void eventsUpdateTheStoreOverOneConnection() {
+        Sinks.Many<Object> upstream = Sinks.many().multicast().onBackpressureBuffer();
+        AtomicInteger connections = new AtomicInteger();
+        UpstreamStreams streams = streams();
+        Supplier<Flux<Object>> connector = () -> {
+            connections.incrementAndGet();
+            return upstream.asFlux();
+        };
+
+        StepVerifier.create(streams.latest("key", "http://host/events", connector))
+                .then(() -> upstream.tryEmitNext(Map.of("depth", 1)))
+                .expectNext(Map.of("depth", 1))
+                .verifyComplete();
+        upstream.tryEmitNext(Map.of("depth", 2));
+
+        StepVerifier.create(streams.latest("key", "http://host/events", connector))
+                .expectNext(Map.of("depth", 2))
+                .verifyComplete();
+        assertEquals(Map.of("depth", 2), stored.get("key"));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    void reconnectsWhenTheUpstreamFailsOrCloses() {
+        List<String> attempts = new CopyOnWriteArrayList<>();
+        UpstreamStreams streams = streams();
+
+        streams.latest("key", "http://host/events", () -> {
+            attempts.add("http://host/events");
+            return switch (attempts.size()) {
+                case 1 -> Flux.error(new RuntimeException("Connection refused"));
+                case 2 -> Flux.just((Object) 1);
+                default -> Flux.<Object>just(2).concatWith(Flux.never());
+            };
+        }).subscribe();
+
+        await(() -> Integer.valueOf(2).equals(stored.get("key")));
+        assertEquals(3, attempts.size());
+    }
+
+    @Test
+    void idleStreamsAreClosedAndStreamCountIsCapped() {
+        AtomicInteger cancelled = new AtomicInteger();
+        UpstreamStreams streams = streams();
+        Supplier<Flux<Object>> connector =
+                () -> Flux.<Object>never().doOnCancel(cancelled::incrementAndGet);
+
+        streams.latest("a", "http://host/a", connector).subscribe();
+        streams.latest("b", "http://host/b", connector).subscribe();
+        StepVerifier.create(streams.latest("c", "http://host/c", connector))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        clock.addAndGet(30000);
+        streams.latest("a", "http://host/a", connector).subscribe();
+        clock.addAndGet(40000);
+
+        assertEquals(1, streams.closeIdle());
+        assertEquals(1, streams.size());
+        assertEquals(1, cancelled.get());
+
+        streams.closeAll();
+        assertEquals(0, streams.size());
+        assertEquals(2, cancelled.get());
+    }
+
+    private UpstreamStreams streams() {
+        return new UpstreamStreams(properties, stored::put, clock::get);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+}
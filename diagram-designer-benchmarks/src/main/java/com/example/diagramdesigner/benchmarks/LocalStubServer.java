@@ -0,0 +1,68 @@
+package com.example.diagramdesigner.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal loopback HTTP server answering every GET with the same JSON body,
+ * standing in for an actuator or management API during benchmarks.
+ */
+public final class LocalStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private LocalStubServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start a stub returning a JSON object padded to roughly {@code payloadBytes}.
+     */
+    public static LocalStubServer start(int payloadBytes) throws IOException {
+        byte[] body = jsonPayload(payloadBytes);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return new LocalStubServer(server, executor);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static byte[] jsonPayload(int payloadBytes) {
+        StringBuilder json = new StringBuilder("{\"status\":\"UP\",\"messages\":1234,\"queues\":[");
+        int i = 0;
+        while (json.length() < payloadBytes) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"queue-").append(i).append("\",\"messages\":").append(i * 7).append('}');
+            i++;
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.diagramdesigner.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples heap usage and GC activity of this JVM (app under test plus harness).
+ */
+final class HeapSampler implements AutoCloseable {
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private long peakUsed;
+    private long usedSum;
+    private long sampleCount;
+    private long gcCountAtStart;
+    private long gcTimeAtStart;
+
+    HeapSampler(long periodMs) {
+        thread = Thread.ofPlatform().daemon().name("heap-sampler").unstarted(() -> {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(periodMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    void start() {
+        gcCountAtStart = gcCount();
+        gcTimeAtStart = gcTimeMs();
+        thread.start();
+    }
+
+    private synchronized void sample() {
+        long used = memory.getHeapMemoryUsage().getUsed();
+        peakUsed = Math.max(peakUsed, used);
+        usedSum += used;
+        sampleCount++;
+    }
+
+    synchronized long peakUsedBytes() {
+        return peakUsed;
+    }
+
+    synchronized long averageUsedBytes() {
+        return sampleCount == 0 ? 0 : usedSum / sampleCount;
+    }
+
+    long maxHeapBytes() {
+        return memory.getHeapMemoryUsage().getMax();
+    }
+
+    long gcCountDelta() {
+        return gcCount() - gcCountAtStart;
+    }
+
+    long gcTimeDeltaMs() {
+        return gcTimeMs() - gcTimeAtStart;
+    }
+
+    /**
+     * Heap still in use after a full collection, i.e. roughly the live set.
+     */
+    long usedAfterGcBytes() {
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcTimeMs() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+}
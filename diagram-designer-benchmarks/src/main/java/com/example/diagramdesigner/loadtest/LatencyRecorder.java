@@ -0,0 +1,40 @@
+package com.example.diagramdesigner.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects request latencies (in microseconds) for percentile reporting.
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[1 << 14];
+    private int count;
+
+    synchronized void record(long micros) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = micros;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Sorted copy of the recorded samples.
+     */
+    synchronized long[] sorted() {
+        long[] copy = Arrays.copyOf(samples, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
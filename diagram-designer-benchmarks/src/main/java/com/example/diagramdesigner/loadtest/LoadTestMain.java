@@ -0,0 +1,250 @@
+package com.example.diagramdesigner.loadtest;
+
+import com.example.diagramdesigner.DiagramDesignerApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test: starts the API in this JVM against a {@link StubUpstreamFleet},
+ * replays the {@code /api/metrics/batch} traffic of many dashboard viewers derived
+ * from the diagram configs, and reports throughput, latency percentiles, upstream
+ * call amplification and heap usage. See {@link LoadTestOptions#USAGE}.
+ */
+public final class LoadTestMain {
+
+    private static final String ERROR_FIELD = "\"error\"";
+
+    private final LoadTestOptions options;
+    private final TrafficPlan plan;
+    private final StubUpstreamFleet stub;
+    private final HttpClient client;
+    private final URI batchUri;
+
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder itemsRequested = new LongAdder();
+    private final LongAdder httpErrors = new LongAdder();
+    private final LongAdder itemErrors = new LongAdder();
+
+    private LoadTestMain(LoadTestOptions options, TrafficPlan plan, StubUpstreamFleet stub, HttpClient client, int port) {
+        this.options = options;
+        this.plan = plan;
+        this.stub = stub;
+        this.client = client;
+        this.batchUri = URI.create("http://127.0.0.1:" + port + "/api/metrics/batch");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.print(LoadTestOptions.USAGE);
+            return;
+        }
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadTestOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        try (StubUpstreamFleet stub = StubUpstreamFleet.start(options)) {
+            TrafficPlan plan = TrafficPlan.load(options.configsDir(), stub.baseUrl(), objectMapper);
+            Path dataDir = Files.createTempDirectory("diagram-designer-loadtest");
+
+            List<String> appArgs = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.main.banner-mode=off",
+                    "--spring.datasource.url=jdbc:sqlite:" + dataDir.resolve("diagrams.db"),
+                    // The configured sqlite-dialect targets Hibernate 5 and fails to load under Hibernate 6
+                    "--spring.jpa.database-platform=org.hibernate.community.dialect.SQLiteDialect",
+                    "--metrics.proxy.snapshot.enabled=false",
+                    "--eureka.client.enabled=false",
+                    "--logging.level.root=WARN",
+                    "--logging.level.com.example.diagramdesigner=WARN"));
+            appArgs.addAll(options.appArguments());
+
+            try (ConfigurableApplicationContext app =
+                         SpringApplication.run(DiagramDesignerApplication.class, appArgs.toArray(String[]::new));
+                 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .executor(executor)
+                        .build();
+                new LoadTestMain(options, plan, stub, client, port).run(executor);
+            }
+        }
+        System.exit(0);
+    }
+
+    private void run(ExecutorService executor) throws InterruptedException {
+        System.out.printf("Replaying %d diagram(s), %d distinct upstreams, %d viewers, offered load %.1f items/s%n",
+                plan.diagramCount(), plan.distinctUpstreams(), options.viewers(),
+                plan.itemsPerSecond(options.viewers(), options.intervalScale()));
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+
+        int loops = 0;
+        for (int viewer = 0; viewer < options.viewers(); viewer++) {
+            loops += plan.groupsForViewer(viewer).size();
+        }
+        CountDownLatch finished = new CountDownLatch(loops);
+        for (int viewer = 0; viewer < options.viewers(); viewer++) {
+            for (TrafficPlan.PollGroup group : plan.groupsForViewer(viewer)) {
+                executor.execute(() -> {
+                    try {
+                        pollLoop(group, start, measureStart, end);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+        }
+
+        sleepUntil(measureStart);
+        long upstreamCallsAtStart = stub.calls();
+        long upstreamErrorsAtStart = stub.errors();
+        try (HeapSampler heap = new HeapSampler(250)) {
+            heap.start();
+            sleepUntil(end);
+            long upstreamCalls = stub.calls() - upstreamCallsAtStart;
+            long upstreamErrors = stub.errors() - upstreamErrorsAtStart;
+            // Let requests started before the deadline finish
+            finished.await(30, TimeUnit.SECONDS);
+            report(upstreamCalls, upstreamErrors, heap);
+        }
+    }
+
+    private void pollLoop(TrafficPlan.PollGroup group, long start, long measureStart, long end) {
+        long interval = TimeUnit.MILLISECONDS.toNanos(TrafficPlan.scaledInterval(group.intervalMs(), options.intervalScale()));
+        // Viewers open their dashboards at different times
+        long next = start + ThreadLocalRandom.current().nextLong(interval);
+        HttpRequest request = HttpRequest.newBuilder(batchUri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(group.body()))
+                .build();
+
+        while (next < end) {
+            if (!sleepUntil(next)) {
+                return;
+            }
+            long sent = System.nanoTime();
+            boolean measured = sent >= measureStart;
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent);
+                if (measured) {
+                    latencies.record(micros);
+                    requests.increment();
+                    itemsRequested.add(group.items());
+                    if (response.statusCode() != 200) {
+                        httpErrors.increment();
+                    } else {
+                        itemErrors.add(countOccurrences(response.body(), ERROR_FIELD));
+                    }
+                }
+            } catch (Exception e) {
+                if (measured) {
+                    requests.increment();
+                    itemsRequested.add(group.items());
+                    httpErrors.increment();
+                }
+            }
+            next += interval;
+            long now = System.nanoTime();
+            if (now > next + interval) {
+                // Fell behind by more than a tick; skip ahead like a throttled browser timer
+                next = now;
+            }
+        }
+    }
+
+    private void report(long upstreamCalls, long upstreamErrors, HeapSampler heap) {
+        double seconds = options.durationSeconds();
+        long[] sorted = latencies.sorted();
+        long items = itemsRequested.sum();
+
+        System.out.println();
+        System.out.println("== Load test results ==");
+        System.out.printf("Measured window        %d s (after %d s warm-up)%n", options.durationSeconds(), options.warmupSeconds());
+        System.out.printf("Viewers                %d (interval scale %.2f)%n", options.viewers(), options.intervalScale());
+        System.out.printf("Stub upstream          latency %d+%d ms, error rate %.1f%%, payload ~%d bytes%n",
+                options.upstreamLatencyMs(), options.upstreamJitterMs(), options.upstreamErrorRate() * 100,
+                options.payloadBytes());
+        System.out.println();
+        System.out.printf("Batch requests         %d (%.1f req/s)%n", requests.sum(), requests.sum() / seconds);
+        System.out.printf("Batch items            %d (%.1f items/s)%n", items, items / seconds);
+        System.out.printf("Errors                 %d HTTP, %d items%n", httpErrors.sum(), itemErrors.sum());
+        System.out.printf("Latency ms             p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                ms(LatencyRecorder.percentile(sorted, 50)), ms(LatencyRecorder.percentile(sorted, 90)),
+                ms(LatencyRecorder.percentile(sorted, 99)), ms(LatencyRecorder.percentile(sorted, 99.9)),
+                ms(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+        System.out.println();
+        System.out.printf("Upstream calls         %d (%.1f calls/s, %d stub errors)%n",
+                upstreamCalls, upstreamCalls / seconds, upstreamErrors);
+        System.out.printf("Amplification          %.3f upstream calls per batch item%n",
+                items == 0 ? 0.0 : (double) upstreamCalls / items);
+        System.out.printf("                       %.2f calls/s per distinct upstream%n",
+                upstreamCalls / seconds / Math.max(1, plan.distinctUpstreams()));
+        System.out.println();
+        System.out.printf("Heap used              peak %d MB, average %d MB, after GC %d MB (max %d MB)%n",
+                mb(heap.peakUsedBytes()), mb(heap.averageUsedBytes()), mb(heap.usedAfterGcBytes()), mb(heap.maxHeapBytes()));
+        System.out.printf("GC                     %d collections, %d ms%n", heap.gcCountDelta(), heap.gcTimeDeltaMs());
+        System.out.println("(heap figures include the load generator and stub, which share the JVM)");
+    }
+
+    private static boolean sleepUntil(long deadlineNanos) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static int countOccurrences(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
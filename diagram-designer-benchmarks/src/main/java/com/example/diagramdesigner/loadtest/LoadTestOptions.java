@@ -0,0 +1,79 @@
+package com.example.diagramdesigner.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options of {@link LoadTestMain}, given as {@code --name=value}.
+ * Options prefixed with {@code --app.} are passed to the Spring Boot app with the
+ * prefix removed, e.g. {@code --app.metrics.proxy.cache-ttl-ms=5000}.
+ */
+record LoadTestOptions(
+        int viewers,
+        int durationSeconds,
+        int warmupSeconds,
+        double intervalScale,
+        long upstreamLatencyMs,
+        long upstreamJitterMs,
+        double upstreamErrorRate,
+        int payloadBytes,
+        String configsDir,
+        List<String> appArguments) {
+
+    static final String USAGE = """
+            Usage: java -cp benchmarks.jar com.example.diagramdesigner.loadtest.LoadTestMain [options]
+              --viewers=N               concurrent simulated dashboard viewers (default 50)
+              --duration-s=N            measured duration in seconds (default 60)
+              --warmup-s=N              warm-up seconds excluded from results (default 10)
+              --interval-scale=X        multiply diagram poll intervals, e.g. 0.1 for 10x faster polling (default 1.0)
+              --upstream-latency-ms=N   stub upstream response latency (default 20)
+              --upstream-jitter-ms=N    extra random latency up to N ms (default 10)
+              --upstream-error-rate=X   fraction of stub responses that are HTTP 500 (default 0.0)
+              --payload-bytes=N         approximate stub response size (default 4096)
+              --configs=DIR             diagram JSON directory (default ./configs, falls back to the classpath)
+              --app.<property>=value    Spring Boot property for the app under test
+            """;
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        List<String> appArguments = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = eq > 0 ? arg.substring(2, eq) : arg.substring(2);
+            String value = eq > 0 ? arg.substring(eq + 1) : "true";
+            if (name.startsWith("app.")) {
+                appArguments.add("--" + name.substring(4) + "=" + value);
+            } else {
+                values.put(name, value);
+            }
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                Integer.parseInt(values.getOrDefault("viewers", "50")),
+                Integer.parseInt(values.getOrDefault("duration-s", "60")),
+                Integer.parseInt(values.getOrDefault("warmup-s", "10")),
+                Double.parseDouble(values.getOrDefault("interval-scale", "1.0")),
+                Long.parseLong(values.getOrDefault("upstream-latency-ms", "20")),
+                Long.parseLong(values.getOrDefault("upstream-jitter-ms", "10")),
+                Double.parseDouble(values.getOrDefault("upstream-error-rate", "0.0")),
+                Integer.parseInt(values.getOrDefault("payload-bytes", "4096")),
+                values.getOrDefault("configs", "configs"),
+                List.copyOf(appArguments));
+
+        values.keySet().removeAll(List.of("viewers", "duration-s", "warmup-s", "interval-scale",
+                "upstream-latency-ms", "upstream-jitter-ms", "upstream-error-rate", "payload-bytes", "configs", "help"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown option(s): " + values.keySet());
+        }
+        if (options.viewers() < 1 || options.durationSeconds() < 1 || options.intervalScale() <= 0
+                || options.upstreamErrorRate() < 0 || options.upstreamErrorRate() > 1) {
+            throw new IllegalArgumentException("Invalid option value");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.diagramdesigner.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loopback HTTP server impersonating the upstreams a dashboard polls: Spring Boot
+ * actuator, RabbitMQ management and Prometheus query endpoints, plus a generic
+ * JSON endpoint for anything else. Response flavour is chosen from the request
+ * path; latency, error rate and payload size are configurable.
+ */
+final class StubUpstreamFleet implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+
+    private final byte[] actuatorBody;
+    private final byte[] rabbitBody;
+    private final byte[] prometheusBody;
+    private final byte[] genericBody;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private StubUpstreamFleet(HttpServer server, ExecutorService executor, LoadTestOptions options) {
+        this.server = server;
+        this.executor = executor;
+        this.latencyMs = options.upstreamLatencyMs();
+        this.jitterMs = options.upstreamJitterMs();
+        this.errorRate = options.upstreamErrorRate();
+        int size = options.payloadBytes();
+        this.actuatorBody = pad("{\"status\":\"UP\",\"components\":{\"db\":{\"status\":\"UP\"},"
+                + "\"diskSpace\":{\"status\":\"UP\",\"details\":{\"free\":52428800000}}},"
+                + "\"name\":\"http.server.requests\",\"measurements\":[{\"statistic\":\"COUNT\",\"value\":15342.0}]", size);
+        this.rabbitBody = pad("{\"rabbitmq_version\":\"3.13.1\",\"queue_totals\":{\"messages\":1234,"
+                + "\"messages_ready\":1000,\"messages_unacknowledged\":234},"
+                + "\"message_stats\":{\"publish_details\":{\"rate\":42.5},\"deliver_get_details\":{\"rate\":40.1}},"
+                + "\"object_totals\":{\"connections\":12,\"channels\":24,\"queues\":8}", size);
+        this.prometheusBody = pad("{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+                + "{\"metric\":{\"__name__\":\"up\",\"job\":\"app\"},\"value\":[1700000000.0,\"1\"]}]}", size);
+        this.genericBody = pad("{\"status\":\"UP\",\"value\":42,\"activeUsers\":1200,\"viewsPerMin\":5300", size);
+    }
+
+    static StubUpstreamFleet start(LoadTestOptions options) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        StubUpstreamFleet fleet = new StubUpstreamFleet(server, executor, options);
+        server.createContext("/", fleet::handle);
+        server.start();
+        return fleet;
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long calls() {
+        return calls.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean fail = errorRate > 0 && random.nextDouble() < errorRate;
+        byte[] body = fail
+                ? "{\"error\":\"stub failure\"}".getBytes(StandardCharsets.UTF_8)
+                : bodyFor(exchange.getRequestURI().getPath());
+        if (fail) {
+            errors.increment();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(fail ? 500 : 200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private byte[] bodyFor(String path) {
+        if (path.contains("/actuator")) {
+            return actuatorBody;
+        }
+        if (path.contains("/api/v1/query")) {
+            return prometheusBody;
+        }
+        if (path.contains("/api/overview") || path.contains("/api/queues") || path.contains("/api/nodes")) {
+            return rabbitBody;
+        }
+        return genericBody;
+    }
+
+    // Closes the given (unterminated) JSON object, padding it with a filler array up to roughly size bytes
+    private static byte[] pad(String openObject, int size) {
+        StringBuilder json = new StringBuilder(Math.max(size, openObject.length()) + 64).append(openObject);
+        json.append(",\"samples\":[");
+        int i = 0;
+        while (json.length() < size) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"t\":").append(1_700_000_000L + i).append(",\"v\":").append(i % 97).append('}');
+            i++;
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
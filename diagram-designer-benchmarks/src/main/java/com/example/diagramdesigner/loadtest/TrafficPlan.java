@@ -0,0 +1,186 @@
+package com.example.diagramdesigner.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * The {@code /api/metrics/batch} requests a browser viewing each diagram sends,
+ * derived from the diagram JSON the same way the frontend does: every data grid
+ * metric and node status is registered with its resolved poll interval, and all
+ * metrics sharing an interval are fetched in one batch per tick.
+ *
+ * Upstream URLs are rewritten to point at the {@link StubUpstreamFleet}, keeping
+ * their paths so the stub answers with the matching response flavour.
+ */
+final class TrafficPlan {
+
+    // Mirrors frontend/src/utils/interval.ts
+    private static final long DEFAULT_INTERVAL_MS = 30_000;
+    private static final long MIN_INTERVAL_MS = 1_000;
+
+    record PollGroup(String diagram, long intervalMs, String body, int items) {}
+
+    private final List<List<PollGroup>> diagrams;
+    private final int distinctUpstreams;
+
+    private TrafficPlan(List<List<PollGroup>> diagrams, int distinctUpstreams) {
+        this.diagrams = diagrams;
+        this.distinctUpstreams = distinctUpstreams;
+    }
+
+    static TrafficPlan load(String configsDir, String stubBaseUrl, ObjectMapper objectMapper) throws IOException {
+        Map<String, String> stubUrls = new HashMap<>();
+        List<List<PollGroup>> diagrams = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> diagram : readDiagrams(configsDir, objectMapper).entrySet()) {
+            List<PollGroup> groups = planDiagram(diagram.getKey(), diagram.getValue(), stubBaseUrl, stubUrls, objectMapper);
+            if (!groups.isEmpty()) {
+                diagrams.add(groups);
+            }
+        }
+        if (diagrams.isEmpty()) {
+            throw new IllegalStateException("No diagrams with metrics found in " + configsDir);
+        }
+        return new TrafficPlan(diagrams, stubUrls.size());
+    }
+
+    /**
+     * Poll groups of the diagram shown by the given viewer (viewers are spread round-robin).
+     */
+    List<PollGroup> groupsForViewer(int viewer) {
+        return diagrams.get(viewer % diagrams.size());
+    }
+
+    int diagramCount() {
+        return diagrams.size();
+    }
+
+    int distinctUpstreams() {
+        return distinctUpstreams;
+    }
+
+    /**
+     * Batch items per second requested by the given number of viewers at the given interval scale.
+     */
+    double itemsPerSecond(int viewers, double intervalScale) {
+        double total = 0;
+        for (int v = 0; v < viewers; v++) {
+            for (PollGroup group : groupsForViewer(v)) {
+                total += group.items() * 1000.0 / scaledInterval(group.intervalMs(), intervalScale);
+            }
+        }
+        return total;
+    }
+
+    static long scaledInterval(long intervalMs, double intervalScale) {
+        return Math.max(1, Math.round(intervalMs * intervalScale));
+    }
+
+    private static List<PollGroup> planDiagram(String name, JsonNode diagram, String stubBaseUrl,
+            Map<String, String> stubUrls, ObjectMapper objectMapper) throws IOException {
+        long globalInterval = diagram.path("config").path("updateInterval").asLong(0);
+        // interval -> (key -> item); keys dedupe like the frontend's registration map
+        Map<Long, Map<String, Map<String, String>>> byInterval = new TreeMap<>();
+
+        for (JsonNode node : diagram.path("nodes")) {
+            String nodeName = node.path("name").asText("");
+            long nodeInterval = node.path("pollIntervalMs").asLong(0);
+
+            for (JsonNode metric : node.path("dataGrid")) {
+                String url = metric.path("url").asText("");
+                if (!url.isEmpty()) {
+                    long interval = resolveInterval(metric.path("pollIntervalMs").asLong(0), nodeInterval, globalInterval);
+                    addItem(byInterval, interval, nodeName, stubUrl(url, stubBaseUrl, stubUrls));
+                }
+            }
+
+            JsonNode status = node.path("status");
+            String statusUrl = status.path("url").asText("");
+            if (!statusUrl.isEmpty()) {
+                long interval = resolveInterval(status.path("updateInterval").asLong(0), nodeInterval, globalInterval);
+                addItem(byInterval, interval, nodeName, stubUrl(statusUrl, stubBaseUrl, stubUrls));
+            }
+        }
+
+        List<PollGroup> groups = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, Map<String, String>>> entry : byInterval.entrySet()) {
+            ArrayNode body = objectMapper.createArrayNode();
+            entry.getValue().values().forEach(item -> body.add(objectMapper.valueToTree(item)));
+            groups.add(new PollGroup(name, entry.getKey(), objectMapper.writeValueAsString(body), body.size()));
+        }
+        return groups;
+    }
+
+    private static void addItem(Map<Long, Map<String, Map<String, String>>> byInterval, long interval,
+            String nodeName, String url) {
+        String key = nodeName + "-" + url;
+        byInterval.computeIfAbsent(interval, i -> new LinkedHashMap<>())
+                .put(key, Map.of("url", url, "node", nodeName, "key", key));
+    }
+
+    private static long resolveInterval(long metricInterval, long nodeInterval, long globalInterval) {
+        long resolved = metricInterval > 0 ? metricInterval
+                : nodeInterval > 0 ? nodeInterval
+                : globalInterval > 0 ? globalInterval
+                : DEFAULT_INTERVAL_MS;
+        return Math.max(MIN_INTERVAL_MS, resolved);
+    }
+
+    // Each distinct upstream gets its own stub path prefix so the proxy sees as many distinct upstreams
+    private static String stubUrl(String original, String stubBaseUrl, Map<String, String> stubUrls) {
+        return stubUrls.computeIfAbsent(original, url -> {
+            String path;
+            try {
+                URI uri = URI.create(url);
+                path = uri.getRawPath() != null && uri.getHost() != null ? uri.getRawPath() : "/" + url;
+                if (uri.getRawQuery() != null && uri.getHost() != null) {
+                    path += "?" + uri.getRawQuery();
+                }
+            } catch (IllegalArgumentException e) {
+                // Placeholders or service names; keep only characters that are safe in a path
+                path = "/" + url.replaceAll("[^A-Za-z0-9/._-]", "_");
+            }
+            return stubBaseUrl + "/u" + stubUrls.size() + (path.startsWith("/") ? path : "/" + path);
+        });
+    }
+
+    private static Map<String, JsonNode> readDiagrams(String configsDir, ObjectMapper objectMapper) throws IOException {
+        Map<String, JsonNode> diagrams = new TreeMap<>();
+        Path dir = Path.of(configsDir);
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".json")).toList()) {
+                    addIfDiagram(diagrams, file.getFileName().toString(), objectMapper.readTree(file.toFile()));
+                }
+            }
+        } else {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath*:configs/*.json")) {
+                try (InputStream in = resource.getInputStream()) {
+                    addIfDiagram(diagrams, resource.getFilename(), objectMapper.readTree(in));
+                }
+            }
+        }
+        return diagrams;
+    }
+
+    private static void addIfDiagram(Map<String, JsonNode> diagrams, String name, JsonNode json) {
+        if (json != null && json.path("nodes").isArray()) {
+            diagrams.put(name, json);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.diagramdesigner.service;
+
+import com.example.diagramdesigner.benchmarks.LocalStubServer;
+import com.example.diagramdesigner.config.CacheProperties;
+import com.example.diagramdesigner.config.MetricsProxyProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryClient;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryProperties;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics proxy paths hit by every dashboard poll: cache key construction, cache
+ * hits, cache misses against a loopback stub upstream, and batch fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsProxyServiceBenchmark {
+
+    private static final String NODE = "rabbitmq-node";
+    private static final String FINGERPRINT = "3f2a9c0d4e5b6a7f";
+
+    @Param({"2048"})
+    public int payloadBytes;
+
+    @Param({"20"})
+    public int batchSize;
+
+    private LocalStubServer stub;
+    private MetricsProxyService cachingService;
+    private MetricsProxyService uncachedService;
+    private String metricsUrl;
+    private List<Map<String, String>> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = LocalStubServer.start(payloadBytes);
+        metricsUrl = stub.baseUrl() + "/api/overview";
+
+        cachingService = newService(true);
+        uncachedService = newService(false);
+
+        // Prime the cache so cacheHit never reaches the stub
+        cachingService.proxyRequest(metricsUrl, NODE).block();
+
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            String url = stub.baseUrl() + "/api/queues/" + i;
+            batch.add(Map.of("url", url, "node", "node-" + i, "key", "node-" + i + "-" + url));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public String buildCacheKey() {
+        return cachingService.buildCacheKey(metricsUrl, NODE, FINGERPRINT);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> cacheHit() {
+        return cachingService.proxyRequest(metricsUrl, NODE).block();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ResponseEntity<Object> cacheMiss() {
+        return uncachedService.proxyRequest(metricsUrl, NODE).block();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void batchFanOut() throws IOException {
+        uncachedService.writeBatchMetrics(batch, OutputStream.nullOutputStream());
+    }
+
+    private static MetricsProxyService newService(boolean caching) {
+        MetricsProxyProperties properties = new MetricsProxyProperties();
+        properties.setEnableCaching(caching);
+        ObjectMapper objectMapper = new ObjectMapper();
+        AuthenticationResolver authenticationResolver = new AuthenticationResolver(new StandardEnvironment());
+        // Coordination is disabled by default, so the coordinator never touches the database
+        PollCoordinator pollCoordinator = new PollCoordinator(null, objectMapper, properties);
+        // Hedging is disabled by default, so discovery is never consulted
+        ServiceDiscovery serviceDiscovery = new ServiceDiscovery(
+                new SimpleDiscoveryClient(new SimpleDiscoveryProperties()), objectMapper,
+                new StandardEnvironment(), new CacheProperties());
+        return new MetricsProxyService(properties, objectMapper, authenticationResolver, pollCoordinator,
+                serviceDiscovery, new MetricsUrlValidator());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.diagramdesigner.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URL validation done by {@code MetricsProxyController} before proxying. IP
+ * literals are used so results do not depend on DNS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsUrlValidatorBenchmark {
+
+    private final MetricsUrlValidator validator = new MetricsUrlValidator();
+
+    @Benchmark
+    public boolean publicAddress() {
+        return validator.isValidUrl("https://8.8.8.8/api/overview");
+    }
+
+    @Benchmark
+    public boolean privateAddressBlocked() {
+        return validator.isValidUrl("http://192.168.1.10/actuator/metrics");
+    }
+
+    @Benchmark
+    public boolean localhostBlocked() {
+        return validator.isValidUrl("http://localhost:8080/actuator/metrics");
+    }
+
+    @Benchmark
+    public boolean serviceName() {
+        return validator.isServiceName("imc-db-server/api/db01/fleet/summary");
+    }
+}
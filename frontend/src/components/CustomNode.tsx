@@ -2,7 +2,7 @@ import React, { useState, useEffect, useCallback, memo } from 'react';
 import { Handle, Position } from 'reactflow';
 import type { NodeProps } from 'reactflow';
 import type { NodeData, DataGridItem } from '../types/diagram';
-import { buildMetricsUrl, log, appConfig } from '../config/appConfig';
+import { log, appConfig } from '../config/appConfig';
 import NodeDetailModal, { type NodeDetailConfig } from './NodeDetailModal';
 import { nodeDetailsService } from '../services/nodeDetailsService';
 import { useMetrics } from '../context/MetricsContext';
@@ -10,32 +10,19 @@ import { getNodeStatusClass } from '../utils/nodeStatus';
 import type { NodeStatus } from '../utils/nodeStatus';
 import { resolveInterval } from '../utils/interval';
 
-// Utility function to get nested object values by path (e.g., "measurements[0].value")
-const getNestedValue = (obj: any, path: string): any => {
-  try {
-    return path.split(/[.\[\]]/).filter(Boolean).reduce((current, key) => {
-      if (current === null || current === undefined) return undefined;
-      return current[key];
-    }, obj);
-  } catch (error) {
-    log.warn(`Error accessing path "${path}":`, error);
-    return undefined;
-  }
-};
-
 // Component for individual metric rows
 const MetricRow: React.FC<{
   metric: DataGridItem;
+  index: number;
   nodeName: string;
   nodeIntervalMs?: number;
   globalIntervalMs?: number;
-}> = memo(({ metric, nodeName, nodeIntervalMs, globalIntervalMs }) => {
+}> = memo(({ metric, index, nodeName, nodeIntervalMs, globalIntervalMs }) => {
   const [value, setValue] = useState<string>('Loading...');
   const [error, setError] = useState<boolean>(false);
   const { registerMetric } = useMetrics();
 
   useEffect(() => {
-    const proxyUrl = buildMetricsUrl(metric.url, nodeName);
     const resolvedIntervalMs = resolveInterval(
       metric.pollIntervalMs,
       nodeIntervalMs,
@@ -44,11 +31,10 @@ const MetricRow: React.FC<{
     );
 
     const unregister = registerMetric(
-      proxyUrl,
+      metric.url ?? '',
       nodeName,
-      (data) => {
+      (metricValue) => {
         try {
-          const metricValue = getNestedValue(data, metric.valueField);
           if (metricValue !== undefined && metricValue !== null) {
             const formatted = typeof metricValue === 'number'
               ? metricValue.toLocaleString()
@@ -74,13 +60,22 @@ const MetricRow: React.FC<{
           setError(true);
         }
       },
-      resolvedIntervalMs
+      resolvedIntervalMs,
+      {
+        dataGridIndex: index,
+        valueField: metric.valueField,
+        expression: metric.expression,
+        inputs: metric.inputs,
+      }
     );
 
     return unregister;
   }, [
     metric.url,
     metric.valueField,
+    metric.expression,
+    metric.inputs,
+    index,
     metric.pollIntervalMs,
     metric.label,
     nodeName,
@@ -129,8 +124,6 @@ const CustomNode: React.FC<NodeProps<NodeData>> = memo(({ data, xPos, yPos }) =>
   useEffect(() => {
     if (!data.status) return;
 
-    const proxyUrl = buildMetricsUrl(data.status.url, data.name);
-
     const statusIntervalMs = resolveInterval(
       data.status.updateInterval,
       data.pollIntervalMs,
@@ -139,13 +132,11 @@ const CustomNode: React.FC<NodeProps<NodeData>> = memo(({ data, xPos, yPos }) =>
     );
 
     const unregister = registerMetric(
-      proxyUrl,
+      data.status.url,
       data.name,
-      (result) => {
+      (statusValue) => {
         setLastChecked(new Date());
         try {
-          const statusValue = getNestedValue(result, data.status!.valueField);
-
           if (statusValue === data.status!.upValue) {
             setStatus('up');
             setStatusError(null);
@@ -171,7 +162,8 @@ const CustomNode: React.FC<NodeProps<NodeData>> = memo(({ data, xPos, yPos }) =>
           setStatusError('Network error');
         }
       },
-      statusIntervalMs
+      statusIntervalMs,
+      { valueField: data.status.valueField }
     );
 
     return unregister;
@@ -357,6 +349,7 @@ const CustomNode: React.FC<NodeProps<NodeData>> = memo(({ data, xPos, yPos }) =>
           <MetricRow
             key={index}
             metric={item}
+            index={index}
             nodeName={data.name}
             nodeIntervalMs={data.pollIntervalMs}
             globalIntervalMs={data.config.updateInterval}
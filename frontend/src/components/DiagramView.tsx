@@ -169,7 +169,7 @@ const buildFlowEdges = (data: DiagramConfig): Edge[] => {
 const DiagramViewInner: React.FC<DiagramViewProps> = ({ onConfigLoad, selectedDiagram = 'diagram-config.json', showCoordinates = false, initialConfig = null }) => {
   const { theme } = useTheme();
   const { getNodes } = useReactFlow();
-  const { setDependencyGraph } = useMetrics();
+  const { setDependencyGraph, setDiagram } = useMetrics();
   const [nodes, setNodes, onNodesChange] = useNodesState([]);
   const [edges, setEdges, onEdgesChange] = useEdgesState([]);
   const [config, setConfig] = useState<DiagramConfig | null>(null);
@@ -310,6 +310,8 @@ const DiagramViewInner: React.FC<DiagramViewProps> = ({ onConfigLoad, selectedDi
             onConfigLoad(pendingTemplate.config);
           }
 
+          // Templates have no server-side plan; their metrics go through the batch endpoint
+          setDiagram(null);
           // Don't load saved positions for templates (skipSavedPositions = true)
           processConfig(pendingTemplate.config, true);
           setLoading(false);
@@ -329,6 +331,7 @@ const DiagramViewInner: React.FC<DiagramViewProps> = ({ onConfigLoad, selectedDi
           onConfigLoad(initialConfig);
         }
 
+        setDiagram(null);
         processConfig(initialConfig, true);
         setLoading(false);
         return;
@@ -344,6 +347,8 @@ const DiagramViewInner: React.FC<DiagramViewProps> = ({ onConfigLoad, selectedDi
           onConfigLoad(data);
         }
 
+        // Poll the server's fetch plan for this diagram (name without .json)
+        setDiagram(selectedDiagram.replace(/\.json$/, ''));
         processConfig(data);
         setLoading(false);
       } catch (error) {
@@ -7,6 +7,18 @@ import { log } from '../config/appConfig';
 export { DEFAULT_INTERVAL_MS, MIN_INTERVAL_MS };
 const PRIORITY_REFRESH_DEBOUNCE_MS = 2000;
 
+/**
+ * Where a metric sits in the diagram config. Bound metrics are served from the
+ * open diagram's fetch plan (`/api/diagrams/{name}/metrics`) and their callback
+ * receives the resolved value rather than the upstream response.
+ */
+export interface MetricBinding {
+  dataGridIndex?: number; // absent for the node's status
+  valueField?: string;
+  expression?: string;
+  inputs?: Record<string, { url: string; valueField?: string }>;
+}
+
 interface MetricRequest {
   url: string;
   node: string;
@@ -14,6 +26,7 @@ interface MetricRequest {
   intervalMs: number;
   callback: (data: any) => void;
   errorCallback: (error: any) => void;
+  binding?: MetricBinding;
 }
 
 interface MetricsContextType {
@@ -22,9 +35,11 @@ interface MetricsContextType {
     node: string,
     callback: (data: any) => void,
     errorCallback: (error: any) => void,
-    intervalMs?: number
+    intervalMs?: number,
+    binding?: MetricBinding
   ) => () => void;
   setDependencyGraph: (graph: DependencyGraph) => void;
+  setDiagram: (name: string | null) => void;
 }
 
 const MetricsContext = createContext<MetricsContextType | null>(null);
@@ -37,14 +52,51 @@ export const useMetrics = () => {
   return context;
 };
 
+// Get a nested value by path (e.g., "measurements[0].value"). The proxy returns
+// an aggregate (e.g. "sum([*].messages)") under its own text, so that is tried first.
+export function resolveValueField(data: any, path: string | undefined): any {
+  if (!path) return data;
+  if (data !== null && typeof data === 'object' && Object.prototype.hasOwnProperty.call(data, path)) {
+    return data[path];
+  }
+  try {
+    return path.split(/[.\[\]]/).filter(Boolean).reduce((current, key) => {
+      if (current === null || current === undefined) return undefined;
+      return current[key];
+    }, data);
+  } catch (error) {
+    log.warn(`Error accessing path "${path}":`, error);
+    return undefined;
+  }
+}
+
+function toBatchItem(req: MetricRequest) {
+  const binding = req.binding;
+  if (binding?.expression) {
+    return { node: req.node, key: req.key, expression: binding.expression, inputs: binding.inputs };
+  }
+  if (binding?.valueField) {
+    // Let the proxy trim the response (and evaluate aggregates) to what is displayed
+    return { url: req.url, node: req.node, key: req.key, fields: [binding.valueField] };
+  }
+  return { url: req.url, node: req.node, key: req.key };
+}
+
+function deliverBatchResult(req: MetricRequest, result: any) {
+  const binding = req.binding;
+  if (!binding) {
+    req.callback(result);
+  } else if (binding.expression) {
+    req.callback(result.value);
+  } else {
+    req.callback(resolveValueField(result, binding.valueField));
+  }
+}
+
 async function fetchBatch(requests: Map<string, MetricRequest>): Promise<void> {
   if (requests.size === 0) return;
 
-  const batchPayload = Array.from(requests.values()).map(req => ({
-    url: req.url,
-    node: req.node,
-    key: req.key
-  }));
+  const batchPayload = Array.from(requests.values()).map(toBatchItem);
 
   try {
     const response = await fetch('/api/metrics/batch', {
@@ -60,7 +112,7 @@ async function fetchBatch(requests: Map<string, MetricRequest>): Promise<void> {
           if (data[req.key].error) {
             req.errorCallback(data[req.key].error);
           } else {
-            req.callback(data[req.key]);
+            deliverBatchResult(req, data[req.key]);
           }
         } else {
           req.errorCallback('No data in batch response');
@@ -74,6 +126,41 @@ async function fetchBatch(requests: Map<string, MetricRequest>): Promise<void> {
   }
 }
 
+/**
+ * Fetch the bound requests from the diagram's fetch plan. Resolves to false when
+ * the server has no such diagram, so the caller can fall back to the batch endpoint.
+ */
+async function fetchDiagram(name: string, requests: Map<string, MetricRequest>): Promise<boolean> {
+  if (requests.size === 0) return true;
+
+  try {
+    const response = await fetch(`/api/diagrams/${encodeURIComponent(name)}/metrics`);
+    if (response.status === 404) {
+      return false;
+    }
+    if (!response.ok) {
+      requests.forEach(req => req.errorCallback(`Diagram metrics request failed: ${response.status}`));
+      return true;
+    }
+    const data = await response.json();
+    requests.forEach((req) => {
+      const node = data.nodes?.[req.node];
+      const index = req.binding!.dataGridIndex;
+      const entry = index === undefined ? node?.status : node?.dataGrid?.[index];
+      if (!entry) {
+        req.errorCallback('No data in diagram response');
+      } else if (entry.error) {
+        req.errorCallback(entry.error);
+      } else {
+        req.callback(entry.value);
+      }
+    });
+  } catch (error) {
+    requests.forEach(req => req.errorCallback(error));
+  }
+  return true;
+}
+
 export function buildIntervalGroups(requests: Map<string, MetricRequest>): Map<number, Map<string, MetricRequest>> {
   const groups = new Map<number, Map<string, MetricRequest>>();
   requests.forEach((req, key) => {
@@ -109,11 +196,37 @@ export const MetricsProvider: React.FC<{ children: React.ReactNode }> = ({ child
   const dependencyGraphRef = useRef<DependencyGraph | null>(null);
   const priorityRefreshTimerRef = useRef<ReturnType<typeof setTimeout> | null>(null);
   const pendingPriorityNodesRef = useRef<Set<string>>(new Set());
+  const diagramNameRef = useRef<string | null>(null);
+  // Diagrams the plan endpoint answered with 404; their metrics go through the batch endpoint
+  const unservedDiagramsRef = useRef<Set<string>>(new Set());
 
   const safeFetchBatch = useCallback((requests: Map<string, MetricRequest>, source: string) => {
-    void fetchBatch(requests).catch((error) => {
-      log.debug(`[MetricsContext] ${source} batch error:`, error);
+    const name = diagramNameRef.current;
+    const served = new Map<string, MetricRequest>();
+    const batched = new Map<string, MetricRequest>();
+    requests.forEach((req, key) => {
+      const viaDiagram = name !== null && !!req.binding && !unservedDiagramsRef.current.has(name);
+      (viaDiagram ? served : batched).set(key, req);
     });
+
+    const runBatch = (batch: Map<string, MetricRequest>) => {
+      void fetchBatch(batch).catch((error) => {
+        log.debug(`[MetricsContext] ${source} batch error:`, error);
+      });
+    };
+
+    runBatch(batched);
+    if (name !== null && served.size > 0) {
+      void fetchDiagram(name, served).then((found) => {
+        if (!found) {
+          log.debug(`[MetricsContext] Diagram ${name} not served, falling back to batch requests`);
+          unservedDiagramsRef.current.add(name);
+          runBatch(served);
+        }
+      }).catch((error) => {
+        log.debug(`[MetricsContext] ${source} diagram error:`, error);
+      });
+    }
   }, []);
 
   const triggerPriorityRefresh = useCallback(() => {
@@ -223,9 +336,11 @@ export const MetricsProvider: React.FC<{ children: React.ReactNode }> = ({ child
     node: string,
     callback: (data: any) => void,
     errorCallback: (error: any) => void,
-    intervalMs: number = DEFAULT_INTERVAL_MS
+    intervalMs: number = DEFAULT_INTERVAL_MS,
+    binding?: MetricBinding
   ): (() => void) => {
-    const key = `${node}-${url}`;
+    // Bound metrics are keyed by position, so items sharing a URL stay distinct
+    const key = binding ? `${node}#${binding.dataGridIndex ?? 'status'}` : `${node}-${url}`;
     const resolvedIntervalMs = resolveInterval(intervalMs, undefined, undefined, `registerMetric(${node})`);
 
     // Wrap errorCallback to trigger priority refresh on failure
@@ -242,6 +357,7 @@ export const MetricsProvider: React.FC<{ children: React.ReactNode }> = ({ child
       intervalMs: resolvedIntervalMs,
       callback,
       errorCallback: wrappedErrorCallback,
+      binding,
     });
     syncIntervals();
 
@@ -260,8 +376,13 @@ export const MetricsProvider: React.FC<{ children: React.ReactNode }> = ({ child
     );
   }, []);
 
+  const setDiagram = useCallback((name: string | null) => {
+    diagramNameRef.current = name;
+    log.debug('[MetricsContext] Diagram set:', name);
+  }, []);
+
   return (
-    <MetricsContext.Provider value={{ registerMetric, setDependencyGraph }}>
+    <MetricsContext.Provider value={{ registerMetric, setDependencyGraph, setDiagram }}>
       {children}
     </MetricsContext.Provider>
   );
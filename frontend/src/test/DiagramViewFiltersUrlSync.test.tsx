@@ -8,7 +8,7 @@ vi.mock('../context/ThemeContext', () => ({
 }));
 
 vi.mock('../context/MetricsContext', () => ({
-  useMetrics: () => ({ setDependencyGraph: vi.fn() }),
+  useMetrics: () => ({ setDependencyGraph: vi.fn(), setDiagram: vi.fn() }),
 }));
 
 vi.mock('../utils/dependencyGraph', () => ({
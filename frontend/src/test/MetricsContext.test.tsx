@@ -549,4 +549,123 @@ describe('MetricsProvider', () => {
     // No additional priority fetch should occur because the node has no neighbors.
     expect(fetch).toHaveBeenCalledTimes(1);
   });
+
+  it('serves bound metrics from the open diagram\'s fetch plan', async () => {
+    const statusCb = vi.fn();
+    const itemCb = vi.fn();
+    const itemErrorCb = vi.fn();
+    const { result } = renderHook(() => useMetrics(), { wrapper });
+
+    vi.mocked(fetch).mockImplementation(async () => new Response(JSON.stringify({
+      diagram: 'shop',
+      nodes: {
+        api: {
+          status: { state: 'up', value: 'UP' },
+          dataGrid: [{ label: 'Requests', value: 42 }, { label: 'Errors', error: 'Connection refused' }],
+        },
+      },
+    }), { status: 200 }));
+
+    act(() => {
+      result.current.setDiagram('shop');
+      result.current.registerMetric('http://example.com/health', 'api', statusCb, vi.fn(), 5000,
+        { valueField: 'status' });
+      result.current.registerMetric('http://example.com/stats', 'api', itemCb, vi.fn(), 5000,
+        { dataGridIndex: 0, valueField: 'requests' });
+      result.current.registerMetric('http://example.com/stats', 'api', vi.fn(), itemErrorCb, 5000,
+        { dataGridIndex: 1, valueField: 'errors' });
+    });
+
+    await act(async () => {
+      vi.advanceTimersByTime(1000);
+    });
+
+    expect(fetch).toHaveBeenCalledTimes(1);
+    expect((fetch as any).mock.calls[0][0]).toBe('/api/diagrams/shop/metrics');
+    expect(statusCb).toHaveBeenCalledWith('UP');
+    expect(itemCb).toHaveBeenCalledWith(42);
+    expect(itemErrorCb).toHaveBeenCalledWith('Connection refused');
+  });
+
+  it('falls back to the batch endpoint when the diagram has no plan', async () => {
+    const itemCb = vi.fn();
+    const derivedCb = vi.fn();
+    const { result } = renderHook(() => useMetrics(), { wrapper });
+
+    vi.mocked(fetch).mockImplementation(async (input) => String(input).startsWith('/api/diagrams/')
+      ? new Response('', { status: 404 })
+      : new Response(JSON.stringify({
+        'api#0': { stats: { requests: 7 } },
+        'api#1': { value: 0.25 },
+      }), { status: 200 }));
+
+    const inputs = { e: { url: 'http://example.com/stats', valueField: 'errors' } };
+    act(() => {
+      result.current.setDiagram('unsaved');
+      result.current.registerMetric('http://example.com/stats', 'api', itemCb, vi.fn(), 5000,
+        { dataGridIndex: 0, valueField: 'stats.requests' });
+      result.current.registerMetric('', 'api', derivedCb, vi.fn(), 5000,
+        { dataGridIndex: 1, valueField: '', expression: 'rate(e)', inputs });
+    });
+
+    await act(async () => {
+      vi.advanceTimersByTime(1000);
+    });
+
+    expect(fetch).toHaveBeenCalledTimes(2);
+    const body = JSON.parse((fetch as any).mock.calls[1][1].body);
+    expect(body).toEqual([
+      { url: 'http://example.com/stats', node: 'api', key: 'api#0', fields: ['stats.requests'] },
+      { node: 'api', key: 'api#1', expression: 'rate(e)', inputs },
+    ]);
+    expect(itemCb).toHaveBeenCalledWith(7);
+    expect(derivedCb).toHaveBeenCalledWith(0.25);
+
+    // The 404 is remembered; later ticks go straight to the batch endpoint
+    await act(async () => {
+      vi.advanceTimersByTime(5000);
+    });
+    expect(fetch).toHaveBeenCalledTimes(3);
+    expect((fetch as any).mock.calls[2][0]).toBe('/api/metrics/batch');
+  });
+
+  it('uses the batch endpoint for templates without a diagram name', async () => {
+    const { result } = renderHook(() => useMetrics(), { wrapper });
+
+    act(() => {
+      result.current.setDiagram(null);
+      result.current.registerMetric('http://example.com/m', 'node-a', vi.fn(), vi.fn(), 5000,
+        { dataGridIndex: 0, valueField: 'value' });
+    });
+
+    await act(async () => {
+      vi.advanceTimersByTime(1000);
+    });
+
+    expect(fetch).toHaveBeenCalledTimes(1);
+    expect((fetch as any).mock.calls[0][0]).toBe('/api/metrics/batch');
+  });
+
+  it('asks the batch endpoint to evaluate aggregate value fields', async () => {
+    const itemCb = vi.fn();
+    const { result } = renderHook(() => useMetrics(), { wrapper });
+
+    const aggregate = 'sum([?state=running].messages)';
+    vi.mocked(fetch).mockImplementation(async () => new Response(JSON.stringify({
+      'rabbit#0': { [aggregate]: 12 },
+    }), { status: 200 }));
+
+    act(() => {
+      result.current.registerMetric('http://example.com/api/queues', 'rabbit', itemCb, vi.fn(), 5000,
+        { dataGridIndex: 0, valueField: aggregate });
+    });
+
+    await act(async () => {
+      vi.advanceTimersByTime(1000);
+    });
+
+    const body = JSON.parse((fetch as any).mock.calls[0][1].body);
+    expect(body[0].fields).toEqual([aggregate]);
+    expect(itemCb).toHaveBeenCalledWith(12);
+  });
 });
@@ -80,8 +80,10 @@ export interface DiagramNode {
 
 export interface DataGridItem {
   label: string;
-  url: string;
+  url?: string; // absent for derived items
   valueField: string;
+  expression?: string; // derived item, computed by the metrics proxy from its inputs
+  inputs?: Record<string, { url: string; valueField?: string }>;
   pollIntervalMs?: number;
 }
 